@@ -0,0 +1,856 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A bitset with {@code long} indices, for when more than
+ * {@link Integer#MAX_VALUE} bits are needed. The bits are divided into
+ * fixed-size segments, each of which is a {@link BufferBitSet}. Segments are
+ * created lazily, the first time a bit in them is set, so memory use follows
+ * the highest set bit in each segment rather than the highest index overall.
+ * <p>
+ * Segments may also be {@link #wrap(int, BufferBitSet...) wrapped}, for example
+ * bitsets obtained from {@link BufferBitSet#map(java.nio.channels.FileChannel, long)
+ * BufferBitSet.map}, in which case the bits are stored in memory-mapped files.
+ * <p>
+ * Logical operations work segment by segment, and can optionally process the
+ * segments in parallel. Both operands must use the same segment size.
+ * <p>
+ * The segments also serve as the pages of a copy-on-write
+ * {@link #snapshot() snapshot} mechanism. A snapshot is a read-only bitset which
+ * shares every segment with the bitset it was taken from, and afterwards the
+ * writer copies a shared segment the first time it modifies it. Publishing a
+ * snapshot therefore costs a copy of each segment which is modified
+ * afterwards, rather than a copy of the whole bitset. A smaller segment size
+ * gives finer-grained pages.
+ * <p>
+ * This bitset implementation is not thread safe. All {@code ByteBuffers}
+ * allocated by this class are procured via {@link BufferUtils#allocate(int)}.
+ *
+ * @author biteytech@protonmail.com
+ *
+ * @see BufferBitSet
+ */
+public class BigBufferBitSet {
+
+	/** The default segment size, 2^27 bits (16MB) per segment */
+	public static final int DEFAULT_SEGMENT_SHIFT = 27;
+
+	private static final int MIN_SEGMENT_SHIFT = 6;
+
+	private static final int MAX_SEGMENT_SHIFT = 30;
+
+	private final int segmentShift;
+
+	private final long segmentBits;
+
+	private final long segmentMask;
+
+	/**
+	 * Segment {@code i} holds bits {@code i << segmentShift} (inclusive) through
+	 * {@code (i + 1) << segmentShift} (exclusive). A null segment has no bits set.
+	 */
+	private BufferBitSet[] segments;
+
+	/**
+	 * The indices of the segments which are shared with a snapshot, and must be
+	 * copied before they are modified.
+	 */
+	private final BufferBitSet shared = new BufferBitSet();
+
+	private final boolean readOnly;
+
+	/*--------------------------------------------------------------------------------
+	 *  Constructors and factory methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Creates an empty bitset with the {@link #DEFAULT_SEGMENT_SHIFT default}
+	 * segment size.
+	 */
+	public BigBufferBitSet() {
+		this(DEFAULT_SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Creates an empty bitset with {@code 2^segmentShift} bits per segment.
+	 *
+	 * @param segmentShift - base 2 logarithm of the number of bits per segment
+	 *
+	 * @throws IllegalArgumentException if {@code segmentShift} is not between 6
+	 *                                  and 30 (inclusive)
+	 */
+	public BigBufferBitSet(int segmentShift) {
+		this(segmentShift, new BufferBitSet[0], false);
+	}
+
+	private BigBufferBitSet(int segmentShift, BufferBitSet[] segments, boolean readOnly) {
+		if (segmentShift < MIN_SEGMENT_SHIFT || segmentShift > MAX_SEGMENT_SHIFT)
+			throw new IllegalArgumentException("segmentShift must be between " + MIN_SEGMENT_SHIFT + " and "
+					+ MAX_SEGMENT_SHIFT + ": " + segmentShift);
+
+		this.segmentShift = segmentShift;
+		this.segmentBits = 1L << segmentShift;
+		this.segmentMask = segmentBits - 1;
+		this.segments = segments;
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Returns a bitset backed by the specified segments, with
+	 * {@code 2^segmentShift} bits per segment. The segments are not copied, so
+	 * changes to either are visible in the other. Null segments are treated as
+	 * empty, and are created on demand. Segments which are not
+	 * {@link BufferBitSet#isResizable() resizable} cannot grow, so bits beyond
+	 * their {@link BufferBitSet#size() size} cannot be set.
+	 *
+	 * @param segmentShift - base 2 logarithm of the number of bits per segment
+	 * @param segments     - the segments
+	 *
+	 * @return a bitset backed by the specified segments
+	 *
+	 * @throws IllegalArgumentException if {@code segmentShift} is not between 6
+	 *                                  and 30 (inclusive), or a segment has bits
+	 *                                  set beyond the segment size
+	 */
+	public static BigBufferBitSet wrap(int segmentShift, BufferBitSet... segments) {
+		final BigBufferBitSet set = new BigBufferBitSet(segmentShift, segments.clone(), false);
+
+		for (int i = 0; i < segments.length; i++)
+			if (segments[i] != null && segments[i].lastSetBit() >= set.segmentBits)
+				throw new IllegalArgumentException("segment " + i + " has bits set beyond the segment size");
+
+		return set;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Getters
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the base 2 logarithm of the number of bits per segment.
+	 *
+	 * @return the base 2 logarithm of the number of bits per segment
+	 */
+	public int segmentShift() {
+		return segmentShift;
+	}
+
+	/**
+	 * Returns the number of segments, including null segments, up to the last one
+	 * which has been created.
+	 *
+	 * @return the number of segments
+	 */
+	public int segmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 * Returns true if this bitset is a read-only {@link #snapshot() snapshot}.
+	 *
+	 * @return true if this bitset is read-only
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Returns the segment with the specified index, or {@code null} if it has not
+	 * been created. The segment is not copied, so changes to either are visible in
+	 * the other. The segment may be shared with a {@link #snapshot() snapshot},
+	 * and so must not be modified directly.
+	 *
+	 * @param segmentIndex - the index of the segment
+	 *
+	 * @return the specified segment, or {@code null}
+	 *
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code segmentIndex < 0 or segmentIndex >= segmentCount()}
+	 */
+	public BufferBitSet segment(int segmentIndex) {
+		return segments[segmentIndex];
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Single-bit and range methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the value of the bit with the specified index.
+	 *
+	 * @param bitIndex - the bit index
+	 *
+	 * @return the value of the bit with the specified index
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public boolean get(long bitIndex) {
+		final int s = segmentIndex(bitIndex);
+		final BufferBitSet segment = s < segments.length ? segments[s] : null;
+		return segment != null && segment.get(offset(bitIndex));
+	}
+
+	/**
+	 * Sets the bit at the specified index to {@code true}.
+	 *
+	 * @param bitIndex - a bit index
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public void set(long bitIndex) {
+		writableSegment(segmentIndex(bitIndex)).set(offset(bitIndex));
+	}
+
+	/**
+	 * Sets the bit at the specified index to the specified value.
+	 *
+	 * @param bitIndex - a bit index
+	 * @param value    - a boolean value to set
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public void set(long bitIndex, boolean value) {
+		if (value)
+			set(bitIndex);
+		else
+			clear(bitIndex);
+	}
+
+	/**
+	 * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+	 * specified {@code toIndex} (exclusive) to {@code true}.
+	 *
+	 * @param fromIndex - index of the first bit to be set
+	 * @param toIndex   - index after the last bit to be set
+	 *
+	 * @throws IndexOutOfBoundsException if {@code fromIndex} is negative, or
+	 *                                   {@code toIndex} is negative, or
+	 *                                   {@code fromIndex} is larger than
+	 *                                   {@code toIndex}
+	 */
+	public void set(long fromIndex, long toIndex) {
+		checkRange(fromIndex, toIndex);
+		checkWritable();
+
+		for (long from = fromIndex; from < toIndex;) {
+			final long to = Math.min(toIndex, (from | segmentMask) + 1);
+			writableSegment(segmentIndex(from)).set(offset(from), offset(to - 1) + 1);
+			from = to;
+		}
+	}
+
+	/**
+	 * Sets the bit specified by the index to {@code false}.
+	 *
+	 * @param bitIndex - the index of the bit to be cleared
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public void clear(long bitIndex) {
+		checkWritable();
+
+		final int s = segmentIndex(bitIndex);
+		if (s < segments.length && segments[s] != null)
+			writableSegment(s).clear(offset(bitIndex));
+	}
+
+	/**
+	 * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+	 * specified {@code toIndex} (exclusive) to {@code false}.
+	 *
+	 * @param fromIndex - index of the first bit to be cleared
+	 * @param toIndex   - index after the last bit to be cleared
+	 *
+	 * @throws IndexOutOfBoundsException if {@code fromIndex} is negative, or
+	 *                                   {@code toIndex} is negative, or
+	 *                                   {@code fromIndex} is larger than
+	 *                                   {@code toIndex}
+	 */
+	public void clear(long fromIndex, long toIndex) {
+		checkRange(fromIndex, toIndex);
+		checkWritable();
+
+		for (long from = fromIndex; from < toIndex;) {
+			final long to = Math.min(toIndex, (from | segmentMask) + 1);
+
+			final int s = segmentIndex(from);
+			if (s >= segments.length)
+				break;
+			if (segments[s] != null)
+				writableSegment(s).clear(offset(from), offset(to - 1) + 1);
+
+			from = to;
+		}
+	}
+
+	/**
+	 * Sets the bit at the specified index to the complement of its current value.
+	 *
+	 * @param bitIndex - the index of the bit to flip
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public void flip(long bitIndex) {
+		writableSegment(segmentIndex(bitIndex)).flip(offset(bitIndex));
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  next/previous set/clear bit
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the index of the first bit that is set to {@code true} that occurs on
+	 * or after the specified starting index. If no such bit exists then {@code -1}
+	 * is returned.
+	 *
+	 * @param fromIndex - the index to start checking from (inclusive)
+	 *
+	 * @return the index of the next set bit, or {@code -1} if there is no such bit
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public long nextSetBit(long fromIndex) {
+		int offset = offset(fromIndex);
+
+		for (int s = segmentIndex(fromIndex); s < segments.length; s++, offset = 0) {
+			if (segments[s] != null) {
+				final int bit = segments[s].nextSetBit(offset);
+				if (bit != -1)
+					return base(s) + bit;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the first bit that is set to {@code false} that occurs
+	 * on or after the specified starting index.
+	 *
+	 * @param fromIndex - the index to start checking from (inclusive)
+	 *
+	 * @return the index of the next clear bit
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public long nextClearBit(long fromIndex) {
+		int offset = offset(fromIndex);
+
+		int s = segmentIndex(fromIndex);
+		for (; s < segments.length; s++, offset = 0) {
+			if (segments[s] == null)
+				return base(s) + offset;
+
+			final int bit = segments[s].nextClearBit(offset);
+			if (bit < segmentBits)
+				return base(s) + bit;
+		}
+
+		return Math.max(fromIndex, base(s));
+	}
+
+	/**
+	 * Returns the index of the nearest bit that is set to {@code true} that occurs
+	 * on or before the specified starting index. If no such bit exists, or if
+	 * {@code -1} is given as the starting index, then {@code -1} is returned.
+	 *
+	 * @param fromIndex - the index to start checking from (inclusive)
+	 *
+	 * @return the index of the previous set bit, or {@code -1} if there is no such
+	 *         bit
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is less than
+	 *                                   {@code -1}
+	 */
+	public long previousSetBit(long fromIndex) {
+		if (fromIndex < 0) {
+			if (fromIndex == -1)
+				return -1;
+			throw new IndexOutOfBoundsException("fromIndex < -1: " + fromIndex);
+		}
+
+		int s = segmentIndex(fromIndex);
+		int offset = offset(fromIndex);
+		if (s >= segments.length) {
+			s = segments.length - 1;
+			offset = (int) segmentMask;
+		}
+
+		for (; s >= 0; s--, offset = (int) segmentMask) {
+			if (segments[s] != null) {
+				final int bit = segments[s].previousSetBit(offset);
+				if (bit != -1)
+					return base(s) + bit;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the nearest bit that is set to {@code false} that occurs
+	 * on or before the specified starting index. If no such bit exists, or if
+	 * {@code -1} is given as the starting index, then {@code -1} is returned.
+	 *
+	 * @param fromIndex - the index to start checking from (inclusive)
+	 *
+	 * @return the index of the previous clear bit, or {@code -1} if there is no
+	 *         such bit
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is less than
+	 *                                   {@code -1}
+	 */
+	public long previousClearBit(long fromIndex) {
+		if (fromIndex < 0) {
+			if (fromIndex == -1)
+				return -1;
+			throw new IndexOutOfBoundsException("fromIndex < -1: " + fromIndex);
+		}
+
+		int s = segmentIndex(fromIndex);
+		if (s >= segments.length)
+			return fromIndex;
+
+		for (int offset = offset(fromIndex); s >= 0; s--, offset = (int) segmentMask) {
+			if (segments[s] == null)
+				return base(s) + offset;
+
+			final int bit = segments[s].previousClearBit(offset);
+			if (bit != -1)
+				return base(s) + bit;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the highest set bit in the bitset, or -1 if the bitset
+	 * contains no set bits.
+	 *
+	 * @return the index of the highest set bit in the bitset, or -1 if the bitset
+	 *         contains no set bits.
+	 */
+	public long lastSetBit() {
+		for (int s = segments.length - 1; s >= 0; s--) {
+			if (segments[s] != null) {
+				final int bit = segments[s].lastSetBit();
+				if (bit != -1)
+					return base(s) + bit;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Performs the given action for the index of each bit that is set to
+	 * {@code true}, in ascending order.
+	 *
+	 * @param action - the action to be performed for each set bit
+	 */
+	public void forEachSetBit(LongConsumer action) {
+		for (int s = 0; s < segments.length; s++) {
+			if (segments[s] != null) {
+				final long base = base(s);
+				segments[s].forEachSetBit(bit -> action.accept(base + bit));
+			}
+		}
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Logical operations - and/or/xor/andNot
+	 *-------------------------------------------------------------------------------*/
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int XOR = 2;
+	private static final int AND_NOT = 3;
+
+	/**
+	 * Performs a logical <b>AND</b> of this target bitset with the argument bitset.
+	 * This bitset is modified so that each bit in it has the value {@code true} if
+	 * and only if it both initially had the value {@code true} and the
+	 * corresponding bit in the bitset argument also had the value {@code true}.
+	 *
+	 * @param set - a {@link BigBufferBitSet} with the same segment size
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void and(BigBufferBitSet set) {
+		and(set, false);
+	}
+
+	/**
+	 * Same as {@link #and(BigBufferBitSet)}, but optionally processes the segments
+	 * in parallel.
+	 *
+	 * @param set      - a {@link BigBufferBitSet} with the same segment size
+	 * @param parallel - specifies whether or not to process segments in parallel
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void and(BigBufferBitSet set, boolean parallel) {
+		logical(AND, set, parallel);
+	}
+
+	/**
+	 * Performs a logical <b>OR</b> of this bitset with the bitset argument. This
+	 * bitset is modified so that a bit in it has the value {@code true} if and only
+	 * if it either already had the value {@code true} or the corresponding bit in
+	 * the bitset argument has the value {@code true}.
+	 *
+	 * @param set - a {@link BigBufferBitSet} with the same segment size
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void or(BigBufferBitSet set) {
+		or(set, false);
+	}
+
+	/**
+	 * Same as {@link #or(BigBufferBitSet)}, but optionally processes the segments
+	 * in parallel.
+	 *
+	 * @param set      - a {@link BigBufferBitSet} with the same segment size
+	 * @param parallel - specifies whether or not to process segments in parallel
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void or(BigBufferBitSet set, boolean parallel) {
+		logical(OR, set, parallel);
+	}
+
+	/**
+	 * Performs a logical <b>XOR</b> of this bitset with the bitset argument. This
+	 * bitset is modified so that a bit in it has the value {@code true} if and only
+	 * if exactly one of the bit and the corresponding bit in the argument has the
+	 * value {@code true}.
+	 *
+	 * @param set - a {@link BigBufferBitSet} with the same segment size
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void xor(BigBufferBitSet set) {
+		xor(set, false);
+	}
+
+	/**
+	 * Same as {@link #xor(BigBufferBitSet)}, but optionally processes the segments
+	 * in parallel.
+	 *
+	 * @param set      - a {@link BigBufferBitSet} with the same segment size
+	 * @param parallel - specifies whether or not to process segments in parallel
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void xor(BigBufferBitSet set, boolean parallel) {
+		logical(XOR, set, parallel);
+	}
+
+	/**
+	 * Clears all of the bits in this bitset whose corresponding bit is set in the
+	 * specified bitset.
+	 *
+	 * @param set - the {@link BigBufferBitSet} with which to mask this bitset
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void andNot(BigBufferBitSet set) {
+		andNot(set, false);
+	}
+
+	/**
+	 * Same as {@link #andNot(BigBufferBitSet)}, but optionally processes the
+	 * segments in parallel.
+	 *
+	 * @param set      - the {@link BigBufferBitSet} with which to mask this bitset
+	 * @param parallel - specifies whether or not to process segments in parallel
+	 *
+	 * @throws IllegalArgumentException if the segment sizes differ
+	 */
+	public void andNot(BigBufferBitSet set, boolean parallel) {
+		logical(AND_NOT, set, parallel);
+	}
+
+	private void logical(int op, BigBufferBitSet set, boolean parallel) {
+		if (segmentShift != set.segmentShift)
+			throw new IllegalArgumentException(
+					"segment sizes differ: " + segmentShift + " vs " + set.segmentShift);
+
+		checkWritable();
+
+		if (this == set) {
+			if (op == XOR || op == AND_NOT)
+				segments = new BufferBitSet[0];
+			return;
+		}
+
+		final BufferBitSet[] other = set.segments;
+		if ((op == OR || op == XOR) && other.length > segments.length)
+			segments = Arrays.copyOf(segments, other.length);
+		else if (op == AND && other.length < segments.length)
+			segments = Arrays.copyOf(segments, other.length);
+
+		final int n = Math.min(segments.length, other.length);
+
+		// copy the shared segments which will be modified, before any parallel work
+		for (int s = shared.nextSetBit(0); s != -1 && s < n; s = shared.nextSetBit(s + 1)) {
+			if (segments[s] == null) {
+				shared.clear(s);
+			} else if (other[s] != null && !other[s].isEmpty()) {
+				segments[s] = copyOf(segments[s]);
+				shared.clear(s);
+			}
+		}
+
+		if (parallel)
+			IntStream.range(0, n).parallel().forEach(s -> logical(op, s, other[s]));
+		else
+			for (int s = 0; s < n; s++)
+				logical(op, s, other[s]);
+	}
+
+	private void logical(int op, int s, BufferBitSet other) {
+		final BufferBitSet segment = segments[s];
+
+		if (other == null || other.isEmpty()) {
+			if (op == AND)
+				segments[s] = null;
+		} else if (segment == null) {
+			if (op == OR || op == XOR)
+				segments[s] = copyOf(other);
+		} else {
+			switch (op) {
+			case AND:
+				segment.and(other);
+				break;
+			case OR:
+				segment.or(other);
+				break;
+			case XOR:
+				segment.xor(other);
+				break;
+			default:
+				segment.andNot(other);
+			}
+		}
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Copy-on-write snapshots
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns a read-only snapshot of this bitset. The snapshot shares every
+	 * segment with this bitset, so taking it only costs a copy of the array of
+	 * segments. Afterwards, the first modification of a shared segment by this
+	 * bitset replaces the segment with a private copy, so the snapshot never
+	 * changes.
+	 * <p>
+	 * The snapshot may be read by other threads while this bitset continues to be
+	 * modified by a single writer, provided that it is published safely (for
+	 * example, via a {@code volatile} field). Any method of the snapshot which
+	 * would modify it throws a {@link ReadOnlyBufferException}. A snapshot of a
+	 * snapshot is the snapshot itself.
+	 *
+	 * @return a read-only snapshot of this bitset
+	 */
+	public BigBufferBitSet snapshot() {
+		if (readOnly)
+			return this;
+
+		for (int s = 0; s < segments.length; s++)
+			if (segments[s] != null)
+				shared.set(s);
+
+		return new BigBufferBitSet(segmentShift, segments.clone(), true);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Object methods and misc.
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns true if this {@link BigBufferBitSet} contains no bits that are set to
+	 * {@code true}.
+	 *
+	 * @return boolean indicating whether this bitset is empty
+	 */
+	public boolean isEmpty() {
+		for (BufferBitSet segment : segments)
+			if (segment != null && !segment.isEmpty())
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in this
+	 * {@link BigBufferBitSet}.
+	 *
+	 * @return the number of bits set to {@code true} in this bitset
+	 */
+	public long cardinality() {
+		long cardinality = 0;
+		for (BufferBitSet segment : segments)
+			if (segment != null)
+				cardinality += segment.cardinality();
+		return cardinality;
+	}
+
+	/**
+	 * Returns the hashcode value for this bitset. The hashcode depends only on
+	 * which bits are set, and not on the segment size.
+	 *
+	 * @return the hashcode value for this bitset
+	 */
+	@Override
+	public int hashCode() {
+		long h = 1234;
+
+		for (int s = 0; s < segments.length; s++) {
+			final BufferBitSet segment = segments[s];
+			if (segment != null) {
+				final long firstWord = base(s) >>> 6;
+				final int wordsInUse = segment.wordsInUse();
+				for (int u = 0; u < wordsInUse; u++)
+					h ^= segment.word(u) * (firstWord + u + 1);
+			}
+		}
+
+		return (int) ((h >> 32) ^ h);
+	}
+
+	/**
+	 * Compares this object against the specified object. The result is {@code true}
+	 * if and only if the argument is not {@code null} and is a
+	 * {@code BigBufferBitSet} object that has exactly the same set of bits set to
+	 * {@code true} as this bit set. The segment sizes are not compared.
+	 *
+	 * @param obj the object to compare with
+	 *
+	 * @return {@code true} if the objects are the same; {@code false} otherwise
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof BigBufferBitSet))
+			return false;
+		if (this == obj)
+			return true;
+
+		final BigBufferBitSet set = (BigBufferBitSet) obj;
+
+		if (segmentShift != set.segmentShift) {
+			long a = nextSetBit(0), b = set.nextSetBit(0);
+			for (; a == b && a != -1; a = nextSetBit(a + 1), b = set.nextSetBit(b + 1))
+				;
+			return a == b;
+		}
+
+		final int n = Math.max(segments.length, set.segments.length);
+		for (int s = 0; s < n; s++)
+			if (!segmentEquals(segmentOrEmpty(s), set.segmentOrEmpty(s)))
+				return false;
+
+		return true;
+	}
+
+	private static boolean segmentEquals(BufferBitSet a, BufferBitSet b) {
+		final int wordsInUse = a.wordsInUse();
+		if (wordsInUse != b.wordsInUse())
+			return false;
+
+		for (int u = 0; u < wordsInUse; u++)
+			if (a.word(u) != b.word(u))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns a deep copy of this bitset. Every segment of the copy is resizable,
+	 * and allocated via {@link BufferUtils#allocate(int)}.
+	 *
+	 * @return another bitset that has exactly the same bits set to {@code true} as
+	 *         this one
+	 */
+	public BigBufferBitSet copy() {
+		final BufferBitSet[] copy = new BufferBitSet[segments.length];
+		for (int s = 0; s < copy.length; s++)
+			if (segments[s] != null && !segments[s].isEmpty())
+				copy[s] = copyOf(segments[s]);
+		return new BigBufferBitSet(segmentShift, copy, false);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Utility methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Given a bit index, return the index of the segment containing it.
+	 */
+	private int segmentIndex(long bitIndex) {
+		if (bitIndex < 0)
+			throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+
+		final long s = bitIndex >>> segmentShift;
+		if (s >= Integer.MAX_VALUE)
+			throw new IndexOutOfBoundsException("bitIndex too large: " + bitIndex);
+
+		return (int) s;
+	}
+
+	/**
+	 * Given a bit index, return its offset within the containing segment.
+	 */
+	private int offset(long bitIndex) {
+		return (int) (bitIndex & segmentMask);
+	}
+
+	/**
+	 * Given a segment index, return the index of its first bit.
+	 */
+	private long base(int segmentIndex) {
+		return (long) segmentIndex << segmentShift;
+	}
+
+	private BufferBitSet segmentOrEmpty(int segmentIndex) {
+		final BufferBitSet segment = segmentIndex < segments.length ? segments[segmentIndex] : null;
+		return segment == null ? BufferBitSet.EMPTY_BITSET : segment;
+	}
+
+	/**
+	 * Return the specified segment for modification, creating it if necessary, or
+	 * copying it if it is shared with a snapshot.
+	 */
+	private BufferBitSet writableSegment(int segmentIndex) {
+		checkWritable();
+
+		if (segmentIndex >= segments.length)
+			segments = Arrays.copyOf(segments, segmentIndex + 1);
+
+		BufferBitSet segment = segments[segmentIndex];
+		if (segment == null)
+			segments[segmentIndex] = segment = new BufferBitSet();
+		else if (shared.get(segmentIndex))
+			segments[segmentIndex] = segment = copyOf(segment);
+
+		shared.clear(segmentIndex);
+
+		return segment;
+	}
+
+	private void checkWritable() {
+		if (readOnly)
+			throw new ReadOnlyBufferException();
+	}
+
+	private static BufferBitSet copyOf(BufferBitSet segment) {
+		final BufferBitSet copy = new BufferBitSet();
+		copy.or(segment);
+		return copy;
+	}
+
+	private static void checkRange(long fromIndex, long toIndex) {
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+		if (toIndex < 0)
+			throw new IndexOutOfBoundsException("toIndex < 0: " + toIndex);
+		if (fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + " > toIndex: " + toIndex);
+	}
+}
@@ -2,18 +2,26 @@ package tech.bitey.bufferstuff;
 
 import static java.lang.Integer.bitCount;
 import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static tech.bitey.bufferstuff.BufferUtils.allocate;
 import static tech.bitey.bufferstuff.BufferUtils.duplicate;
 import static tech.bitey.bufferstuff.BufferUtils.readFully;
 import static tech.bitey.bufferstuff.BufferUtils.slice;
 import static tech.bitey.bufferstuff.BufferUtils.writeFully;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.BitSet;
 import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Similar to {@link java.util.BitSet BitSet}, but backed by a
@@ -53,7 +61,12 @@ public class BufferBitSet implements Cloneable {
 
 	private static final int MASK = 0xFF;
 
-	private static final int MAX_CAPACITY = byteIndex(Integer.MAX_VALUE) + 1;
+	static final int MAX_CAPACITY = byteIndex(Integer.MAX_VALUE) + 1;
+
+	/** Number of bytes per page, as tracked by {@link #trackDirtyPages(boolean)} */
+	public static final int DIRTY_PAGE_SIZE = 1 << 12;
+
+	private static final int DIRTY_PAGE_SHIFT = 12;
 
 	/**
 	 * Specifies whether or not the buffer can be replaced with a larger one.
@@ -67,6 +80,34 @@ public class BufferBitSet implements Cloneable {
 	 */
 	private ByteBuffer buffer;
 
+	/**
+	 * Pages which have been modified since the last checkpoint, or null if dirty
+	 * pages are not being tracked.
+	 */
+	private BufferBitSet dirty;
+
+	/**
+	 * Number of bytes which are known to be present on file after the last
+	 * checkpoint. Bytes at or beyond this index are always rewritten.
+	 */
+	private int persisted;
+
+	/**
+	 * Specifies whether or not the cardinality and hash code are cached.
+	 */
+	private boolean caching;
+
+	/**
+	 * The cached cardinality, or -1 if it must be recomputed.
+	 */
+	private int cachedCardinality = -1;
+
+	/**
+	 * The cached hash code, valid only if {@code hashCached} is true.
+	 */
+	private int cachedHash;
+	private boolean hashCached;
+
 	/*--------------------------------------------------------------------------------
 	 *  Getters
 	 *-------------------------------------------------------------------------------*/
@@ -326,6 +367,46 @@ public class BufferBitSet implements Cloneable {
 	 *                                   {@code toIndex}
 	 */
 	public void writeTo(WritableByteChannel channel, int fromIndex, int toIndex) throws IOException {
+		writeFully(channel, serialize(fromIndex, toIndex));
+	}
+
+	/**
+	 * Write each of the specified bitsets to the specified
+	 * {@link WritableByteChannel}, in order. Equivalent to calling
+	 * {@link #writeTo(WritableByteChannel)} on each bitset, but if the channel is
+	 * a {@link GatheringByteChannel} then everything is written with a single
+	 * gathering write (or as few as the channel allows). The bitsets can be read
+	 * back with successive calls to {@link #readFrom(ReadableByteChannel)}.
+	 * 
+	 * @param channel - the channel to write to
+	 * @param sets    - the bitsets to write
+	 * 
+	 * @throws IOException if some I/O error occurs
+	 */
+	public static void writeAllTo(WritableByteChannel channel, BufferBitSet... sets) throws IOException {
+		final ByteBuffer[][] parts = new ByteBuffer[sets.length][];
+
+		int count = 0;
+		for (int i = 0; i < sets.length; i++) {
+			parts[i] = sets[i].serialize(0, sets[i].lastSetBit() + 1);
+			count += parts[i].length;
+		}
+
+		final ByteBuffer[] buffers = new ByteBuffer[count];
+		for (int i = 0, offset = 0; i < parts.length; offset += parts[i++].length)
+			System.arraycopy(parts[i], 0, buffers, offset, parts[i].length);
+
+		writeFully(channel, buffers);
+	}
+
+	/**
+	 * Returns the buffers which make up the serialized form of the specified
+	 * range: the 5-byte header, then the bytes which store the bits in the range,
+	 * with the bits beyond {@code toIndex} masked out of the last byte. The header
+	 * and the masked last byte share one small allocation, and the other bytes
+	 * are a slice of this bitset's buffer.
+	 */
+	private ByteBuffer[] serialize(int fromIndex, int toIndex) {
 		checkRange(fromIndex, toIndex);
 
 		final int lastSetBit = lastSetBit();
@@ -345,28 +426,51 @@ public class BufferBitSet implements Cloneable {
 		buffer.limit(n + 1);
 		final int limit = buffer.limit();
 
-		ByteBuffer header = ByteBuffer.allocate(5).order(BIG_ENDIAN);
-		header.put(0, (byte) (fromIndex & 7));
-		header.putInt(1, limit);
+		// header in bytes 0-4, last byte in byte 5
+		ByteBuffer scratch = ByteBuffer.allocate(6).order(BIG_ENDIAN);
+		scratch.put(0, (byte) (fromIndex & 7));
+		scratch.putInt(1, limit);
 
-		writeFully(channel, header);
+		final ByteBuffer header = slice(scratch, 0, 5);
 
-		if (limit > 0) {
-			if (limit > 1) {
-				// write everything except last byte
-				writeFully(channel, slice(buffer, 0, limit - 1));
-			}
+		if (limit == 0)
+			return new ByteBuffer[] { header };
 
-			// handle last byte
-			ByteBuffer lastByte = ByteBuffer.allocate(1);
-			lastByte.put(0, (byte) (buffer.get(limit - 1) & (MASK >>> ((-toIndex) & 7))));
-			writeFully(channel, lastByte);
-		}
+		// handle last byte
+		scratch.put(5, (byte) (buffer.get(limit - 1) & (MASK >>> ((-toIndex) & 7))));
+		final ByteBuffer lastByte = slice(scratch, 5, 6);
+
+		if (limit == 1)
+			return new ByteBuffer[] { header, lastByte };
+		else
+			return new ByteBuffer[] { header, slice(buffer, 0, limit - 1), lastByte };
+	}
+
+	/**
+	 * Write this bitset to the specified {@link WritableByteChannel} in a
+	 * compressed format, in which runs of all-zero or all-one 64-bit words are
+	 * replaced by a count. See {@link BufferEWAHBitSet} for details. This method
+	 * will write a 5-byte header, followed by the encoded words.
+	 * <p>
+	 * The compressed format is much smaller than the format written by
+	 * {@link #writeTo(WritableByteChannel)} for sparse or clustered bitsets. It
+	 * can be read back with
+	 * {@link #readFrom(ReadableByteChannel)}, which detects the format from the
+	 * header, or with {@link BufferEWAHBitSet#readFrom(ReadableByteChannel)}.
+	 * 
+	 * @param channel - the channel to write to
+	 * 
+	 * @throws IOException if some I/O error occurs
+	 */
+	public void writeCompressedTo(WritableByteChannel channel) throws IOException {
+		BufferEWAHBitSet.valueOf(this).writeTo(channel);
 	}
 
 	/**
 	 * Read a bitset from the specified {@link ReadableByteChannel}. The bitset must
-	 * have been previously written with one of the {@code writeTo} methods.
+	 * have been previously written with one of the {@code writeTo} methods, or
+	 * with {@link #writeCompressedTo(WritableByteChannel)}. The format is detected
+	 * from the header.
 	 * 
 	 * @param channel - the channel to read from
 	 * 
@@ -379,8 +483,74 @@ public class BufferBitSet implements Cloneable {
 		ByteBuffer header = ByteBuffer.allocate(5).order(BIG_ENDIAN);
 		readFully(channel, header);
 
-		int offset = header.get(0);
-		int capacity = header.getInt(1);
+		return readFrom(header.get(0), header.getInt(1), channel);
+	}
+
+	/**
+	 * Map a bitset from the specified {@link FileChannel}, starting at the
+	 * specified position in the file. The bitset must have been previously written
+	 * with one of the {@code writeTo} methods, or with
+	 * {@link #writeCompressedTo(WritableByteChannel)}. Unlike
+	 * {@link #readFrom(ReadableByteChannel)}, the channel's position is not used or
+	 * modified.
+	 * <p>
+	 * If the bitset was written byte-aligned, which is always the case for
+	 * {@link #writeTo(WritableByteChannel)}, the region following the header is
+	 * memory-mapped and wrapped without copying, so opening even a very large
+	 * bitset costs nothing up front. The resulting bitset is read-only: any attempt
+	 * to modify it will throw {@link java.nio.ReadOnlyBufferException}. Otherwise
+	 * (compressed, or written from a {@code fromIndex} which is not a multiple of
+	 * 8) the mapped bytes are decoded into a newly allocated buffer.
+	 * 
+	 * @param channel  - the file channel to map from
+	 * @param position - the position in the file of the bitset's header
+	 * 
+	 * @return a non-resizable bitset from the specified file
+	 * 
+	 * @throws IOException if some I/O error occurs, or the file ends before the
+	 *                     end of the bitset
+	 */
+	public static BufferBitSet map(FileChannel channel, long position) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(5).order(BIG_ENDIAN);
+		while (header.hasRemaining())
+			if (channel.read(header, position + header.position()) < 0)
+				throw new EOFException("end of file while reading bitset header");
+
+		final int offset = header.get(0);
+		final int capacity = header.getInt(1);
+
+		final boolean compressed = (offset & BufferEWAHBitSet.COMPRESSED_FLAG) != 0;
+		final long bytes = compressed ? capacity * 8L : capacity;
+
+		if (capacity < 0)
+			throw new IOException("invalid bitset header");
+		if (compressed && capacity > BufferEWAHBitSet.MAX_WORDS)
+			throw new IOException("invalid encoded words");
+		if (position + 5 + bytes > channel.size())
+			throw new EOFException("end of file while reading bitset");
+		if (capacity == 0)
+			return EMPTY_BITSET;
+
+		ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position + 5, bytes);
+
+		if (compressed)
+			return BufferEWAHBitSet.wrapEncoded(mapped).toBufferBitSet().resizable(false);
+		else if (offset == 0)
+			return new BufferBitSet(mapped.position(capacity), false, false);
+		else
+			return fromBytes(offset, allocate(capacity).put(mapped));
+	}
+
+	/**
+	 * Read the remainder of a bitset after its header has been read.
+	 */
+	static BufferBitSet readFrom(int offset, int capacity, ReadableByteChannel channel) throws IOException {
+
+		if ((offset & BufferEWAHBitSet.COMPRESSED_FLAG) != 0) {
+			BufferEWAHBitSet compressed = BufferEWAHBitSet.readEncoded(capacity, channel);
+			return compressed.isEmpty() ? EMPTY_BITSET : compressed.toBufferBitSet().resizable(false);
+		}
 
 		if (capacity == 0)
 			return EMPTY_BITSET;
@@ -388,6 +558,15 @@ public class BufferBitSet implements Cloneable {
 		ByteBuffer buffer = allocate(capacity);
 		readFully(channel, buffer);
 
+		return fromBytes(offset, buffer);
+	}
+
+	/**
+	 * Returns a non-resizable bitset wrapping the provided buffer, which has been
+	 * filled with the bytes following a header with the specified offset.
+	 */
+	private static BufferBitSet fromBytes(int offset, ByteBuffer buffer) {
+
 		if (offset == 0)
 			return new BufferBitSet(buffer, false, false);
 
@@ -403,6 +582,114 @@ public class BufferBitSet implements Cloneable {
 		return new BufferBitSet(buffer, false, true);
 	}
 
+	/*--------------------------------------------------------------------------------
+	 *  Dirty page tracking and incremental persistence
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Starts or stops tracking which pages of this bitset's buffer are modified.
+	 * A page is {@link #DIRTY_PAGE_SIZE} bytes. While tracking, every operation
+	 * which changes the content of the buffer (including the logical operations
+	 * and shifts) marks the pages it changed as dirty, and
+	 * {@link #writeDirtyTo(FileChannel, long)} can bring a file up to date by
+	 * writing only those pages.
+	 * <p>
+	 * When tracking starts, no pages are dirty: the current content is assumed to
+	 * have already been written, for example with
+	 * {@link #writeTo(WritableByteChannel)}, or to have been read with
+	 * {@link #readFrom(ReadableByteChannel)}. Stopping discards the dirty pages.
+	 * Tracking is not carried over to copies of this bitset.
+	 * 
+	 * @param track - true to start tracking dirty pages, false to stop
+	 */
+	public void trackDirtyPages(boolean track) {
+		if (!track)
+			dirty = null;
+		else if (dirty == null) {
+			dirty = new BufferBitSet();
+			persisted = buffer.position();
+		}
+	}
+
+	/**
+	 * Returns true if this bitset is tracking which pages of its buffer are
+	 * modified.
+	 * 
+	 * @return true if this bitset is tracking dirty pages
+	 * 
+	 * @see #trackDirtyPages(boolean)
+	 */
+	public boolean isTrackingDirtyPages() {
+		return dirty != null;
+	}
+
+	/**
+	 * Returns the number of dirty pages: pages which have been modified since
+	 * tracking started, and have not yet been written by
+	 * {@link #writeDirtyTo(FileChannel, long)}.
+	 * 
+	 * @return the number of dirty pages, or zero if dirty pages are not being
+	 *         tracked
+	 */
+	public int dirtyPageCount() {
+		return dirty == null ? 0 : dirty.cardinality();
+	}
+
+	/**
+	 * Brings a copy of this bitset in the specified file up to date, by rewriting
+	 * its 5-byte header and then only the pages which have been modified since
+	 * the copy was last written. The copy must have been written at the specified
+	 * position with {@link #writeTo(WritableByteChannel)} (or by this method)
+	 * when tracking started, and must be the last thing in the file, or be
+	 * followed by enough room for this bitset to grow. Each page is written at its
+	 * own offset with positional writes, so the channel's position is not used or
+	 * modified, and the cost of a checkpoint is proportional to the number of
+	 * dirty pages rather than the size of the bitset.
+	 * <p>
+	 * Once written, pages are no longer dirty. Stale bytes beyond the end of the
+	 * bitset are left in the file, where they are ignored by
+	 * {@link #readFrom(ReadableByteChannel)} and
+	 * {@link #map(FileChannel, long)}.
+	 * 
+	 * @param channel  - the file channel to write to
+	 * @param position - the position in the file of the bitset's header
+	 * 
+	 * @throws IOException           if some I/O error occurs
+	 * @throws IllegalStateException if dirty pages are not being tracked
+	 */
+	public void writeDirtyTo(FileChannel channel, long position) throws IOException {
+		if (dirty == null)
+			throw new IllegalStateException("dirty pages are not being tracked");
+
+		final int bytes = buffer.position();
+
+		ByteBuffer header = ByteBuffer.allocate(5).order(BIG_ENDIAN);
+		header.putInt(1, bytes);
+		writeFully(channel, header, position);
+
+		if (bytes == 0)
+			return;
+
+		// nothing is known about the file beyond the bytes previously written
+		if (persisted < bytes)
+			markDirty(persisted, bytes);
+
+		final int pages = ((bytes - 1) >>> DIRTY_PAGE_SHIFT) + 1;
+
+		for (int page = dirty.nextSetBit(0); page != -1 && page < pages; page = dirty.nextSetBit(page)) {
+			final int from = page << DIRTY_PAGE_SHIFT;
+			page = Math.min(dirty.nextClearBit(page), pages);
+			final int to = Math.min(page << DIRTY_PAGE_SHIFT, bytes);
+
+			writeFully(channel, slice(buffer, from, to), position + 5 + from);
+		}
+
+		// Pages beyond the end of the bitset stay dirty, since the file may still
+		// hold stale bytes there which must be overwritten if the bitset grows. The
+		// same goes for a partially written last page.
+		dirty.clear(0, persisted > bytes ? bytes >>> DIRTY_PAGE_SHIFT : pages);
+		persisted = Math.max(persisted, bytes);
+	}
+
 	/*--------------------------------------------------------------------------------
 	 *  Get / Set / Flip / Clear
 	 *-------------------------------------------------------------------------------*/
@@ -439,18 +726,34 @@ public class BufferBitSet implements Cloneable {
 	 *                                   {@code toIndex}
 	 */
 	public BufferBitSet get(int fromIndex, int toIndex) {
+		checkRange(fromIndex, toIndex);
 
-		final LeftShift shift = new LeftShift(fromIndex, toIndex);
+		final int lastSetBit = lastSetBit();
 
 		// If no bits set in range then return empty bitset
-		if (shift.byteCount == 0)
+		if (lastSetBit < fromIndex || fromIndex == toIndex)
 			return new BufferBitSet(resizable);
 
-		ByteBuffer resultBuffer = allocate(shift.byteCount);
-		BufferBitSet result = new BufferBitSet(resultBuffer, resizable, false);
+		// An optimization
+		if (toIndex - 1 > lastSetBit)
+			toIndex = lastSetBit + 1;
 
-		for (int i = 0; i < shift.byteCount; i++)
-			resultBuffer.put((byte) shift.get(i));
+		final int length = toIndex - fromIndex;
+		final int bytes = byteIndex(length - 1) + 1;
+
+		final BufferBitSet result = new BufferBitSet(allocate(bytes), resizable, false);
+		result.buffer.position(bytes);
+
+		// each result word is funnel-shifted out of two adjacent source words
+		final int wordShift = wordIndex(fromIndex);
+		final int bitShift = fromIndex & 63;
+
+		final int lastWordIndex = wordIndex(length - 1);
+		for (int u = 0; u < lastWordIndex; u++)
+			result.putWord(u, wordShiftedLeft(u, wordShift, bitShift));
+
+		// bits beyond the end of the range must not be copied
+		result.putWord(lastWordIndex, wordShiftedLeft(lastWordIndex, wordShift, bitShift) & (-1L >>> -length));
 
 		result.recalculateBytesInUse();
 
@@ -558,28 +861,9 @@ public class BufferBitSet implements Cloneable {
 			return;
 
 		// Increase capacity if necessary
-		int startByteIndex = byteIndex(fromIndex);
-		int endByteIndex = byteIndex(toIndex - 1);
-		expandTo(endByteIndex);
+		expandTo(byteIndex(toIndex - 1));
 
-		int firstByteMask = MASK << (fromIndex & 7);
-		int lastByteMask = MASK >>> ((-toIndex) & 7);
-
-		if (startByteIndex == endByteIndex) {
-			// Case 1: One word
-			put(startByteIndex, byt(startByteIndex) | (firstByteMask & lastByteMask));
-		} else {
-			// Case 2: Multiple words
-			// Handle first word
-			put(startByteIndex, byt(startByteIndex) | firstByteMask);
-
-			// Handle intermediate words, if any
-			for (int i = startByteIndex + 1; i < endByteIndex; i++)
-				put(i, MASK);
-
-			// Handle last word
-			put(endByteIndex, byt(endByteIndex) | lastByteMask);
-		}
+		fill(SET, fromIndex, toIndex);
 	}
 
 	/**
@@ -637,28 +921,9 @@ public class BufferBitSet implements Cloneable {
 			return;
 
 		// Increase capacity if necessary
-		int startByteIndex = byteIndex(fromIndex);
-		int endByteIndex = byteIndex(toIndex - 1);
-		expandTo(endByteIndex);
-
-		int firstByteMask = MASK << (fromIndex & 7);
-		int lastByteMask = MASK >>> ((-toIndex) & 7);
+		expandTo(byteIndex(toIndex - 1));
 
-		if (startByteIndex == endByteIndex) {
-			// Case 1: One word
-			put(startByteIndex, byt(startByteIndex) ^ (firstByteMask & lastByteMask));
-		} else {
-			// Case 2: Multiple words
-			// Handle first word
-			put(startByteIndex, byt(startByteIndex) ^ firstByteMask);
-
-			// Handle intermediate words, if any
-			for (int i = startByteIndex + 1; i < endByteIndex; i++)
-				put(i, byt(i) ^ MASK);
-
-			// Handle last word
-			put(endByteIndex, byt(endByteIndex) ^ lastByteMask);
-		}
+		fill(FLIP, fromIndex, toIndex);
 
 		recalculateBytesInUse();
 	}
@@ -706,29 +971,71 @@ public class BufferBitSet implements Cloneable {
 		if (toIndex - 1 > lastSetBit)
 			toIndex = lastSetBit + 1;
 
-		int startByteIndex = byteIndex(fromIndex);
-		int endByteIndex = byteIndex(toIndex - 1);
+		fill(CLEAR, fromIndex, toIndex);
 
-		int firstByteMask = MASK << (fromIndex & 7);
-		int lastByteMask = MASK >>> ((-toIndex) & 7);
+		recalculateBytesInUse();
+	}
 
-		if (startByteIndex == endByteIndex) {
+	private static final int SET = 0;
+	private static final int CLEAR = 1;
+	private static final int FLIP = 2;
+
+	/**
+	 * Sets, clears, or flips the bits from {@code fromIndex} (inclusive) to
+	 * {@code toIndex} (exclusive), a 64-bit word at a time. The range must be
+	 * non-empty, and the buffer must already be large enough to hold it.
+	 */
+	private void fill(int op, int fromIndex, int toIndex) {
+
+		final int startWordIndex = wordIndex(fromIndex);
+		final int endWordIndex = wordIndex(toIndex - 1);
+
+		final long firstWordMask = -1L << fromIndex;
+		final long lastWordMask = -1L >>> -toIndex;
+
+		if (startWordIndex == endWordIndex) {
 			// Case 1: One word
-			put(startByteIndex, byt(startByteIndex) & ~(firstByteMask & lastByteMask));
+			fillWord(op, startWordIndex, firstWordMask & lastWordMask);
 		} else {
 			// Case 2: Multiple words
 			// Handle first word
-			put(startByteIndex, byt(startByteIndex) & ~firstByteMask);
+			fillWord(op, startWordIndex, firstWordMask);
 
 			// Handle intermediate words, if any
-			for (int i = startByteIndex + 1; i < endByteIndex; i++)
-				put(i, 0);
+			switch (op) {
+			case SET:
+				for (int u = startWordIndex + 1; u < endWordIndex; u++)
+					putWord(u, -1L);
+				break;
+			case CLEAR:
+				for (int u = startWordIndex + 1; u < endWordIndex; u++)
+					putWord(u, 0);
+				break;
+			default:
+				for (int u = startWordIndex + 1; u < endWordIndex; u++)
+					putWord(u, ~word(u));
+			}
 
 			// Handle last word
-			put(endByteIndex, byt(endByteIndex) & ~lastByteMask);
+			fillWord(op, endWordIndex, lastWordMask);
 		}
+	}
 
-		recalculateBytesInUse();
+	/**
+	 * Sets, clears, or flips the bits of word {@code u} which are selected by the
+	 * specified mask.
+	 */
+	private void fillWord(int op, int u, long mask) {
+		switch (op) {
+		case SET:
+			putWord(u, word(u) | mask);
+			break;
+		case CLEAR:
+			putWord(u, word(u) & ~mask);
+			break;
+		default:
+			putWord(u, word(u) ^ mask);
+		}
 	}
 
 	/*--------------------------------------------------------------------------------
@@ -747,20 +1054,20 @@ public class BufferBitSet implements Cloneable {
 		if (fromIndex < 0)
 			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
 
-		final int position = buffer.position();
+		final int wordsInUse = wordsInUse();
 
-		int u = byteIndex(fromIndex);
-		if (u >= position)
+		int u = wordIndex(fromIndex);
+		if (u >= wordsInUse)
 			return -1;
 
-		byte b = (byte) (byt(u) & (MASK << (fromIndex & 7)));
+		long w = word(u) & (-1L << fromIndex);
 
 		while (true) {
-			if (b != 0)
-				return (u * 8) + Integer.numberOfTrailingZeros(b);
-			if (++u == position)
+			if (w != 0)
+				return (u * 64) + Long.numberOfTrailingZeros(w);
+			if (++u == wordsInUse)
 				return -1;
-			b = byt(u);
+			w = word(u);
 		}
 	}
 
@@ -777,20 +1084,22 @@ public class BufferBitSet implements Cloneable {
 		if (fromIndex < 0)
 			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
 
-		final int position = buffer.position();
+		final int wordsInUse = wordsInUse();
 
-		int u = byteIndex(fromIndex);
-		if (u >= position)
+		int u = wordIndex(fromIndex);
+		if (u >= wordsInUse)
 			return fromIndex;
 
-		byte b = (byte) (~byt(u) & (MASK << (fromIndex & 7)));
+		// bits beyond the bytes in use are read as zero, so only a fully used final
+		// word can fall through to wordsInUse * 64
+		long w = ~word(u) & (-1L << fromIndex);
 
 		while (true) {
-			if (b != 0)
-				return (u * 8) + Integer.numberOfTrailingZeros(b);
-			if (++u == position)
-				return position * 8;
-			b = (byte) ~byt(u);
+			if (w != 0)
+				return (u * 64) + Long.numberOfTrailingZeros(w);
+			if (++u == wordsInUse)
+				return wordsInUse * 64;
+			w = ~word(u);
 		}
 	}
 
@@ -812,18 +1121,18 @@ public class BufferBitSet implements Cloneable {
 			throw new IndexOutOfBoundsException("fromIndex < -1: " + fromIndex);
 		}
 
-		int u = byteIndex(fromIndex);
-		if (u >= buffer.position())
+		int u = wordIndex(fromIndex);
+		if (u >= wordsInUse())
 			return lastSetBit();
 
-		byte b = (byte) (byt(u) & (MASK >>> ((-(fromIndex + 1)) & 7)));
+		long w = word(u) & (-1L >>> ~fromIndex);
 
 		while (true) {
-			if (b != 0)
-				return (u + 1) * 8 - 1 - numberOfLeadingZeros(b);
+			if (w != 0)
+				return (u + 1) * 64 - 1 - Long.numberOfLeadingZeros(w);
 			if (u-- == 0)
 				return -1;
-			b = byt(u);
+			w = word(u);
 		}
 	}
 
@@ -845,18 +1154,18 @@ public class BufferBitSet implements Cloneable {
 			throw new IndexOutOfBoundsException("fromIndex < -1: " + fromIndex);
 		}
 
-		int u = byteIndex(fromIndex);
-		if (u >= buffer.position())
+		int u = wordIndex(fromIndex);
+		if (u >= wordsInUse())
 			return fromIndex;
 
-		byte b = (byte) (~byt(u) & (MASK >>> ((-(fromIndex + 1)) & 7)));
+		long w = ~word(u) & (-1L >>> ~fromIndex);
 
 		while (true) {
-			if (b != 0)
-				return (u + 1) * 8 - 1 - numberOfLeadingZeros(b);
+			if (w != 0)
+				return (u + 1) * 64 - 1 - Long.numberOfLeadingZeros(w);
 			if (u-- == 0)
 				return -1;
-			b = (byte) ~byt(u);
+			w = ~word(u);
 		}
 	}
 
@@ -877,6 +1186,137 @@ public class BufferBitSet implements Cloneable {
 		return 8 * lastUsedIndex - 1 + (8 - numberOfLeadingZeros(byt(lastUsedIndex)));
 	}
 
+	/*--------------------------------------------------------------------------------
+	 *  Bulk iteration over set bits
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Performs the given action for the index of each bit that is set to
+	 * {@code true}, in ascending order. Set bits are decoded a 64-bit word at a
+	 * time.
+	 *
+	 * @param action - the action to be performed for each set bit
+	 */
+	public void forEachSetBit(IntConsumer action) {
+		// the range overload cannot reach Integer.MAX_VALUE, since toIndex is exclusive
+		final int wordsInUse = wordsInUse();
+
+		for (int u = 0; u < wordsInUse; u++) {
+			for (long w = word(u); w != 0; w &= w - 1)
+				action.accept((u << 6) + Long.numberOfTrailingZeros(w));
+		}
+	}
+
+	/**
+	 * Performs the given action for the index of each bit from the specified
+	 * {@code fromIndex} (inclusive) to the specified {@code toIndex} (exclusive)
+	 * that is set to {@code true}, in ascending order. Set bits are decoded a
+	 * 64-bit word at a time.
+	 *
+	 * @param fromIndex - index of the first bit to visit
+	 * @param toIndex   - index after the last bit to visit
+	 * @param action    - the action to be performed for each set bit
+	 *
+	 * @throws IndexOutOfBoundsException if {@code fromIndex} is negative, or
+	 *                                   {@code toIndex} is negative, or
+	 *                                   {@code fromIndex} is larger than
+	 *                                   {@code toIndex}
+	 */
+	public void forEachSetBit(int fromIndex, int toIndex, IntConsumer action) {
+		checkRange(fromIndex, toIndex);
+
+		if (fromIndex == toIndex)
+			return;
+
+		final int firstWord = wordIndex(fromIndex);
+		final int toWord = wordIndex(toIndex - 1);
+		final int lastWord = Math.min(toWord, wordsInUse() - 1);
+
+		for (int u = firstWord; u <= lastWord; u++) {
+			long w = word(u);
+			if (u == firstWord)
+				w &= -1L << fromIndex;
+			if (u == toWord)
+				w &= -1L >>> -toIndex;
+
+			while (w != 0) {
+				action.accept((u << 6) + Long.numberOfTrailingZeros(w));
+				w &= w - 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns a stream of indices for which this bitset contains a bit in the set
+	 * state. The indices are returned in order, from lowest to highest. The size
+	 * of the stream is the number of bits in the set state, equal to the value
+	 * returned by the {@link #cardinality()} method.
+	 * <p>
+	 * The stream is backed by a
+	 * {@link BufferSpliterators.BitSetSpliterator BitSetSpliterator}, which splits
+	 * on word boundaries with exact sizes, so it can be efficiently
+	 * {@link IntStream#parallel() parallelized}. The bitset must remain unmodified
+	 * during the execution of the terminal stream operation.
+	 *
+	 * @return a stream of integers representing set indices
+	 */
+	public IntStream stream() {
+		return StreamSupport.intStream(new BufferSpliterators.BitSetSpliterator(this), false);
+	}
+
+	/**
+	 * Writes the indices of the bits that are set to {@code true} on or after the
+	 * specified starting index into the provided {@link IntBuffer}, starting at its
+	 * current position. Indices are written in ascending order until either the
+	 * buffer has no remaining space or there are no more set bits. The buffer's
+	 * position is advanced by the number of indices written.
+	 * <p>
+	 * A typical loop which visits every set bit in batches:
+	 * 
+	 * <pre>
+	 * IntBuffer batch = IntBuffer.allocate(1024);
+	 * for (int from = 0; bs.nextSetBits(from, batch.clear()) &gt; 0;) {
+	 * 	batch.flip();
+	 * 	// ... process batch ...
+	 * 	from = batch.get(batch.limit() - 1) + 1;
+	 * }
+	 * </pre>
+	 *
+	 * @param fromIndex - the index to start checking from (inclusive)
+	 * @param out       - the buffer which receives the indices of set bits
+	 *
+	 * @return the number of indices written, which is zero if and only if there
+	 *         are no set bits on or after {@code fromIndex}, or {@code out} has no
+	 *         remaining space
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public int nextSetBits(int fromIndex, IntBuffer out) {
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+
+		final int remaining = out.remaining();
+		final int wordsInUse = wordsInUse();
+
+		int u = wordIndex(fromIndex);
+		if (u >= wordsInUse || remaining == 0)
+			return 0;
+
+		int count = 0;
+		long w = word(u) & (-1L << fromIndex);
+
+		while (true) {
+			while (w != 0) {
+				out.put((u << 6) + Long.numberOfTrailingZeros(w));
+				if (++count == remaining)
+					return count;
+				w &= w - 1;
+			}
+			if (++u == wordsInUse)
+				return count;
+			w = word(u);
+		}
+	}
+
 	/*--------------------------------------------------------------------------------
 	 *  Logical operations - and/or/xor/andNot
 	 *-------------------------------------------------------------------------------*/
@@ -974,7 +1414,306 @@ public class BufferBitSet implements Cloneable {
 	}
 
 	/*--------------------------------------------------------------------------------
-	 *  shift-right
+	 *  Logical operations - multi-way andAll/orAll/xorAll
+	 *-------------------------------------------------------------------------------*/
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int XOR = 2;
+
+	/**
+	 * Number of words processed by each task of a parallel multi-way operation
+	 */
+	private static final int PARALLEL_CHUNK_WORDS = 1 << 13;
+
+	/**
+	 * Returns a new resizable bitset containing the logical <b>AND</b> of all of
+	 * the specified bitsets. The inputs are combined word-by-word in a single pass,
+	 * without writing any intermediate results. If no bitsets are specified, the
+	 * result is empty.
+	 *
+	 * @param sets - the bitsets to combine
+	 *
+	 * @return the logical <b>AND</b> of all of the specified bitsets
+	 */
+	public static BufferBitSet andAll(BufferBitSet... sets) {
+		return andAll(new BufferBitSet(), false, sets);
+	}
+
+	/**
+	 * Stores the logical <b>AND</b> of all of the specified bitsets in
+	 * {@code target}, replacing its previous content. The inputs are combined
+	 * word-by-word in a single pass, and a word is skipped as soon as it becomes
+	 * zero. The target may also be one of the inputs. If no bitsets are specified,
+	 * the result is empty.
+	 *
+	 * @param target   - the bitset which receives the result
+	 * @param parallel - if true, ranges of words are combined in parallel
+	 * @param sets     - the bitsets to combine
+	 *
+	 * @return {@code target}
+	 *
+	 * @throws IndexOutOfBoundsException if {@code target} is not resizable and is
+	 *                                   too small to hold the result
+	 */
+	public static BufferBitSet andAll(BufferBitSet target, boolean parallel, BufferBitSet... sets) {
+		return combineAll(AND, target, parallel, sets);
+	}
+
+	/**
+	 * Returns a new resizable bitset containing the logical <b>OR</b> of all of
+	 * the specified bitsets. The inputs are combined word-by-word in a single pass,
+	 * without writing any intermediate results.
+	 *
+	 * @param sets - the bitsets to combine
+	 *
+	 * @return the logical <b>OR</b> of all of the specified bitsets
+	 */
+	public static BufferBitSet orAll(BufferBitSet... sets) {
+		return orAll(new BufferBitSet(), false, sets);
+	}
+
+	/**
+	 * Stores the logical <b>OR</b> of all of the specified bitsets in
+	 * {@code target}, replacing its previous content. The inputs are combined
+	 * word-by-word in a single pass, and a word is skipped as soon as all of its
+	 * bits are set. The target may also be one of the inputs.
+	 *
+	 * @param target   - the bitset which receives the result
+	 * @param parallel - if true, ranges of words are combined in parallel
+	 * @param sets     - the bitsets to combine
+	 *
+	 * @return {@code target}
+	 *
+	 * @throws IndexOutOfBoundsException if {@code target} is not resizable and is
+	 *                                   too small to hold the result
+	 */
+	public static BufferBitSet orAll(BufferBitSet target, boolean parallel, BufferBitSet... sets) {
+		return combineAll(OR, target, parallel, sets);
+	}
+
+	/**
+	 * Returns a new resizable bitset containing the logical <b>XOR</b> of all of
+	 * the specified bitsets. The inputs are combined word-by-word in a single pass,
+	 * without writing any intermediate results.
+	 *
+	 * @param sets - the bitsets to combine
+	 *
+	 * @return the logical <b>XOR</b> of all of the specified bitsets
+	 */
+	public static BufferBitSet xorAll(BufferBitSet... sets) {
+		return xorAll(new BufferBitSet(), false, sets);
+	}
+
+	/**
+	 * Stores the logical <b>XOR</b> of all of the specified bitsets in
+	 * {@code target}, replacing its previous content. The inputs are combined
+	 * word-by-word in a single pass. The target may also be one of the inputs.
+	 *
+	 * @param target   - the bitset which receives the result
+	 * @param parallel - if true, ranges of words are combined in parallel
+	 * @param sets     - the bitsets to combine
+	 *
+	 * @return {@code target}
+	 *
+	 * @throws IndexOutOfBoundsException if {@code target} is not resizable and is
+	 *                                   too small to hold the result
+	 */
+	public static BufferBitSet xorAll(BufferBitSet target, boolean parallel, BufferBitSet... sets) {
+		return combineAll(XOR, target, parallel, sets);
+	}
+
+	private static BufferBitSet combineAll(int op, BufferBitSet target, boolean parallel, BufferBitSet[] sets) {
+
+		// number of bytes which might be non-zero in the result
+		int bytes = sets.length == 0 ? 0 : sets[0].buffer.position();
+		for (int i = 1; i < sets.length; i++) {
+			if (op == AND)
+				bytes = Math.min(bytes, sets[i].buffer.position());
+			else
+				bytes = Math.max(bytes, sets[i].buffer.position());
+		}
+
+		// clear anything in the target beyond the result. If the target is also an
+		// input, these bytes cannot affect the result.
+		final int position = target.buffer.position();
+		for (int i = bytes; i < position; i++)
+			target.put(i, 0);
+		target.buffer.position(Math.min(bytes, position));
+
+		if (bytes == 0)
+			return target;
+
+		target.expandTo(bytes - 1);
+
+		// the result is counted lazily, rather than word by word
+		target.invalidateCache();
+
+		final int words = wordIndex(bytes * 8 - 1) + 1;
+
+		if (parallel && words > PARALLEL_CHUNK_WORDS) {
+			// the parallel tasks must not update the dirty pages concurrently
+			if (target.dirty != null)
+				target.markDirty(0, bytes);
+
+			final int chunks = (words + PARALLEL_CHUNK_WORDS - 1) / PARALLEL_CHUNK_WORDS;
+			IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				final int from = chunk * PARALLEL_CHUNK_WORDS;
+				combineAll(op, target, sets, from, Math.min(words, from + PARALLEL_CHUNK_WORDS));
+			});
+		} else
+			combineAll(op, target, sets, 0, words);
+
+		target.recalculateBytesInUse();
+
+		return target;
+	}
+
+	private static void combineAll(int op, BufferBitSet target, BufferBitSet[] sets, int fromWord, int toWord) {
+		final int n = sets.length;
+
+		for (int u = fromWord; u < toWord; u++) {
+			long w = sets[0].word(u);
+
+			switch (op) {
+			case AND:
+				for (int i = 1; i < n && w != 0; i++)
+					w &= sets[i].word(u);
+				break;
+			case OR:
+				for (int i = 1; i < n && w != -1L; i++)
+					w |= sets[i].word(u);
+				break;
+			default:
+				for (int i = 1; i < n; i++)
+					w ^= sets[i].word(u);
+			}
+
+			target.putWord(u, w);
+		}
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Logical predicates and counts, computed without modifying either bitset
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns true if the specified bitset has any bits set to {@code true} that
+	 * are also set to {@code true} in this bitset.
+	 *
+	 * @param set - bitset to intersect with
+	 *
+	 * @return boolean indicating whether this bitset intersects the specified
+	 *         bitset
+	 */
+	public boolean intersects(BufferBitSet set) {
+		final int words = Math.min(wordsInUse(), set.wordsInUse());
+
+		for (int u = 0; u < words; u++)
+			if ((word(u) & set.word(u)) != 0)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Returns true if every bit set to {@code true} in this bitset is also set to
+	 * {@code true} in the specified bitset.
+	 *
+	 * @param set - a {@link BufferBitSet}
+	 *
+	 * @return boolean indicating whether this bitset is a subset of the specified
+	 *         bitset
+	 */
+	public boolean isSubsetOf(BufferBitSet set) {
+		if (buffer.position() > set.buffer.position())
+			return false;
+
+		final int words = wordsInUse();
+		for (int u = 0; u < words; u++)
+			if ((word(u) & ~set.word(u)) != 0)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in the logical <b>AND</b> of
+	 * this bitset and the specified bitset. Equivalent to, but much faster than,
+	 * {@code and}-ing a copy of this bitset and calling {@link #cardinality()}.
+	 *
+	 * @param set - a {@link BufferBitSet}
+	 *
+	 * @return the cardinality of the logical <b>AND</b> of the two bitsets
+	 */
+	public int andCardinality(BufferBitSet set) {
+		final int words = Math.min(wordsInUse(), set.wordsInUse());
+
+		int count = 0;
+		for (int u = 0; u < words; u++)
+			count += Long.bitCount(word(u) & set.word(u));
+
+		return count;
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in the logical <b>OR</b> of
+	 * this bitset and the specified bitset. Equivalent to, but much faster than,
+	 * {@code or}-ing a copy of this bitset and calling {@link #cardinality()}.
+	 *
+	 * @param set - a {@link BufferBitSet}
+	 *
+	 * @return the cardinality of the logical <b>OR</b> of the two bitsets
+	 */
+	public int orCardinality(BufferBitSet set) {
+		final int words = Math.max(wordsInUse(), set.wordsInUse());
+
+		int count = 0;
+		for (int u = 0; u < words; u++)
+			count += Long.bitCount(word(u) | set.word(u));
+
+		return count;
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in the logical <b>XOR</b> of
+	 * this bitset and the specified bitset. Equivalent to, but much faster than,
+	 * {@code xor}-ing a copy of this bitset and calling {@link #cardinality()}.
+	 *
+	 * @param set - a {@link BufferBitSet}
+	 *
+	 * @return the cardinality of the logical <b>XOR</b> of the two bitsets
+	 */
+	public int xorCardinality(BufferBitSet set) {
+		final int words = Math.max(wordsInUse(), set.wordsInUse());
+
+		int count = 0;
+		for (int u = 0; u < words; u++)
+			count += Long.bitCount(word(u) ^ set.word(u));
+
+		return count;
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in this bitset whose
+	 * corresponding bit is not set in the specified bitset. Equivalent to, but
+	 * much faster than, {@code andNot}-ing a copy of this bitset and calling
+	 * {@link #cardinality()}.
+	 *
+	 * @param set - a {@link BufferBitSet}
+	 *
+	 * @return the cardinality of the logical <b>AND NOT</b> of the two bitsets
+	 */
+	public int andNotCardinality(BufferBitSet set) {
+		final int words = wordsInUse();
+
+		int count = 0;
+		for (int u = 0; u < words; u++)
+			count += Long.bitCount(word(u) & ~set.word(u));
+
+		return count;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  shift-right and shift-left
 	 *-------------------------------------------------------------------------------*/
 	/**
 	 * Returns a copy of this bitset with each bit shifted right by {@code offset}.
@@ -1025,6 +1764,130 @@ public class BufferBitSet implements Cloneable {
 		return new BufferBitSet(buffer, resizable, false);
 	}
 
+	/**
+	 * Shifts each bit in this bitset right by {@code offset}, in place, so that
+	 * bit {@code i} moves to {@code i + offset}. The shift is performed a 64-bit
+	 * word at a time, and reuses the existing buffer when its capacity allows.
+	 * 
+	 * @param offset - number of bits to shift by
+	 * 
+	 * @throws IllegalArgumentException  if offset is negative
+	 * @throws IllegalStateException     if the shifted size exceeds the maximum
+	 *                                   addressable size ({@code 2^31-1})
+	 * @throws IndexOutOfBoundsException if this bitset is not resizable and the
+	 *                                   shifted bits do not fit in its buffer
+	 */
+	public void shiftRightInPlace(int offset) {
+
+		final int shiftedLastSetBit = lastSetBit() + offset;
+
+		if (offset < 0)
+			throw new IllegalArgumentException("offset < 0: " + offset);
+		else if (offset == 0 || isEmpty())
+			return;
+		else if (shiftedLastSetBit < 0)
+			throw new IllegalStateException("shifted size exceeds max addressable size (2^31-1)");
+
+		expandTo(byteIndex(shiftedLastSetBit));
+
+		final int wordShift = wordIndex(offset);
+		final int bitShift = offset & 63;
+
+		// work downwards, so that each source word is read before it is overwritten
+		for (int u = wordIndex(shiftedLastSetBit); u >= wordShift; u--) {
+			long w = word(u - wordShift) << bitShift;
+			if (bitShift != 0 && u > wordShift)
+				w |= word(u - wordShift - 1) >>> -bitShift;
+			putWord(u, w);
+		}
+
+		for (int u = wordShift - 1; u >= 0; u--)
+			putWord(u, 0);
+
+		// recalculateBytesInUse() is unnecessary
+	}
+
+	/**
+	 * Returns a copy of this bitset with each bit shifted left by {@code offset},
+	 * so that bit {@code i} moves to {@code i - offset}, and bits below
+	 * {@code offset} are discarded. The resulting bitset will always be stored in
+	 * newly allocated space, sized to fit only the bits which survive the shift,
+	 * and will have the same resizable setting as this bitset. To shift without
+	 * copying, use {@link #shiftLeftInPlace(int)}.
+	 * 
+	 * @param offset - number of bits to shift by
+	 * 
+	 * @return a new bitset shifted left by {@code offset}
+	 * 
+	 * @throws IllegalArgumentException if offset is negative
+	 */
+	public BufferBitSet shiftLeft(int offset) {
+
+		if (offset < 0)
+			throw new IllegalArgumentException("offset < 0: " + offset);
+		else if (offset == 0)
+			return copy();
+
+		final int shiftedLastSetBit = lastSetBit() - offset;
+		if (shiftedLastSetBit < 0)
+			return new BufferBitSet(resizable);
+
+		final int bytes = byteIndex(shiftedLastSetBit) + 1;
+		final BufferBitSet shifted = new BufferBitSet(allocate(bytes), resizable, false);
+		shifted.buffer.position(bytes);
+
+		final int wordShift = wordIndex(offset);
+		final int bitShift = offset & 63;
+
+		final int words = wordIndex(shiftedLastSetBit) + 1;
+		for (int u = 0; u < words; u++)
+			shifted.putWord(u, wordShiftedLeft(u, wordShift, bitShift));
+
+		return shifted;
+	}
+
+	/**
+	 * Shifts each bit in this bitset left by {@code offset}, in place, so that
+	 * bit {@code i} moves to {@code i - offset}, and bits below {@code offset} are
+	 * discarded. The shift is performed a 64-bit word at a time, and never
+	 * requires a larger buffer.
+	 * 
+	 * @param offset - number of bits to shift by
+	 * 
+	 * @throws IllegalArgumentException if offset is negative
+	 */
+	public void shiftLeftInPlace(int offset) {
+
+		if (offset < 0)
+			throw new IllegalArgumentException("offset < 0: " + offset);
+		else if (offset == 0 || isEmpty())
+			return;
+
+		final int position = buffer.position();
+		final int wordShift = wordIndex(offset);
+		final int bitShift = offset & 63;
+
+		// work upwards, so that each source word is read before it is overwritten
+		final int words = Math.max(wordsInUse() - wordShift, 0);
+		for (int u = 0; u < words; u++)
+			putWord(u, wordShiftedLeft(u, wordShift, bitShift));
+
+		for (int i = words * 8; i < position; i++)
+			put(i, 0);
+
+		recalculateBytesInUse();
+	}
+
+	/**
+	 * Returns word {@code u} of this bitset after a left shift
+	 */
+	private long wordShiftedLeft(int u, int wordShift, int bitShift) {
+		long w = word(u + wordShift) >>> bitShift;
+		if (bitShift != 0)
+			w |= word(u + wordShift + 1) << -bitShift;
+		return w;
+	}
+
 	/*--------------------------------------------------------------------------------
 	 *  Object & Collection-like methods
 	 *-------------------------------------------------------------------------------*/
@@ -1078,6 +1941,38 @@ public class BufferBitSet implements Cloneable {
 		return buffer.position() == 0;
 	}
 
+	/**
+	 * Starts or stops caching this bitset's {@link #cardinality() cardinality} and
+	 * {@link #hashCode() hash code}. While caching, each is computed at most once
+	 * between modifications, so repeated calls on an unchanged bitset (for example
+	 * when it is used as a hash map key) take constant time. The cached
+	 * cardinality is maintained incrementally by single-bit and range operations,
+	 * and the logical operations, and is recomputed lazily after bulk operations
+	 * such as {@link #orAll(BufferBitSet, boolean, BufferBitSet...) orAll}. The
+	 * hash code is recomputed lazily after any modification.
+	 * <p>
+	 * Caching is not carried over to copies of this bitset, and only tracks
+	 * modifications made through this bitset: writing to the buffer directly, or
+	 * through another bitset sharing it, leaves stale values behind.
+	 * 
+	 * @param cache - true to start caching, false to stop
+	 */
+	public void cacheCardinalityAndHash(boolean cache) {
+		caching = cache;
+		invalidateCache();
+	}
+
+	/**
+	 * Returns true if this bitset caches its cardinality and hash code.
+	 * 
+	 * @return true if this bitset caches its cardinality and hash code
+	 * 
+	 * @see #cacheCardinalityAndHash(boolean)
+	 */
+	public boolean isCachingCardinalityAndHash() {
+		return caching;
+	}
+
 	/**
 	 * Returns the number of bits set to {@code true} in this {@link BufferBitSet}.
 	 *
@@ -1085,12 +1980,18 @@ public class BufferBitSet implements Cloneable {
 	 */
 	public int cardinality() {
 
+		if (caching && cachedCardinality >= 0)
+			return cachedCardinality;
+
 		final int position = buffer.position();
 		int count = 0;
 
 		for (int i = 0; i < position; i++)
 			count += bitCount(byt(i) & 0xFF);
 
+		if (caching)
+			cachedCardinality = count;
+
 		return count;
 	}
 
@@ -1157,6 +2058,8 @@ public class BufferBitSet implements Cloneable {
 
 		if (isEmpty())
 			return 0;
+		if (caching && hashCached)
+			return cachedHash;
 
 		final int position = buffer.position();
 		int result = 1;
@@ -1164,6 +2067,11 @@ public class BufferBitSet implements Cloneable {
 		for (int i = 0; i < position; i++)
 			result = 31 * result + byt(i);
 
+		if (caching) {
+			cachedHash = result;
+			hashCached = true;
+		}
+
 		return result;
 	}
 
@@ -1195,6 +2103,8 @@ public class BufferBitSet implements Cloneable {
 
 		if (position != set.buffer.position())
 			return false;
+		if (caching && set.caching && hashCached && set.hashCached && cachedHash != set.cachedHash)
+			return false;
 
 		// Check bytes in use by both bitsets
 		for (int i = 0; i < position; i++)
@@ -1261,12 +2171,21 @@ public class BufferBitSet implements Cloneable {
 	 * Discard upper bytes that are not in use (zero / all clear)
 	 */
 	private void recalculateBytesInUse() {
-		// find last set bit
-		int n = buffer.position() - 1;
-		while (n >= 0 && byt(n) == 0)
+		int n = buffer.position();
+
+		// step back to a word boundary, then skip whole zero words
+		for (; (n & 7) != 0; n--) {
+			if (byt(n - 1) != 0) {
+				buffer.position(n);
+				return;
+			}
+		}
+		while (n >= 8 && buffer.getLong(n - 8) == 0)
+			n -= 8;
+		while (n > 0 && byt(n - 1) == 0)
 			n--;
 
-		buffer.position(n + 1);
+		buffer.position(n);
 	}
 
 	/**
@@ -1280,6 +2199,10 @@ public class BufferBitSet implements Cloneable {
 
 			buffer.position(bytesInCommon);
 			buffer.put(slice(set.buffer, bytesInCommon, set.buffer.position()));
+
+			if (dirty != null)
+				markDirty(bytesInCommon, set.buffer.position());
+			invalidateCache();
 		}
 	}
 
@@ -1293,6 +2216,13 @@ public class BufferBitSet implements Cloneable {
 		return bitIndex >> 3;
 	}
 
+	/**
+	 * Given a bit index, return word index containing it.
+	 */
+	private static int wordIndex(int bitIndex) {
+		return bitIndex >> 6;
+	}
+
 	/**
 	 * Given a bit index, return single-bit mask into containing byte.
 	 */
@@ -1307,6 +2237,79 @@ public class BufferBitSet implements Cloneable {
 		return buffer.get(byteIndex);
 	}
 
+	/**
+	 * Number of 64-bit words needed to cover the bytes in use
+	 */
+	int wordsInUse() {
+		return (buffer.position() + 7) >> 3;
+	}
+
+	/**
+	 * Given a word index, return the 64-bit word containing bits
+	 * {@code wordIndex * 64} through {@code wordIndex * 64 + 63}. Bit {@code n} of
+	 * the word is bit {@code wordIndex * 64 + n} of this bitset, regardless of the
+	 * buffer's byte order. Bytes which are not in use are read as zero.
+	 */
+	long word(int wordIndex) {
+		final int byteIndex = wordIndex << 3;
+		final int position = buffer.position();
+
+		if (byteIndex + 8 <= position) {
+			final long w = buffer.getLong(byteIndex);
+			return buffer.order() == LITTLE_ENDIAN ? w : Long.reverseBytes(w);
+		}
+
+		long w = 0;
+		for (int i = Math.min(position, byteIndex + 8) - 1; i >= byteIndex; i--)
+			w = (w << 8) | (byt(i) & MASK);
+		return w;
+	}
+
+	/**
+	 * Write a 64-bit word, the inverse of {@link #word(int)}. Bytes beyond the
+	 * buffer's limit are not written, so the caller must ensure that the
+	 * corresponding bits of the word are zero. The position is not updated.
+	 */
+	void putWord(int wordIndex, long w) {
+		final int byteIndex = wordIndex << 3;
+		final int limit = buffer.limit();
+
+		if (byteIndex + 8 <= limit) {
+			final boolean tracking = dirty != null || caching;
+			final long old = tracking ? word(wordIndex) : 0;
+
+			buffer.putLong(byteIndex, buffer.order() == LITTLE_ENDIAN ? w : Long.reverseBytes(w));
+
+			if (tracking && old != w)
+				modified(byteIndex, byteIndex + 8, Long.bitCount(w) - Long.bitCount(old));
+		} else {
+			for (int i = byteIndex; i < limit; i++, w >>>= 8)
+				put(i, (int) w);
+		}
+	}
+
+	/**
+	 * Ensures that bits up to {@code toIndex} (exclusive) can be written with
+	 * {@link #putWord(int, long)}.
+	 */
+	void reserve(int toIndex) {
+		if (toIndex > 0)
+			expandTo(byteIndex(toIndex - 1));
+	}
+
+	/**
+	 * Updates the bytes in use after bits up to {@code toIndex} (exclusive) have
+	 * been written with {@link #putWord(int, long)}.
+	 */
+	void written(int toIndex) {
+		if (toIndex > 0) {
+			final int end = byteIndex(toIndex - 1) + 1;
+			if (buffer.position() < end)
+				buffer.position(end);
+			recalculateBytesInUse();
+		}
+	}
+
 	// canary method used to detect spurious down-conversions from int to byte
 //	private void put(int byteIndex, byte b) {}
 
@@ -1315,7 +2318,52 @@ public class BufferBitSet implements Cloneable {
 	 * comes in as an {@code int} due to widening from logical operations.
 	 */
 	private void put(int byteIndex, int b) {
+		final boolean tracking = dirty != null || caching;
+		final int old = tracking ? byt(byteIndex) & MASK : 0;
+
 		buffer.put(byteIndex, (byte) b);
+
+		// record the change only once the write has succeeded, so that a
+		// read-only buffer leaves the cache and dirty pages untouched
+		if (tracking && old != (b & MASK))
+			modified(byteIndex, byteIndex + 1, bitCount(b & MASK) - bitCount(old));
+	}
+
+	/**
+	 * Records that the specified range of bytes has been changed, altering the
+	 * number of set bits by {@code delta}.
+	 */
+	private void modified(int fromByte, int toByte, int delta) {
+		if (dirty != null)
+			markDirty(fromByte, toByte);
+
+		if (caching) {
+			hashCached = false;
+			if (cachedCardinality >= 0)
+				cachedCardinality += delta;
+		}
+	}
+
+	/**
+	 * Discards the cached cardinality and hash code ahead of a bulk modification,
+	 * so that they are recomputed when next requested.
+	 */
+	private void invalidateCache() {
+		cachedCardinality = -1;
+		hashCached = false;
+	}
+
+	/**
+	 * Marks the pages covering the specified range of bytes as dirty. A page which
+	 * is already dirty is not written, so marking a range in advance makes later
+	 * writes within it safe to perform concurrently.
+	 */
+	private void markDirty(int fromByte, int toByte) {
+		final int fromPage = fromByte >>> DIRTY_PAGE_SHIFT;
+		final int toPage = ((toByte - 1) >>> DIRTY_PAGE_SHIFT) + 1;
+
+		if (dirty.nextClearBit(fromPage) < toPage)
+			dirty.set(fromPage, toPage);
 	}
 
 	/**
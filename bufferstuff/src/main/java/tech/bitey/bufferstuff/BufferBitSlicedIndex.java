@@ -0,0 +1,312 @@
+package tech.bitey.bufferstuff;
+
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A bit-sliced index over a range of an {@link IntBuffer} or
+ * {@link LongBuffer}. Each value is stored as its offset from the minimum value
+ * in the range, and bit {@code k} of every offset is stored in its own
+ * {@link BufferBitSet}, the {@code k}-th slice. Bit {@code i} of a slice
+ * corresponds to index {@code i} of the underlying buffer.
+ * <p>
+ * Comparisons against a constant are answered with one pass of word-parallel
+ * logical operations per slice (the O'Neil-Quass algorithm), and sums with one
+ * {@link BufferBitSet#andCardinality(BufferBitSet) andCardinality} per slice.
+ * The number of slices is the number of bits needed to represent
+ * {@code max - min}, so this works best for columns with a narrow range of
+ * values.
+ * <p>
+ * An index is a snapshot, and must be rebuilt if the underlying buffer is
+ * modified. All buffers allocated by this class are procured via
+ * {@link BufferUtils#allocate(int)}.
+ *
+ * @author biteytech@protonmail.com
+ */
+public final class BufferBitSlicedIndex {
+
+	private final long min;
+	private final long max;
+
+	// the indices covered by this index
+	private final BufferBitSet rows;
+
+	// slices[k] contains bit k of (value - min)
+	private final BufferBitSet[] slices;
+
+	private BufferBitSlicedIndex(int fromIndex, int toIndex, long min, long max) {
+		this.min = min;
+		this.max = max;
+
+		this.rows = new BufferBitSet();
+		rows.set(fromIndex, toIndex);
+
+		// each slice is sized for the whole range up front, see trimSlices()
+		this.slices = new BufferBitSet[64 - Long.numberOfLeadingZeros(max - min)];
+		for (int k = 0; k < slices.length; k++) {
+			slices[k] = new BufferBitSet();
+			slices[k].reserve(toIndex);
+		}
+	}
+
+	/**
+	 * Builds a bit-sliced index over a range of the specified {@link IntBuffer}.
+	 *
+	 * @param b         - the buffer to be indexed
+	 * @param fromIndex - the index of the first element (inclusive) to be indexed
+	 * @param toIndex   - the index of the last element (exclusive) to be indexed
+	 *
+	 * @return a bit-sliced index over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static BufferBitSlicedIndex of(IntBuffer b, int fromIndex, int toIndex) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+
+		int min = 0, max = 0;
+		if (fromIndex < toIndex) {
+			min = max = b.get(fromIndex);
+			for (int i = fromIndex + 1; i < toIndex; i++) {
+				int v = b.get(i);
+				if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+		}
+
+		BufferBitSlicedIndex index = new BufferBitSlicedIndex(fromIndex, toIndex, min, max);
+
+		for (int i = fromIndex; i < toIndex; i++)
+			index.add(i, (long) b.get(i) - min);
+
+		return index.trimSlices(toIndex);
+	}
+
+	/**
+	 * Builds a bit-sliced index over a range of the specified {@link LongBuffer}.
+	 *
+	 * @param b         - the buffer to be indexed
+	 * @param fromIndex - the index of the first element (inclusive) to be indexed
+	 * @param toIndex   - the index of the last element (exclusive) to be indexed
+	 *
+	 * @return a bit-sliced index over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static BufferBitSlicedIndex of(LongBuffer b, int fromIndex, int toIndex) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+
+		long min = 0, max = 0;
+		if (fromIndex < toIndex) {
+			min = max = b.get(fromIndex);
+			for (int i = fromIndex + 1; i < toIndex; i++) {
+				long v = b.get(i);
+				if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+		}
+
+		BufferBitSlicedIndex index = new BufferBitSlicedIndex(fromIndex, toIndex, min, max);
+
+		for (int i = fromIndex; i < toIndex; i++)
+			index.add(i, b.get(i) - min);
+
+		return index.trimSlices(toIndex);
+	}
+
+	/**
+	 * Updates each slice's bytes in use once every offset has been added, since
+	 * the space reserved by the constructor may end in clear bits.
+	 */
+	private BufferBitSlicedIndex trimSlices(int toIndex) {
+		for (BufferBitSet slice : slices)
+			slice.written(toIndex);
+		return this;
+	}
+
+	/**
+	 * Records the specified offset (an unsigned value) for the specified index.
+	 */
+	private void add(int index, long offset) {
+		for (; offset != 0; offset &= offset - 1)
+			slices[Long.numberOfTrailingZeros(offset)].set(index);
+	}
+
+	/**
+	 * Returns the smallest value in the indexed range, or zero if the range is
+	 * empty.
+	 *
+	 * @return the smallest value in the indexed range
+	 */
+	public long min() {
+		return min;
+	}
+
+	/**
+	 * Returns the largest value in the indexed range, or zero if the range is
+	 * empty.
+	 *
+	 * @return the largest value in the indexed range
+	 */
+	public long max() {
+		return max;
+	}
+
+	/**
+	 * Returns the number of bit slices in this index.
+	 *
+	 * @return the number of bit slices in this index
+	 */
+	public int sliceCount() {
+		return slices.length;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Comparisons
+	 *-------------------------------------------------------------------------------*/
+	private static final int LT = 0;
+	private static final int EQ = 1;
+	private static final int GT = 2;
+
+	/**
+	 * Returns a bitset containing every index in the indexed range whose value is
+	 * equal to the specified value.
+	 *
+	 * @param value - the value to compare against
+	 *
+	 * @return a new resizable bitset of matching indices
+	 */
+	public BufferBitSet equalTo(long value) {
+		if (rows.isEmpty() || value < min || value > max)
+			return new BufferBitSet();
+
+		return compare(value)[EQ];
+	}
+
+	/**
+	 * Returns a bitset containing every index in the indexed range whose value is
+	 * less than the specified value.
+	 *
+	 * @param value - the value to compare against
+	 *
+	 * @return a new resizable bitset of matching indices
+	 */
+	public BufferBitSet lessThan(long value) {
+		if (rows.isEmpty() || value <= min)
+			return new BufferBitSet();
+		if (value > max)
+			return rows.copy();
+
+		return compare(value)[LT];
+	}
+
+	/**
+	 * Returns a bitset containing every index in the indexed range whose value is
+	 * greater than the specified value.
+	 *
+	 * @param value - the value to compare against
+	 *
+	 * @return a new resizable bitset of matching indices
+	 */
+	public BufferBitSet greaterThan(long value) {
+		if (rows.isEmpty() || value >= max)
+			return new BufferBitSet();
+		if (value < min)
+			return rows.copy();
+
+		return compare(value)[GT];
+	}
+
+	/**
+	 * Returns a bitset containing every index in the indexed range whose value is
+	 * between {@code lo} and {@code hi} (both inclusive).
+	 *
+	 * @param lo - the lowest value of interest (inclusive)
+	 * @param hi - the highest value of interest (inclusive)
+	 *
+	 * @return a new resizable bitset of matching indices
+	 */
+	public BufferBitSet between(long lo, long hi) {
+		lo = Math.max(lo, min);
+		hi = Math.min(hi, max);
+
+		if (rows.isEmpty() || lo > hi)
+			return new BufferBitSet();
+
+		final BufferBitSet[] low = compare(lo);
+		final BufferBitSet result = low[GT];
+		result.or(low[EQ]);
+
+		if (hi < max) {
+			final BufferBitSet[] high = compare(hi);
+			high[LT].or(high[EQ]);
+			result.and(high[LT]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Compares every value in the index against the specified value, which must be
+	 * between {@code min} and {@code max}. Returns the indices of the values which
+	 * are less than, equal to, and greater than it.
+	 */
+	private BufferBitSet[] compare(long value) {
+		final long offset = value - min;
+
+		final BufferBitSet lt = new BufferBitSet();
+		final BufferBitSet eq = rows.copy();
+		final BufferBitSet gt = new BufferBitSet();
+
+		// from the most significant slice down, eq holds the indices whose offsets
+		// match the higher bits of the constant
+		for (int k = slices.length - 1; k >= 0; k--) {
+			final BufferBitSet slice = slices[k];
+			final BufferBitSet diverging = eq.copy();
+
+			if ((offset & (1L << k)) != 0) {
+				diverging.andNot(slice);
+				lt.or(diverging);
+				eq.and(slice);
+			} else {
+				diverging.and(slice);
+				gt.or(diverging);
+				eq.andNot(slice);
+			}
+		}
+
+		return new BufferBitSet[] { lt, eq, gt };
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Aggregation
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the sum of the values at the indices which are set in the specified
+	 * filter. Indices outside of the indexed range are ignored. The sum is
+	 * computed with one {@link BufferBitSet#andCardinality(BufferBitSet)
+	 * andCardinality} per slice, and overflows silently, exactly as if the values
+	 * were added one by one with {@code long} arithmetic.
+	 *
+	 * @param filter - the indices of the values to sum
+	 *
+	 * @return the sum of the selected values
+	 */
+	public long sum(BufferBitSet filter) {
+		long sum = min * rows.andCardinality(filter);
+
+		for (int k = 0; k < slices.length; k++)
+			sum += (long) slices[k].andCardinality(filter) << k;
+
+		return sum;
+	}
+}
@@ -0,0 +1,417 @@
+package tech.bitey.bufferstuff;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static tech.bitey.bufferstuff.BufferUtils.allocate;
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+import static tech.bitey.bufferstuff.BufferUtils.readFully;
+import static tech.bitey.bufferstuff.BufferUtils.writeFully;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A Bloom filter over {@code int} and {@code long} keys, which stores its bits
+ * in a non-resizable {@link BufferBitSet}. A Bloom filter can report that a key
+ * might have been added, or that it definitely has not been added. It is useful
+ * for skipping lookups (for example a
+ * {@link BufferSearch#binarySearch(LongBuffer, int, int, long) binarySearch})
+ * which are known to fail.
+ * <p>
+ * A <em>blocked</em> Bloom filter maps each key to a single 512-bit block (one
+ * cache line), and sets all of the key's bits within that block. This costs a
+ * slightly higher false positive rate for a given size, but each add or probe
+ * touches only one cache line.
+ * <p>
+ * This class is not thread safe. All {@code ByteBuffers} allocated by this
+ * class are procured via {@link BufferUtils#allocate(int)}.
+ *
+ * @author biteytech@protonmail.com
+ */
+public class BufferBloomFilter {
+
+	private static final int BLOCK_BITS = 512;
+
+	private static final int MAX_HASHES = 30;
+
+	private static final byte STANDARD = 0;
+	private static final byte BLOCKED = 1;
+
+	private final BufferBitSet bits;
+	private final int numBits;
+	private final int numHashes;
+	private final boolean blocked;
+
+	private BufferBloomFilter(int numBits, int numHashes, boolean blocked) {
+		this.bits = new BufferBitSet(allocate((int) (((long) numBits + 7) >>> 3)), false);
+		this.numBits = numBits;
+		this.numHashes = numHashes;
+		this.blocked = blocked;
+	}
+
+	/**
+	 * Creates a standard Bloom filter sized for the specified number of insertions
+	 * and desired false positive probability.
+	 *
+	 * @param expectedInsertions - the number of keys expected to be added
+	 * @param fpp                - the desired false positive probability
+	 *
+	 * @return a new, empty Bloom filter
+	 *
+	 * @throws IllegalArgumentException if {@code expectedInsertions < 0}, or
+	 *                                  {@code fpp} is not between zero and one
+	 *                                  (exclusive)
+	 */
+	public static BufferBloomFilter create(int expectedInsertions, double fpp) {
+		return create(expectedInsertions, fpp, false);
+	}
+
+	/**
+	 * Creates a blocked (cache-line) Bloom filter sized for the specified number of
+	 * insertions and desired false positive probability.
+	 *
+	 * @param expectedInsertions - the number of keys expected to be added
+	 * @param fpp                - the desired false positive probability
+	 *
+	 * @return a new, empty blocked Bloom filter
+	 *
+	 * @throws IllegalArgumentException if {@code expectedInsertions < 0}, or
+	 *                                  {@code fpp} is not between zero and one
+	 *                                  (exclusive)
+	 */
+	public static BufferBloomFilter createBlocked(int expectedInsertions, double fpp) {
+		return create(expectedInsertions, fpp, true);
+	}
+
+	private static BufferBloomFilter create(int expectedInsertions, double fpp, boolean blocked) {
+		if (expectedInsertions < 0)
+			throw new IllegalArgumentException("expectedInsertions < 0: " + expectedInsertions);
+		if (!(fpp > 0 && fpp < 1))
+			throw new IllegalArgumentException("fpp must be between zero and one (exclusive): " + fpp);
+
+		final double ln2 = Math.log(2);
+		final long n = Math.max(expectedInsertions, 1);
+
+		long numBits = (long) Math.ceil(-n * Math.log(fpp) / (ln2 * ln2));
+		numBits = Math.max(numBits, 64);
+		if (blocked)
+			numBits = (numBits + BLOCK_BITS - 1) / BLOCK_BITS * BLOCK_BITS;
+		numBits = Math.min(numBits, (long) Integer.MAX_VALUE + 1 - (blocked ? BLOCK_BITS : 64));
+
+		int numHashes = (int) Math.round((double) numBits / n * ln2);
+		numHashes = Math.max(1, Math.min(numHashes, MAX_HASHES));
+
+		return new BufferBloomFilter((int) numBits, numHashes, blocked);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Getters
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the number of bits in this filter.
+	 *
+	 * @return the number of bits in this filter
+	 */
+	public int numBits() {
+		return numBits;
+	}
+
+	/**
+	 * Returns the number of bits set (or probed) per key.
+	 *
+	 * @return the number of bits set per key
+	 */
+	public int numHashes() {
+		return numHashes;
+	}
+
+	/**
+	 * Returns true if this is a blocked (cache-line) Bloom filter.
+	 *
+	 * @return true if this is a blocked Bloom filter
+	 */
+	public boolean isBlocked() {
+		return blocked;
+	}
+
+	/**
+	 * Returns the {@link BufferBitSet} backing this filter.
+	 *
+	 * @return the {@link BufferBitSet} backing this filter
+	 */
+	public BufferBitSet getBitSet() {
+		return bits;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Add and probe
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Adds the specified key to this filter.
+	 *
+	 * @param key - the key to add
+	 */
+	public void add(int key) {
+		add0(mix(key));
+	}
+
+	/**
+	 * Adds the specified key to this filter.
+	 *
+	 * @param key - the key to add
+	 */
+	public void add(long key) {
+		add0(mix(key));
+	}
+
+	/**
+	 * Adds every key in a range of the specified {@link IntBuffer} to this filter.
+	 *
+	 * @param b         - the keys to add
+	 * @param fromIndex - the index of the first element (inclusive) to be added
+	 * @param toIndex   - the index of the last element (exclusive) to be added
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public void addAll(IntBuffer b, int fromIndex, int toIndex) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+
+		for (int i = fromIndex; i < toIndex; i++)
+			add0(mix(b.get(i)));
+	}
+
+	/**
+	 * Adds every key in a range of the specified {@link LongBuffer} to this
+	 * filter.
+	 *
+	 * @param b         - the keys to add
+	 * @param fromIndex - the index of the first element (inclusive) to be added
+	 * @param toIndex   - the index of the last element (exclusive) to be added
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public void addAll(LongBuffer b, int fromIndex, int toIndex) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+
+		for (int i = fromIndex; i < toIndex; i++)
+			add0(mix(b.get(i)));
+	}
+
+	/**
+	 * Returns true if the specified key might have been added to this filter, or
+	 * false if it definitely has not been.
+	 *
+	 * @param key - the key to probe for
+	 *
+	 * @return false if the key has definitely not been added
+	 */
+	public boolean mightContain(int key) {
+		return mightContain0(mix(key));
+	}
+
+	/**
+	 * Returns true if the specified key might have been added to this filter, or
+	 * false if it definitely has not been.
+	 *
+	 * @param key - the key to probe for
+	 *
+	 * @return false if the key has definitely not been added
+	 */
+	public boolean mightContain(long key) {
+		return mightContain0(mix(key));
+	}
+
+	/**
+	 * Probes for every key in a range of the specified {@link IntBuffer}. For each
+	 * index {@code i} in the range, bit {@code i} of {@code result} is set if
+	 * {@code b.get(i)} might have been added to this filter. Other bits in the
+	 * result are not modified.
+	 *
+	 * @param b         - the keys to probe for
+	 * @param fromIndex - the index of the first element (inclusive) to be probed
+	 * @param toIndex   - the index of the last element (exclusive) to be probed
+	 * @param result    - the bitset which receives the indices of possible matches
+	 *
+	 * @return the number of possible matches
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or if {@code result} is not resizable and
+	 *                                   too small
+	 */
+	public int mightContainAll(IntBuffer b, int fromIndex, int toIndex, BufferBitSet result) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+
+		if (fromIndex == toIndex)
+			return 0;
+
+		result.reserve(toIndex);
+
+		int count = 0;
+		for (int i = fromIndex; i < toIndex; i++) {
+			if (mightContain0(mix(b.get(i)))) {
+				result.set(i);
+				count++;
+			}
+		}
+
+		result.written(toIndex);
+		return count;
+	}
+
+	/**
+	 * Probes for every key in a range of the specified {@link LongBuffer}. For each
+	 * index {@code i} in the range, bit {@code i} of {@code result} is set if
+	 * {@code b.get(i)} might have been added to this filter. Other bits in the
+	 * result are not modified.
+	 *
+	 * @param b         - the keys to probe for
+	 * @param fromIndex - the index of the first element (inclusive) to be probed
+	 * @param toIndex   - the index of the last element (exclusive) to be probed
+	 * @param result    - the bitset which receives the indices of possible matches
+	 *
+	 * @return the number of possible matches
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or if {@code result} is not resizable and
+	 *                                   too small
+	 */
+	public int mightContainAll(LongBuffer b, int fromIndex, int toIndex, BufferBitSet result) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+
+		if (fromIndex == toIndex)
+			return 0;
+
+		result.reserve(toIndex);
+
+		int count = 0;
+		for (int i = fromIndex; i < toIndex; i++) {
+			if (mightContain0(mix(b.get(i)))) {
+				result.set(i);
+				count++;
+			}
+		}
+
+		result.written(toIndex);
+		return count;
+	}
+
+	private void add0(long hash) {
+		if (blocked) {
+			final int base = block(hash) * BLOCK_BITS;
+			final int h1 = (int) hash;
+			final int h2 = (int) (hash >>> 32) | 1;
+			for (int i = 0; i < numHashes; i++)
+				bits.set(base + ((h1 + i * h2) >>> 23));
+		} else {
+			final long h1 = (int) hash;
+			final long h2 = (int) (hash >>> 32);
+			for (int i = 0; i < numHashes; i++)
+				bits.set((int) (((h1 + i * h2) & Long.MAX_VALUE) % numBits));
+		}
+	}
+
+	private boolean mightContain0(long hash) {
+		if (blocked) {
+			final int base = block(hash) * BLOCK_BITS;
+			final int h1 = (int) hash;
+			final int h2 = (int) (hash >>> 32) | 1;
+			for (int i = 0; i < numHashes; i++)
+				if (!bits.get(base + ((h1 + i * h2) >>> 23)))
+					return false;
+		} else {
+			final long h1 = (int) hash;
+			final long h2 = (int) (hash >>> 32);
+			for (int i = 0; i < numHashes; i++)
+				if (!bits.get((int) (((h1 + i * h2) & Long.MAX_VALUE) % numBits)))
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Maps a hash to a block, using bits which are independent of those used to
+	 * select the bits within the block.
+	 */
+	private int block(long hash) {
+		long g = (hash * 0x9E3779B97F4A7C15L) >>> 32;
+		return (int) ((g * (numBits / BLOCK_BITS)) >>> 32);
+	}
+
+	/**
+	 * MurmurHash3 64-bit finalizer
+	 */
+	private static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Methods for reading from and writing to a channel
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Write this filter to the specified {@link WritableByteChannel}. This method
+	 * will write a 9-byte header, followed by the backing bitset as written by
+	 * {@link BufferBitSet#writeTo(WritableByteChannel)}.
+	 *
+	 * @param channel - the channel to write to
+	 *
+	 * @throws IOException if some I/O error occurs
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(9).order(BIG_ENDIAN);
+		header.put(0, blocked ? BLOCKED : STANDARD);
+		header.putInt(1, numBits);
+		header.putInt(5, numHashes);
+
+		writeFully(channel, header);
+		bits.writeTo(channel);
+	}
+
+	/**
+	 * Read a filter from the specified {@link ReadableByteChannel}. The filter must
+	 * have been previously written with {@link #writeTo(WritableByteChannel)}.
+	 *
+	 * @param channel - the channel to read from
+	 *
+	 * @return a filter from the specified channel
+	 *
+	 * @throws IOException if some I/O error occurs
+	 */
+	public static BufferBloomFilter readFrom(ReadableByteChannel channel) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(9).order(BIG_ENDIAN);
+		readFully(channel, header);
+
+		final byte type = header.get(0);
+		final int numBits = header.getInt(1);
+		final int numHashes = header.getInt(5);
+
+		if ((type != STANDARD && type != BLOCKED) || numBits <= 0 || numHashes <= 0)
+			throw new IOException("invalid bloom filter header");
+
+		final BufferBitSet bits = BufferBitSet.readFrom(channel);
+		if (bits.lastSetBit() >= numBits)
+			throw new IOException("bloom filter bits exceed numBits: " + numBits);
+
+		BufferBloomFilter filter = new BufferBloomFilter(numBits, numHashes, type == BLOCKED);
+		filter.bits.or(bits);
+
+		return filter;
+	}
+}
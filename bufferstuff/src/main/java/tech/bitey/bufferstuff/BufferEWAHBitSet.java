@@ -0,0 +1,601 @@
+package tech.bitey.bufferstuff;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static tech.bitey.bufferstuff.BufferUtils.allocate;
+import static tech.bitey.bufferstuff.BufferUtils.duplicate;
+import static tech.bitey.bufferstuff.BufferUtils.readFully;
+import static tech.bitey.bufferstuff.BufferUtils.writeFully;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable bitset compressed with an Enhanced Word-Aligned Hybrid (EWAH)
+ * encoding. The bits are viewed as a sequence of 64-bit words, where runs of
+ * all-zero or all-one words are replaced by a count. The encoded form is a
+ * sequence of <em>marker</em> words, each of which is followed by zero or more
+ * <em>literal</em> (uncompressed) words:
+ * <ul>
+ * <li>bit 63 - the value of the run's fill bit
+ * <li>bits 32 to 62 - the number of words in the run
+ * <li>bits 0 to 31 - the number of literal words following the marker
+ * </ul>
+ * Sparse or clustered bitsets compress very well, and {@link #and
+ * and}/{@link #or or} are computed directly on the encoded words, skipping
+ * whole runs at a time.
+ * <p>
+ * This is the format written by {@link BufferBitSet#writeCompressedTo}. Both
+ * {@link BufferBitSet#readFrom(ReadableByteChannel)} and
+ * {@link #readFrom(ReadableByteChannel)} detect the format from the header, so
+ * either can read either format.
+ * <p>
+ * All {@code ByteBuffers} allocated by this class are procured via
+ * {@link BufferUtils#allocate(int)}.
+ *
+ * @author biteytech@protonmail.com
+ */
+public final class BufferEWAHBitSet {
+
+	/**
+	 * Flag set in the first byte of the header to indicate the compressed format.
+	 * The uncompressed format stores a bit offset between 0 and 7 in this byte.
+	 */
+	static final int COMPRESSED_FLAG = 0x80;
+
+	/** An empty {@link BufferEWAHBitSet} */
+	public static final BufferEWAHBitSet EMPTY = new BufferEWAHBitSet(allocate(0).order(BIG_ENDIAN), 0);
+
+	private static final int MAX_RUN = Integer.MAX_VALUE;
+
+	/**
+	 * Maximum number of words, encoded or not: the size of the largest
+	 * {@link BufferBitSet}.
+	 */
+	static final int MAX_WORDS = BufferBitSet.MAX_CAPACITY / 8;
+
+	/**
+	 * The encoded words, in big-endian order so they can be written as-is.
+	 */
+	private final ByteBuffer encoded;
+
+	/** number of uncompressed words */
+	private final int sizeInWords;
+
+	private BufferEWAHBitSet(ByteBuffer encoded, int sizeInWords) {
+		this.encoded = encoded;
+		this.sizeInWords = sizeInWords;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Conversion to and from BufferBitSet
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns a compressed copy of the specified {@link BufferBitSet}.
+	 *
+	 * @param bs - the bitset to copy
+	 *
+	 * @return a compressed copy of the specified bitset
+	 */
+	public static BufferEWAHBitSet valueOf(BufferBitSet bs) {
+
+		Encoder encoder = new Encoder();
+
+		final int wordsInUse = bs.wordsInUse();
+		for (int u = 0; u < wordsInUse; u++)
+			encoder.addWord(bs.word(u));
+
+		return encoder.build();
+	}
+
+	/**
+	 * Returns a new resizable {@link BufferBitSet} containing all of the bits in
+	 * this compressed bitset.
+	 *
+	 * @return a new resizable {@link BufferBitSet} containing all of the bits in
+	 *         this compressed bitset
+	 */
+	public BufferBitSet toBufferBitSet() {
+
+		if (sizeInWords == 0)
+			return new BufferBitSet();
+
+		final ByteBuffer buffer = allocate(sizeInWords * 8).order(LITTLE_ENDIAN);
+
+		int u = 0;
+		for (WordIterator i = new WordIterator(this); i.hasNext();) {
+			if (i.run > 0) {
+				if (i.fill) {
+					for (int j = 0; j < i.run; j++)
+						buffer.putLong((u + j) * 8, -1L);
+				}
+				u += i.run;
+				i.skip(i.run);
+			} else {
+				buffer.putLong((u++) * 8, i.literal());
+			}
+		}
+
+		return new BufferBitSet(buffer, true);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Getters
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the number of 64-bit words covered by this bitset, before
+	 * compression.
+	 *
+	 * @return the number of uncompressed words
+	 */
+	public int sizeInWords() {
+		return sizeInWords;
+	}
+
+	/**
+	 * Returns the number of bytes in the encoded form of this bitset.
+	 *
+	 * @return the number of bytes in the encoded form of this bitset
+	 */
+	public int sizeInBytes() {
+		return encoded.capacity();
+	}
+
+	/**
+	 * Returns true if this bitset contains no bits that are set to {@code true}.
+	 *
+	 * @return boolean indicating whether this bitset is empty
+	 */
+	public boolean isEmpty() {
+		return sizeInWords == 0;
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in this bitset.
+	 *
+	 * @return the number of bits set to {@code true} in this bitset
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (WordIterator i = new WordIterator(this); i.hasNext();) {
+			if (i.run > 0) {
+				if (i.fill)
+					cardinality += i.run * 64;
+				i.skip(i.run);
+			} else
+				cardinality += Long.bitCount(i.literal());
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Performs the given action for the index of each bit that is set to
+	 * {@code true}, in ascending order.
+	 *
+	 * @param action - the action to be performed for each set bit
+	 */
+	public void forEachSetBit(IntConsumer action) {
+		int u = 0;
+		for (WordIterator i = new WordIterator(this); i.hasNext();) {
+			if (i.run > 0) {
+				if (i.fill) {
+					final long to = (long) (u + i.run) << 6;
+					for (long j = (long) u << 6; j < to; j++)
+						action.accept((int) j);
+				}
+				u += i.run;
+				i.skip(i.run);
+			} else {
+				for (long w = i.literal(); w != 0; w &= w - 1)
+					action.accept((u << 6) + Long.numberOfTrailingZeros(w));
+				u++;
+			}
+		}
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Logical operations
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the logical <b>AND</b> of this bitset and the specified bitset,
+	 * computed without decompressing either one.
+	 *
+	 * @param set - a compressed bitset
+	 *
+	 * @return the logical <b>AND</b> of this bitset and the specified bitset
+	 */
+	public BufferEWAHBitSet and(BufferEWAHBitSet set) {
+		return logical(set, true);
+	}
+
+	/**
+	 * Returns the logical <b>OR</b> of this bitset and the specified bitset,
+	 * computed without decompressing either one.
+	 *
+	 * @param set - a compressed bitset
+	 *
+	 * @return the logical <b>OR</b> of this bitset and the specified bitset
+	 */
+	public BufferEWAHBitSet or(BufferEWAHBitSet set) {
+		return logical(set, false);
+	}
+
+	private BufferEWAHBitSet logical(BufferEWAHBitSet set, boolean and) {
+
+		// a run of the absorbing value (0 for AND, 1 for OR) decides the output,
+		// while a run of the identity value copies the other input
+		final boolean absorbing = !and;
+
+		Encoder encoder = new Encoder();
+		WordIterator i1 = new WordIterator(this);
+		WordIterator i2 = new WordIterator(set);
+
+		while (i1.hasNext() && i2.hasNext()) {
+			if (i1.run > 0 || i2.run > 0) {
+				// pick the longer run
+				WordIterator r = i1.run >= i2.run ? i1 : i2;
+				WordIterator other = r == i1 ? i2 : i1;
+				final int n = Math.min(r.run, other.remaining());
+
+				if (r.fill == absorbing) {
+					encoder.addRun(absorbing, n);
+					other.skip(n);
+				} else
+					other.copyTo(encoder, n);
+
+				r.skip(n);
+			} else {
+				final long w1 = i1.literal(), w2 = i2.literal();
+				encoder.addWord(and ? w1 & w2 : w1 | w2);
+			}
+		}
+
+		if (!and) {
+			// copy whatever remains of the longer bitset
+			WordIterator rest = i1.hasNext() ? i1 : i2;
+			rest.copyTo(encoder, rest.remaining());
+		}
+
+		return encoder.build();
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Methods for reading from and writing to a channel
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Write this bitset to the specified {@link WritableByteChannel}. This method
+	 * will write a 5-byte header, followed by the encoded words.
+	 *
+	 * @param channel - the channel to write to
+	 *
+	 * @throws IOException if some I/O error occurs
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(5).order(BIG_ENDIAN);
+		header.put(0, (byte) COMPRESSED_FLAG);
+		header.putInt(1, encoded.capacity() / 8);
+
+		writeFully(channel, header);
+		writeFully(channel, duplicate(encoded));
+	}
+
+	/**
+	 * Read a bitset from the specified {@link ReadableByteChannel}. The bitset must
+	 * have been previously written with {@link #writeTo(WritableByteChannel)},
+	 * {@link BufferBitSet#writeCompressedTo(WritableByteChannel)}, or one of the
+	 * uncompressed {@link BufferBitSet} {@code writeTo} methods.
+	 *
+	 * @param channel - the channel to read from
+	 *
+	 * @return a compressed bitset from the specified channel
+	 *
+	 * @throws IOException if some I/O error occurs
+	 */
+	public static BufferEWAHBitSet readFrom(ReadableByteChannel channel) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(5).order(BIG_ENDIAN);
+		readFully(channel, header);
+
+		if ((header.get(0) & COMPRESSED_FLAG) == 0)
+			return valueOf(BufferBitSet.readFrom(header.get(0), header.getInt(1), channel));
+		else
+			return readEncoded(header.getInt(1), channel);
+	}
+
+	/**
+	 * Reads the specified number of encoded words, which follow a header
+	 * indicating the compressed format.
+	 */
+	static BufferEWAHBitSet readEncoded(int words, ReadableByteChannel channel) throws IOException {
+
+		if (words < 0)
+			throw new IOException("invalid encoded word count: " + words);
+		if (words > MAX_WORDS)
+			throw new IOException("invalid encoded words");
+		if (words == 0)
+			return EMPTY;
+
+		ByteBuffer encoded = allocate(words * 8).order(BIG_ENDIAN);
+		readFully(channel, encoded);
+
+		return wrapEncoded(encoded);
+	}
+
+	/**
+	 * Wraps a buffer containing encoded words, between position zero and the
+	 * buffer's capacity, without copying them.
+	 */
+	static BufferEWAHBitSet wrapEncoded(ByteBuffer encoded) throws IOException {
+
+		encoded.clear().order(BIG_ENDIAN);
+		final int words = encoded.capacity() / 8;
+		if (words > MAX_WORDS)
+			throw new IOException("invalid encoded words");
+
+		// validate markers and count uncompressed words
+		long sizeInWords = 0;
+		for (int i = 0; i < words;) {
+			final long marker = encoded.getLong(i * 8);
+			if (literalCount(marker) < 0)
+				throw new IOException("invalid encoded words");
+
+			sizeInWords += runLength(marker) + literalCount(marker);
+			i += 1 + literalCount(marker);
+			if (i > words || sizeInWords > MAX_WORDS)
+				throw new IOException("invalid encoded words");
+		}
+
+		return words == 0 ? EMPTY : new BufferEWAHBitSet(encoded, (int) sizeInWords);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Object methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns a string representation of this bitset, in the same format as
+	 * {@link BufferBitSet#toString()}.
+	 *
+	 * @return a string representation of this bitset
+	 */
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('[');
+		forEachSetBit(i -> {
+			if (b.length() > 1)
+				b.append(", ");
+			b.append(i);
+		});
+		return b.append(']').toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return encoded.hashCode();
+	}
+
+	/**
+	 * Compares this bitset against the specified object. The result is true if
+	 * and only if the argument is a {@code BufferEWAHBitSet} with exactly the same
+	 * bits set to {@code true}. The encoding is canonical, so equal bitsets have
+	 * identical encoded words.
+	 *
+	 * @param obj - the object to compare with
+	 *
+	 * @return true if the objects are the same; false otherwise
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BufferEWAHBitSet))
+			return false;
+
+		return encoded.equals(((BufferEWAHBitSet) obj).encoded);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Utility methods and classes
+	 *-------------------------------------------------------------------------------*/
+	private static boolean fillBit(long marker) {
+		return marker < 0;
+	}
+
+	private static int runLength(long marker) {
+		return (int) ((marker >>> 32) & MAX_RUN);
+	}
+
+	private static int literalCount(long marker) {
+		return (int) marker;
+	}
+
+	private static long marker(boolean fill, int runLength, int literalCount) {
+		return (fill ? Long.MIN_VALUE : 0) | ((long) runLength << 32) | (literalCount & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Produces the canonical encoding of a sequence of words: all-zero and all-one
+	 * words always become runs, adjacent runs with the same fill are merged, and
+	 * trailing zero words are dropped.
+	 */
+	private static final class Encoder {
+		private long[] words = new long[16];
+		private int size;
+
+		private int markerIndex = -1; // index of the current marker
+
+		// the current marker's fields
+		private boolean fill;
+		private int run;
+		private int literals;
+
+		private int sizeInWords;
+
+		private void addWord(long w) {
+			if (w == 0)
+				addRun(false, 1);
+			else if (w == -1L)
+				addRun(true, 1);
+			else {
+				if (markerIndex < 0)
+					newMarker(false);
+				append(w);
+				literals++;
+				sizeInWords++;
+			}
+		}
+
+		private void addRun(boolean fill, int n) {
+			if (n == 0)
+				return;
+
+			if (markerIndex < 0 || literals > 0 || (run > 0 && this.fill != fill) || run > MAX_RUN - n)
+				newMarker(fill);
+
+			this.fill = fill;
+			run += n;
+			sizeInWords += n;
+		}
+
+		private void newMarker(boolean fill) {
+			flushMarker();
+			markerIndex = size;
+			append(0);
+			this.fill = fill;
+			run = 0;
+			literals = 0;
+		}
+
+		private void flushMarker() {
+			if (markerIndex >= 0)
+				words[markerIndex] = marker(fill, run, literals);
+		}
+
+		private void append(long w) {
+			if (size == words.length)
+				words = Arrays.copyOf(words, size * 2);
+			words[size++] = w;
+		}
+
+		private BufferEWAHBitSet build() {
+
+			// drop trailing zero words
+			if (markerIndex >= 0 && literals == 0 && !fill) {
+				sizeInWords -= run;
+				run = 0;
+				if (markerIndex == size - 1 && run == 0) {
+					size--;
+					markerIndex = -1;
+				}
+			}
+			flushMarker();
+
+			if (size == 0)
+				return EMPTY;
+
+			ByteBuffer encoded = allocate(size * 8).order(BIG_ENDIAN);
+			for (int i = 0; i < size; i++)
+				encoded.putLong(i * 8, words[i]);
+
+			return new BufferEWAHBitSet(encoded, sizeInWords);
+		}
+	}
+
+	/**
+	 * Walks the uncompressed words of an encoded bitset. At any point, either
+	 * {@code run > 0} and the next {@code run} words are all {@code fill}, or the
+	 * next word is a literal.
+	 */
+	private static final class WordIterator {
+		private final ByteBuffer encoded;
+		private final int encodedWords;
+
+		private int next; // index of the next encoded word
+		private boolean fill;
+		private int run;
+		private int literals;
+
+		private int remaining;
+
+		private WordIterator(BufferEWAHBitSet set) {
+			this.encoded = set.encoded;
+			this.encodedWords = set.encoded.capacity() / 8;
+			this.remaining = set.sizeInWords;
+			advance();
+		}
+
+		/**
+		 * Read markers until there is a run or literal to consume
+		 */
+		private void advance() {
+			while (run == 0 && literals == 0 && next < encodedWords) {
+				final long marker = encoded.getLong((next++) * 8);
+				fill = fillBit(marker);
+				run = runLength(marker);
+				literals = literalCount(marker);
+			}
+		}
+
+		private boolean hasNext() {
+			return remaining > 0;
+		}
+
+		private int remaining() {
+			return remaining;
+		}
+
+		/**
+		 * Consume the next word, which must be a literal
+		 */
+		private long literal() {
+			final long w = encoded.getLong((next++) * 8);
+			literals--;
+			remaining--;
+			advance();
+			return w;
+		}
+
+		/**
+		 * Consume the next {@code n} words
+		 */
+		private void skip(int n) {
+			while (n > 0) {
+				if (run > 0) {
+					final int k = Math.min(run, n);
+					run -= k;
+					remaining -= k;
+					n -= k;
+				} else {
+					final int k = Math.min(literals, n);
+					next += k;
+					literals -= k;
+					remaining -= k;
+					n -= k;
+				}
+				advance();
+			}
+		}
+
+		/**
+		 * Consume the next {@code n} words, adding them to the encoder
+		 */
+		private void copyTo(Encoder encoder, int n) {
+			while (n > 0) {
+				if (run > 0) {
+					final int k = Math.min(run, n);
+					encoder.addRun(fill, k);
+					skip(k);
+					n -= k;
+				} else {
+					encoder.addWord(literal());
+					n--;
+				}
+			}
+		}
+	}
+}
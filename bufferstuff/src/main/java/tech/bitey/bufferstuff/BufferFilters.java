@@ -0,0 +1,641 @@
+package tech.bitey.bufferstuff;
+
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Bulk filter kernels which evaluate a predicate over a range of a buffer and
+ * write the result into a {@link BufferBitSet}. Bit {@code i} of the output is
+ * set if and only if element {@code i} of the buffer satisfies the predicate,
+ * for every index {@code i} in the range. Bits of the output outside of the
+ * range are left unchanged.
+ * <p>
+ * Rather than calling {@link BufferBitSet#set(int)} once per match, each kernel
+ * accumulates the results for 64 elements into a word, and writes the word in
+ * one step. For {@code int} and {@code long} elements the comparisons are done
+ * with branch-free arithmetic, so the cost does not depend on the selectivity
+ * of the predicate.
+ * <p>
+ * The output bitset is resized, if necessary, before any bits are written. If
+ * it cannot be resized, an {@link IndexOutOfBoundsException} is thrown.
+ * <p>
+ * <b>Note:</b> ignores {@link java.nio.Buffer#position() position} and
+ * {@link java.nio.Buffer#limit() limit} of all buffers.
+ *
+ * @author biteytech@protonmail.com
+ */
+public enum BufferFilters {
+	; // static methods only, enum prevents instantiation
+
+	/**
+	 * Computes the predicate for elements {@code lo} (inclusive) through
+	 * {@code hi} (exclusive), at most 64 of them. Bit {@code n} of the result
+	 * corresponds to element {@code lo + n}.
+	 */
+	@FunctionalInterface
+	private interface WordKernel {
+		long bits(int lo, int hi);
+	}
+
+	private static void filter(int capacity, int fromIndex, int toIndex, BufferBitSet out, WordKernel kernel) {
+		rangeCheck(capacity, fromIndex, toIndex);
+		if (fromIndex == toIndex)
+			return;
+
+		out.reserve(toIndex);
+
+		for (int lo = fromIndex; lo < toIndex;) {
+			final int u = lo >>> 6;
+			final int hi = (int) Math.min(toIndex, (u + 1L) << 6);
+
+			final long mask = (-1L << lo) & (-1L >>> -hi);
+			final long bits = kernel.bits(lo, hi) << lo;
+
+			// only the first and last words can be partial
+			out.putWord(u, mask == -1L ? bits : (out.word(u) & ~mask) | bits);
+
+			lo = hi;
+		}
+
+		out.written(toIndex);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Branch-free comparisons, returning 1 for true and 0 for false
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns 1 if {@code a < b} (signed), otherwise 0
+	 */
+	private static long lt(long a, long b) {
+		final long d = a - b;
+		return (d ^ ((a ^ b) & (d ^ a))) >>> 63;
+	}
+
+	/**
+	 * Returns 1 if {@code a < b} (unsigned), otherwise 0
+	 */
+	private static long ult(long a, long b) {
+		return ((~a & b) | (~(a ^ b) & (a - b))) >>> 63;
+	}
+
+	/**
+	 * Returns 1 if {@code d == 0}, otherwise 0
+	 */
+	private static long isZero(long d) {
+		return ~(d | -d) >>> 63;
+	}
+
+	private static long bit(boolean b) {
+		return b ? 1L : 0L;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  IntBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is less than {@code x}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void lessThan(IntBuffer b, int fromIndex, int toIndex, int x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | (((long) b.get(i) - x) >>> 63);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is greater than {@code x}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void greaterThan(IntBuffer b, int fromIndex, int toIndex, int x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | (((long) x - b.get(i)) >>> 63);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is equal to {@code x}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void equalTo(IntBuffer b, int fromIndex, int toIndex, int x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | isZero(b.get(i) ^ x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is between {@code lo} and {@code hi}
+	 * (both inclusive).
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param lo        - the lowest value of interest (inclusive)
+	 * @param hi        - the highest value of interest (inclusive)
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void between(IntBuffer b, int fromIndex, int toIndex, int lo, int hi, BufferBitSet out) {
+		// v is in range iff 0 <= v - lo <= hi - lo, which is never true if lo > hi
+		final long span = (long) hi - lo;
+		filter(b.capacity(), fromIndex, toIndex, out, (from, to) -> {
+			long bits = 0;
+			for (int i = to - 1; i >= from; i--) {
+				final long d = (long) b.get(i) - lo;
+				bits = (bits << 1) | (~(d | (span - d)) >>> 63);
+			}
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is contained in {@code values}, which
+	 * must be sorted in ascending order. Membership is tested with
+	 * {@link BufferSearch#binarySearch(IntBuffer, int, int, int) binarySearch}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param values    - the sorted values of interest
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void in(IntBuffer b, int fromIndex, int toIndex, IntBuffer values, BufferBitSet out) {
+		final int n = values.capacity();
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(BufferSearch.binarySearch(values, 0, n, b.get(i)) >= 0);
+			return bits;
+		});
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  LongBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is less than {@code x}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void lessThan(LongBuffer b, int fromIndex, int toIndex, long x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | lt(b.get(i), x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is greater than {@code x}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void greaterThan(LongBuffer b, int fromIndex, int toIndex, long x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | lt(x, b.get(i));
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is equal to {@code x}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void equalTo(LongBuffer b, int fromIndex, int toIndex, long x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | isZero(b.get(i) ^ x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is between {@code lo} and {@code hi}
+	 * (both inclusive).
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param lo        - the lowest value of interest (inclusive)
+	 * @param hi        - the highest value of interest (inclusive)
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void between(LongBuffer b, int fromIndex, int toIndex, long lo, long hi, BufferBitSet out) {
+		// v is in range iff (v - lo) <= (hi - lo) as unsigned values, if lo <= hi
+		final long span = hi - lo;
+		final long empty = lt(hi, lo);
+		filter(b.capacity(), fromIndex, toIndex, out, (from, to) -> {
+			long bits = 0;
+			for (int i = to - 1; i >= from; i--)
+				bits = (bits << 1) | ((ult(span, b.get(i) - lo) | empty) ^ 1);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is contained in {@code values}, which
+	 * must be sorted in ascending order. Membership is tested with
+	 * {@link BufferSearch#binarySearch(LongBuffer, int, int, long) binarySearch}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param values    - the sorted values of interest
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void in(LongBuffer b, int fromIndex, int toIndex, LongBuffer values, BufferBitSet out) {
+		final int n = values.capacity();
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(BufferSearch.binarySearch(values, 0, n, b.get(i)) >= 0);
+			return bits;
+		});
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  FloatBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is less than {@code x}. {@code NaN} is not
+	 * less than any value.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void lessThan(FloatBuffer b, int fromIndex, int toIndex, float x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(b.get(i) < x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is greater than {@code x}. {@code NaN} is
+	 * not greater than any value.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void greaterThan(FloatBuffer b, int fromIndex, int toIndex, float x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(b.get(i) > x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is equal to {@code x}, as determined by
+	 * {@code ==}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void equalTo(FloatBuffer b, int fromIndex, int toIndex, float x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(b.get(i) == x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is between {@code lo} and {@code hi}
+	 * (both inclusive). {@code NaN} is never in range.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param lo        - the lowest value of interest (inclusive)
+	 * @param hi        - the highest value of interest (inclusive)
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void between(FloatBuffer b, int fromIndex, int toIndex, float lo, float hi, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (from, to) -> {
+			long bits = 0;
+			for (int i = to - 1; i >= from; i--) {
+				final float v = b.get(i);
+				bits = (bits << 1) | (bit(v >= lo) & bit(v <= hi));
+			}
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is {@code NaN}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void isNaN(FloatBuffer b, int fromIndex, int toIndex, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--) {
+				final float v = b.get(i);
+				bits = (bits << 1) | bit(v != v);
+			}
+			return bits;
+		});
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  DoubleBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is less than {@code x}. {@code NaN} is not
+	 * less than any value.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void lessThan(DoubleBuffer b, int fromIndex, int toIndex, double x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(b.get(i) < x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is greater than {@code x}. {@code NaN} is
+	 * not greater than any value.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void greaterThan(DoubleBuffer b, int fromIndex, int toIndex, double x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(b.get(i) > x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is equal to {@code x}, as determined by
+	 * {@code ==}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param x         - the value to compare against
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void equalTo(DoubleBuffer b, int fromIndex, int toIndex, double x, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--)
+				bits = (bits << 1) | bit(b.get(i) == x);
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is between {@code lo} and {@code hi}
+	 * (both inclusive). {@code NaN} is never in range.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param lo        - the lowest value of interest (inclusive)
+	 * @param hi        - the highest value of interest (inclusive)
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void between(DoubleBuffer b, int fromIndex, int toIndex, double lo, double hi,
+			BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (from, to) -> {
+			long bits = 0;
+			for (int i = to - 1; i >= from; i--) {
+				final double v = b.get(i);
+				bits = (bits << 1) | (bit(v >= lo) & bit(v <= hi));
+			}
+			return bits;
+		});
+	}
+
+	/**
+	 * Sets each bit of {@code out} in the specified range to whether or not the
+	 * corresponding element of {@code b} is {@code NaN}.
+	 *
+	 * @param b         - the buffer to filter
+	 * @param fromIndex - the index of the first element (inclusive) to be filtered
+	 * @param toIndex   - the index of the last element (exclusive) to be filtered
+	 * @param out       - the bitset in which to record the results
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()},
+	 *                                   or {@code out} is too small and cannot be
+	 *                                   resized
+	 */
+	public static void isNaN(DoubleBuffer b, int fromIndex, int toIndex, BufferBitSet out) {
+		filter(b.capacity(), fromIndex, toIndex, out, (lo, hi) -> {
+			long bits = 0;
+			for (int i = hi - 1; i >= lo; i--) {
+				final double v = b.get(i);
+				bits = (bits << 1) | bit(v != v);
+			}
+			return bits;
+		});
+	}
+}
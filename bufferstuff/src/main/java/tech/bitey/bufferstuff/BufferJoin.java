@@ -0,0 +1,453 @@
+package tech.bitey.bufferstuff;
+
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Sort-merge equi-join of two sorted key buffers. Each range must be sorted in
+ * ascending order prior to making these calls, and may contain duplicates. If
+ * they are not sorted, the results are undefined.
+ * <p>
+ * Every matching pair of indices {@code (leftIndex, rightIndex)} is written to
+ * {@code leftOut} and {@code rightOut}, at the same index in each. Pairs are
+ * written in ascending order of {@code leftIndex}, then {@code rightIndex}.
+ * Runs of duplicate keys are located with
+ * {@link BufferSearch#binaryFindLast(IntBuffer, int, int) binaryFindLast}, and
+ * their cross product is emitted (many-to-many).
+ * <p>
+ * <b>Note:</b> ignores {@link java.nio.Buffer#position() position} and
+ * {@link java.nio.Buffer#limit() limit} of all buffers.
+ *
+ * @author biteytech@protonmail.com
+ */
+public enum BufferJoin {
+	; // static methods only, enum prevents instantiation
+
+	/**
+	 * Number of partitions per thread used by the parallel joins
+	 */
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	/**
+	 * Parallel joins on ranges smaller than this are performed sequentially
+	 */
+	private static final int MIN_PARALLEL_LENGTH = 1 << 13;
+
+	/*--------------------------------------------------------------------------------
+	 *  IntBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Joins the specified ranges, writing the index pairs of all matching keys to
+	 * {@code leftOut} and {@code rightOut} starting at {@code outIndex}.
+	 *
+	 * @param left           the left keys
+	 * @param leftFromIndex  the index of the first element (inclusive) in
+	 *                       {@code left}
+	 * @param leftToIndex    the index of the last element (exclusive) in
+	 *                       {@code left}
+	 * @param right          the right keys
+	 * @param rightFromIndex the index of the first element (inclusive) in
+	 *                       {@code right}
+	 * @param rightToIndex   the index of the last element (exclusive) in
+	 *                       {@code right}
+	 * @param leftOut        receives the left index of each matching pair
+	 * @param rightOut       receives the right index of each matching pair
+	 * @param outIndex       the index in {@code leftOut} and {@code rightOut} of
+	 *                       the first pair written
+	 *
+	 * @return the (exclusive) highest index in {@code leftOut} and
+	 *         {@code rightOut} written to
+	 *
+	 * @throws IllegalArgumentException  if a {@code fromIndex} is greater than its
+	 *                                   {@code toIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if the
+	 *                                   output buffers are not large enough to hold
+	 *                                   the result
+	 *
+	 * @see #mergeJoinCount(IntBuffer, int, int, IntBuffer, int, int)
+	 */
+	public static int mergeJoin(IntBuffer left, int leftFromIndex, int leftToIndex, IntBuffer right,
+			int rightFromIndex, int rightToIndex, IntBuffer leftOut, IntBuffer rightOut, int outIndex) {
+		rangeCheck(left.capacity(), leftFromIndex, leftToIndex);
+		rangeCheck(right.capacity(), rightFromIndex, rightToIndex);
+		rangeCheck(leftOut.capacity(), outIndex, outIndex);
+		rangeCheck(rightOut.capacity(), outIndex, outIndex);
+
+		return (int) join(left, leftFromIndex, leftToIndex, right, rightFromIndex, rightToIndex, leftOut, rightOut,
+				outIndex);
+	}
+
+	/**
+	 * Returns the number of index pairs which
+	 * {@link #mergeJoin(IntBuffer, int, int, IntBuffer, int, int, IntBuffer, IntBuffer, int)
+	 * mergeJoin} would produce for the specified ranges, without writing them
+	 * anywhere.
+	 *
+	 * @param left           the left keys
+	 * @param leftFromIndex  the index of the first element (inclusive) in
+	 *                       {@code left}
+	 * @param leftToIndex    the index of the last element (exclusive) in
+	 *                       {@code left}
+	 * @param right          the right keys
+	 * @param rightFromIndex the index of the first element (inclusive) in
+	 *                       {@code right}
+	 * @param rightToIndex   the index of the last element (exclusive) in
+	 *                       {@code right}
+	 *
+	 * @return the number of matching pairs
+	 *
+	 * @throws IllegalArgumentException  if a {@code fromIndex} is greater than its
+	 *                                   {@code toIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static long mergeJoinCount(IntBuffer left, int leftFromIndex, int leftToIndex, IntBuffer right,
+			int rightFromIndex, int rightToIndex) {
+		rangeCheck(left.capacity(), leftFromIndex, leftToIndex);
+		rangeCheck(right.capacity(), rightFromIndex, rightToIndex);
+
+		return join(left, leftFromIndex, leftToIndex, right, rightFromIndex, rightToIndex, null, null, 0);
+	}
+
+	/**
+	 * Parallel version of
+	 * {@link #mergeJoin(IntBuffer, int, int, IntBuffer, int, int, IntBuffer, IntBuffer, int)
+	 * mergeJoin}. The left range is partitioned by key, such that no run of
+	 * duplicates is split across partitions, and each partition is matched against
+	 * the corresponding range of right keys. Partitions are first counted, and then
+	 * written, in parallel. The output is identical to the sequential version.
+	 *
+	 * @param left           the left keys
+	 * @param leftFromIndex  the index of the first element (inclusive) in
+	 *                       {@code left}
+	 * @param leftToIndex    the index of the last element (exclusive) in
+	 *                       {@code left}
+	 * @param right          the right keys
+	 * @param rightFromIndex the index of the first element (inclusive) in
+	 *                       {@code right}
+	 * @param rightToIndex   the index of the last element (exclusive) in
+	 *                       {@code right}
+	 * @param leftOut        receives the left index of each matching pair
+	 * @param rightOut       receives the right index of each matching pair
+	 * @param outIndex       the index in {@code leftOut} and {@code rightOut} of
+	 *                       the first pair written
+	 *
+	 * @return the (exclusive) highest index in {@code leftOut} and
+	 *         {@code rightOut} written to
+	 *
+	 * @throws IllegalArgumentException  if a {@code fromIndex} is greater than its
+	 *                                   {@code toIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if the
+	 *                                   output buffers are not large enough to hold
+	 *                                   the result
+	 */
+	public static int parallelMergeJoin(IntBuffer left, int leftFromIndex, int leftToIndex, IntBuffer right,
+			int rightFromIndex, int rightToIndex, IntBuffer leftOut, IntBuffer rightOut, int outIndex) {
+
+		if (leftToIndex - leftFromIndex < MIN_PARALLEL_LENGTH)
+			return mergeJoin(left, leftFromIndex, leftToIndex, right, rightFromIndex, rightToIndex, leftOut, rightOut,
+					outIndex);
+
+		rangeCheck(left.capacity(), leftFromIndex, leftToIndex);
+		rangeCheck(right.capacity(), rightFromIndex, rightToIndex);
+		rangeCheck(leftOut.capacity(), outIndex, outIndex);
+		rangeCheck(rightOut.capacity(), outIndex, outIndex);
+
+		// partition boundaries, such that each partition starts a new key
+		final int[] lefts = partition(leftFromIndex, leftToIndex);
+		int n = 1;
+		for (int i = 1; i < lefts.length - 1; i++) {
+			int boundary = BufferSearch.binaryFindFirst(left, leftFromIndex, lefts[i]);
+			if (boundary > lefts[n - 1])
+				lefts[n++] = boundary;
+		}
+		lefts[n] = leftToIndex;
+		final int partitions = n;
+
+		final int[] rights = new int[partitions + 1];
+		rights[0] = rightFromIndex;
+		for (int p = 1; p < partitions; p++)
+			rights[p] = BufferSetOps.lowerBound(right, rights[p - 1], rightToIndex, left.get(lefts[p]));
+		rights[partitions] = rightToIndex;
+
+		// count each partition, then write each partition at its offset
+		final long[] offsets = new long[partitions + 1];
+		IntStream.range(0, partitions).parallel().forEach(p -> offsets[p + 1] = join(left, lefts[p], lefts[p + 1],
+				right, rights[p], rights[p + 1], null, null, 0));
+
+		offsets[0] = outIndex;
+		for (int p = 1; p <= partitions; p++)
+			offsets[p] += offsets[p - 1];
+		checkOutput(leftOut.capacity(), rightOut.capacity(), offsets[partitions]);
+
+		IntStream.range(0, partitions).parallel().forEach(p -> join(left, lefts[p], lefts[p + 1], right, rights[p],
+				rights[p + 1], leftOut, rightOut, (int) offsets[p]));
+
+		return (int) offsets[partitions];
+	}
+
+	/**
+	 * Writes the pairs to the output buffers, or just counts them if the outputs
+	 * are null.
+	 */
+	private static long join(IntBuffer left, int leftFromIndex, int leftToIndex, IntBuffer right, int rightFromIndex,
+			int rightToIndex, IntBuffer leftOut, IntBuffer rightOut, long outIndex) {
+
+		int i = leftFromIndex, j = rightFromIndex;
+		long k = outIndex;
+
+		while (i < leftToIndex && j < rightToIndex) {
+			int x = left.get(i);
+			int y = right.get(j);
+
+			if (x < y)
+				i = BufferSetOps.lowerBound(left, i + 1, leftToIndex, y);
+			else if (x > y)
+				j = BufferSetOps.lowerBound(right, j + 1, rightToIndex, x);
+			else {
+				int leftLast = BufferSearch.binaryFindLast(left, leftToIndex, i);
+				int rightLast = BufferSearch.binaryFindLast(right, rightToIndex, j);
+
+				k = emit(i, leftLast, j, rightLast, leftOut, rightOut, k);
+
+				i = leftLast + 1;
+				j = rightLast + 1;
+			}
+		}
+
+		return k;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  LongBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Joins the specified ranges, writing the index pairs of all matching keys to
+	 * {@code leftOut} and {@code rightOut} starting at {@code outIndex}.
+	 *
+	 * @param left           the left keys
+	 * @param leftFromIndex  the index of the first element (inclusive) in
+	 *                       {@code left}
+	 * @param leftToIndex    the index of the last element (exclusive) in
+	 *                       {@code left}
+	 * @param right          the right keys
+	 * @param rightFromIndex the index of the first element (inclusive) in
+	 *                       {@code right}
+	 * @param rightToIndex   the index of the last element (exclusive) in
+	 *                       {@code right}
+	 * @param leftOut        receives the left index of each matching pair
+	 * @param rightOut       receives the right index of each matching pair
+	 * @param outIndex       the index in {@code leftOut} and {@code rightOut} of
+	 *                       the first pair written
+	 *
+	 * @return the (exclusive) highest index in {@code leftOut} and
+	 *         {@code rightOut} written to
+	 *
+	 * @throws IllegalArgumentException  if a {@code fromIndex} is greater than its
+	 *                                   {@code toIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if the
+	 *                                   output buffers are not large enough to hold
+	 *                                   the result
+	 *
+	 * @see #mergeJoinCount(LongBuffer, int, int, LongBuffer, int, int)
+	 */
+	public static int mergeJoin(LongBuffer left, int leftFromIndex, int leftToIndex, LongBuffer right,
+			int rightFromIndex, int rightToIndex, IntBuffer leftOut, IntBuffer rightOut, int outIndex) {
+		rangeCheck(left.capacity(), leftFromIndex, leftToIndex);
+		rangeCheck(right.capacity(), rightFromIndex, rightToIndex);
+		rangeCheck(leftOut.capacity(), outIndex, outIndex);
+		rangeCheck(rightOut.capacity(), outIndex, outIndex);
+
+		return (int) join(left, leftFromIndex, leftToIndex, right, rightFromIndex, rightToIndex, leftOut, rightOut,
+				outIndex);
+	}
+
+	/**
+	 * Returns the number of index pairs which
+	 * {@link #mergeJoin(LongBuffer, int, int, LongBuffer, int, int, IntBuffer, IntBuffer, int)
+	 * mergeJoin} would produce for the specified ranges, without writing them
+	 * anywhere.
+	 *
+	 * @param left           the left keys
+	 * @param leftFromIndex  the index of the first element (inclusive) in
+	 *                       {@code left}
+	 * @param leftToIndex    the index of the last element (exclusive) in
+	 *                       {@code left}
+	 * @param right          the right keys
+	 * @param rightFromIndex the index of the first element (inclusive) in
+	 *                       {@code right}
+	 * @param rightToIndex   the index of the last element (exclusive) in
+	 *                       {@code right}
+	 *
+	 * @return the number of matching pairs
+	 *
+	 * @throws IllegalArgumentException  if a {@code fromIndex} is greater than its
+	 *                                   {@code toIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static long mergeJoinCount(LongBuffer left, int leftFromIndex, int leftToIndex, LongBuffer right,
+			int rightFromIndex, int rightToIndex) {
+		rangeCheck(left.capacity(), leftFromIndex, leftToIndex);
+		rangeCheck(right.capacity(), rightFromIndex, rightToIndex);
+
+		return join(left, leftFromIndex, leftToIndex, right, rightFromIndex, rightToIndex, null, null, 0);
+	}
+
+	/**
+	 * Parallel version of
+	 * {@link #mergeJoin(LongBuffer, int, int, LongBuffer, int, int, IntBuffer, IntBuffer, int)
+	 * mergeJoin}. The left range is partitioned by key, such that no run of
+	 * duplicates is split across partitions, and each partition is matched against
+	 * the corresponding range of right keys. Partitions are first counted, and then
+	 * written, in parallel. The output is identical to the sequential version.
+	 *
+	 * @param left           the left keys
+	 * @param leftFromIndex  the index of the first element (inclusive) in
+	 *                       {@code left}
+	 * @param leftToIndex    the index of the last element (exclusive) in
+	 *                       {@code left}
+	 * @param right          the right keys
+	 * @param rightFromIndex the index of the first element (inclusive) in
+	 *                       {@code right}
+	 * @param rightToIndex   the index of the last element (exclusive) in
+	 *                       {@code right}
+	 * @param leftOut        receives the left index of each matching pair
+	 * @param rightOut       receives the right index of each matching pair
+	 * @param outIndex       the index in {@code leftOut} and {@code rightOut} of
+	 *                       the first pair written
+	 *
+	 * @return the (exclusive) highest index in {@code leftOut} and
+	 *         {@code rightOut} written to
+	 *
+	 * @throws IllegalArgumentException  if a {@code fromIndex} is greater than its
+	 *                                   {@code toIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if the
+	 *                                   output buffers are not large enough to hold
+	 *                                   the result
+	 */
+	public static int parallelMergeJoin(LongBuffer left, int leftFromIndex, int leftToIndex, LongBuffer right,
+			int rightFromIndex, int rightToIndex, IntBuffer leftOut, IntBuffer rightOut, int outIndex) {
+
+		if (leftToIndex - leftFromIndex < MIN_PARALLEL_LENGTH)
+			return mergeJoin(left, leftFromIndex, leftToIndex, right, rightFromIndex, rightToIndex, leftOut, rightOut,
+					outIndex);
+
+		rangeCheck(left.capacity(), leftFromIndex, leftToIndex);
+		rangeCheck(right.capacity(), rightFromIndex, rightToIndex);
+		rangeCheck(leftOut.capacity(), outIndex, outIndex);
+		rangeCheck(rightOut.capacity(), outIndex, outIndex);
+
+		// partition boundaries, such that each partition starts a new key
+		final int[] lefts = partition(leftFromIndex, leftToIndex);
+		int n = 1;
+		for (int i = 1; i < lefts.length - 1; i++) {
+			int boundary = BufferSearch.binaryFindFirst(left, leftFromIndex, lefts[i]);
+			if (boundary > lefts[n - 1])
+				lefts[n++] = boundary;
+		}
+		lefts[n] = leftToIndex;
+		final int partitions = n;
+
+		final int[] rights = new int[partitions + 1];
+		rights[0] = rightFromIndex;
+		for (int p = 1; p < partitions; p++)
+			rights[p] = BufferSetOps.lowerBound(right, rights[p - 1], rightToIndex, left.get(lefts[p]));
+		rights[partitions] = rightToIndex;
+
+		// count each partition, then write each partition at its offset
+		final long[] offsets = new long[partitions + 1];
+		IntStream.range(0, partitions).parallel().forEach(p -> offsets[p + 1] = join(left, lefts[p], lefts[p + 1],
+				right, rights[p], rights[p + 1], null, null, 0));
+
+		offsets[0] = outIndex;
+		for (int p = 1; p <= partitions; p++)
+			offsets[p] += offsets[p - 1];
+		checkOutput(leftOut.capacity(), rightOut.capacity(), offsets[partitions]);
+
+		IntStream.range(0, partitions).parallel().forEach(p -> join(left, lefts[p], lefts[p + 1], right, rights[p],
+				rights[p + 1], leftOut, rightOut, (int) offsets[p]));
+
+		return (int) offsets[partitions];
+	}
+
+	/**
+	 * Writes the pairs to the output buffers, or just counts them if the outputs
+	 * are null.
+	 */
+	private static long join(LongBuffer left, int leftFromIndex, int leftToIndex, LongBuffer right,
+			int rightFromIndex, int rightToIndex, IntBuffer leftOut, IntBuffer rightOut, long outIndex) {
+
+		int i = leftFromIndex, j = rightFromIndex;
+		long k = outIndex;
+
+		while (i < leftToIndex && j < rightToIndex) {
+			long x = left.get(i);
+			long y = right.get(j);
+
+			if (x < y)
+				i = BufferSetOps.lowerBound(left, i + 1, leftToIndex, y);
+			else if (x > y)
+				j = BufferSetOps.lowerBound(right, j + 1, rightToIndex, x);
+			else {
+				int leftLast = BufferSearch.binaryFindLast(left, leftToIndex, i);
+				int rightLast = BufferSearch.binaryFindLast(right, rightToIndex, j);
+
+				k = emit(i, leftLast, j, rightLast, leftOut, rightOut, k);
+
+				i = leftLast + 1;
+				j = rightLast + 1;
+			}
+		}
+
+		return k;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Utility methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Writes the cross product of two (inclusive) runs of matching indices, or just
+	 * counts them if the outputs are null.
+	 */
+	private static long emit(int leftFirst, int leftLast, int rightFirst, int rightLast, IntBuffer leftOut,
+			IntBuffer rightOut, long outIndex) {
+
+		if (leftOut == null)
+			return outIndex + (long) (leftLast - leftFirst + 1) * (rightLast - rightFirst + 1);
+
+		int k = (int) outIndex;
+		for (int l = leftFirst; l <= leftLast; l++) {
+			for (int r = rightFirst; r <= rightLast; r++) {
+				leftOut.put(k, l);
+				rightOut.put(k, r);
+				k++;
+			}
+		}
+
+		return k;
+	}
+
+	/**
+	 * Evenly spaced boundaries dividing a range among the available threads.
+	 */
+	private static int[] partition(int fromIndex, int toIndex) {
+
+		final int length = toIndex - fromIndex;
+		final int partitions = Math.min(length, ForkJoinPool.getCommonPoolParallelism() * PARTITIONS_PER_THREAD);
+
+		int[] boundaries = new int[partitions + 1];
+		for (int p = 0; p <= partitions; p++)
+			boundaries[p] = fromIndex + (int) ((long) length * p / partitions);
+
+		return boundaries;
+	}
+
+	private static void checkOutput(int leftOutCapacity, int rightOutCapacity, long toIndex) {
+		if (toIndex > Math.min(leftOutCapacity, rightOutCapacity))
+			throw new IndexOutOfBoundsException(
+					"result of size " + toIndex + " > " + Math.min(leftOutCapacity, rightOutCapacity));
+	}
+}
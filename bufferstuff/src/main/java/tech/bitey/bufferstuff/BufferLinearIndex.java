@@ -0,0 +1,210 @@
+package tech.bitey.bufferstuff;
+
+import static tech.bitey.bufferstuff.BufferUtils.allocate;
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A piecewise-linear index over a sorted range of a {@link LongBuffer}, in the
+ * style of a PGM index. The keys are divided into segments, each of which maps
+ * a key to its approximate position with a single linear function. The
+ * predicted position of a key which is present in the buffer is guaranteed to
+ * be within {@code epsilon} of the index of its first occurrence, so a lookup
+ * only needs to binary search a window of about {@code 2 * epsilon} elements.
+ * <p>
+ * The number of segments depends on how close to linear the keys are. Keys
+ * such as timestamps at a roughly constant rate need very few segments, and
+ * therefore very little memory.
+ * <p>
+ * An index is a snapshot, and must be rebuilt if the underlying buffer is
+ * modified. All buffers allocated by this class are procured via
+ * {@link BufferUtils#allocate(int)}.
+ *
+ * @author biteytech@protonmail.com
+ */
+public final class BufferLinearIndex {
+
+	/** A reasonable default error bound */
+	public static final int DEFAULT_EPSILON = 32;
+
+	private static final double TWO_64 = 0x1p64;
+
+	private final LongBuffer keys;
+	private final int fromIndex;
+	private final int toIndex;
+	private final int epsilon;
+
+	// one element per segment
+	private final LongBuffer firstKey;
+	private final DoubleBuffer slope;
+	private final IntBuffer start;
+
+	private BufferLinearIndex(LongBuffer keys, int fromIndex, int toIndex, int epsilon, long[] firstKey,
+			double[] slope, int[] start, int segmentCount) {
+
+		this.keys = keys;
+		this.fromIndex = fromIndex;
+		this.toIndex = toIndex;
+		this.epsilon = epsilon;
+
+		this.firstKey = allocate(segmentCount * 8).asLongBuffer();
+		this.slope = allocate(segmentCount * 8).asDoubleBuffer();
+		this.start = allocate(segmentCount * 4).asIntBuffer();
+
+		this.firstKey.put(firstKey, 0, segmentCount);
+		this.slope.put(slope, 0, segmentCount);
+		this.start.put(start, 0, segmentCount);
+	}
+
+	/**
+	 * Builds an index over a range of the specified {@link LongBuffer}. The range
+	 * must be sorted in ascending order prior to making this call. If it is not
+	 * sorted, the results of subsequent searches are undefined.
+	 *
+	 * @param b         - the buffer to be indexed
+	 * @param fromIndex - the index of the first element (inclusive) to be indexed
+	 * @param toIndex   - the index of the last element (exclusive) to be indexed
+	 * @param epsilon   - the maximum error of a predicted position
+	 *
+	 * @return an index over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code epsilon < 0}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static BufferLinearIndex of(LongBuffer b, int fromIndex, int toIndex, int epsilon) {
+		rangeCheck(b.capacity(), fromIndex, toIndex);
+		if (epsilon < 0)
+			throw new IllegalArgumentException("epsilon < 0: " + epsilon);
+
+		long[] firstKey = new long[16];
+		double[] slope = new double[16];
+		int[] start = new int[16];
+		int segmentCount = 0;
+
+		// shrinking cone: the range of slopes which keep every point of the current
+		// segment within epsilon of its prediction
+		long x0 = 0;
+		int y0 = 0;
+		double lo = 0, hi = 0;
+
+		for (int i = fromIndex; i < toIndex; i++) {
+			final long x = b.get(i);
+			if (i > fromIndex && x == b.get(i - 1))
+				continue; // only the first occurrence of each key is indexed
+
+			if (segmentCount > 0) {
+				final double dx = unsignedDelta(x, x0);
+				final double min = (i - epsilon - y0) / dx;
+				final double max = (i + epsilon - y0) / dx;
+
+				if (min <= hi && max >= lo) {
+					lo = Math.max(lo, min);
+					hi = Math.min(hi, max);
+					continue;
+				}
+
+				slope[segmentCount - 1] = (lo + hi) / 2;
+			}
+
+			// start a new segment
+			if (segmentCount == firstKey.length) {
+				firstKey = Arrays.copyOf(firstKey, segmentCount * 2);
+				slope = Arrays.copyOf(slope, segmentCount * 2);
+				start = Arrays.copyOf(start, segmentCount * 2);
+			}
+
+			firstKey[segmentCount] = x0 = x;
+			start[segmentCount] = y0 = i;
+			segmentCount++;
+
+			lo = 0;
+			hi = Double.POSITIVE_INFINITY;
+		}
+
+		if (segmentCount > 0)
+			slope[segmentCount - 1] = hi == Double.POSITIVE_INFINITY ? lo : (lo + hi) / 2;
+
+		return new BufferLinearIndex(b, fromIndex, toIndex, epsilon, firstKey, slope, start, segmentCount);
+	}
+
+	/**
+	 * Returns {@code x - x0} as a non-negative double, where {@code x >= x0}
+	 */
+	private static double unsignedDelta(long x, long x0) {
+		final long delta = x - x0;
+		return delta >= 0 ? delta : delta + TWO_64;
+	}
+
+	/**
+	 * Returns the error bound specified when this index was built.
+	 *
+	 * @return the error bound
+	 */
+	public int epsilon() {
+		return epsilon;
+	}
+
+	/**
+	 * Returns the number of linear segments in this index.
+	 *
+	 * @return the number of linear segments in this index
+	 */
+	public int segmentCount() {
+		return firstKey.limit();
+	}
+
+	/**
+	 * Searches the indexed range for the specified value. The index is used to
+	 * predict the position of the key, and then
+	 * {@link BufferSearch#binarySearch(LongBuffer, int, int, long) binarySearch}
+	 * finishes the search in a small window around that position. If the key is
+	 * not present, its insertion point may fall outside of the window, in which
+	 * case the rest of the segment is searched.
+	 * <p>
+	 * If the range contains multiple elements with the specified value, there is
+	 * no guarantee which one will be found.
+	 *
+	 * @param key - the value to be searched for
+	 *
+	 * @return index of the search key, if it is contained in the indexed range;
+	 *         otherwise, {@code (-(<i>insertion point</i>) - 1)}, exactly as
+	 *         specified by
+	 *         {@link BufferSearch#binarySearch(LongBuffer, int, int, long)}.
+	 */
+	public int binarySearch(long key) {
+
+		final int segmentCount = segmentCount();
+
+		int segment = BufferSearch.binarySearch(firstKey, 0, segmentCount, key);
+		if (segment < 0) {
+			segment = -(segment + 1) - 1;
+			if (segment < 0)
+				return -(fromIndex + 1); // key is smaller than every element
+		}
+
+		final int segFrom = start.get(segment);
+		final int segTo = segment + 1 < segmentCount ? start.get(segment + 1) : toIndex;
+
+		final double predicted = segFrom + slope.get(segment) * unsignedDelta(key, firstKey.get(segment));
+
+		int lo = (int) Math.max(segFrom, Math.min(segTo, predicted - epsilon));
+		int hi = (int) Math.max(segFrom, Math.min(segTo, predicted + epsilon + 2));
+
+		// verify the window, falling back to the rest of the segment if necessary
+		if (lo > segFrom && keys.get(lo - 1) >= key) {
+			hi = lo;
+			lo = segFrom;
+		} else if (hi < segTo && keys.get(hi - 1) < key) {
+			lo = hi;
+			hi = segTo;
+		}
+
+		return BufferSearch.binarySearch(keys, lo, hi, key);
+	}
+}
@@ -0,0 +1,881 @@
+package tech.bitey.bufferstuff;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static tech.bitey.bufferstuff.BufferUtils.allocate;
+import static tech.bitey.bufferstuff.BufferUtils.duplicate;
+import static tech.bitey.bufferstuff.BufferUtils.readFully;
+import static tech.bitey.bufferstuff.BufferUtils.writeFully;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable, compressed bitset in the style of a Roaring bitmap. The range
+ * of non-negative {@code int} indices is divided into chunks of 65536 bits, and
+ * each chunk which contains at least one set bit is stored in whichever of the
+ * following containers is smallest:
+ * <ul>
+ * <li><b>array</b> - the sorted low 16 bits of each set bit, two bytes per set
+ * bit
+ * <li><b>bitmap</b> - a dense 8KB bitmap, in the same layout as a
+ * {@link BufferBitSet}
+ * <li><b>run</b> - a sorted list of runs of consecutive set bits, four bytes
+ * per run
+ * </ul>
+ * A nearly empty or highly clustered bitset therefore costs a tiny fraction of
+ * the space of the equivalent {@code BufferBitSet}. Instances are created from
+ * a {@code BufferBitSet} with {@link #valueOf(BufferBitSet)}, converted back
+ * with {@link #toBufferBitSet()}, and combined with the logical operations,
+ * each of which returns a new instance.
+ * <p>
+ * Each container is stored in its own {@code ByteBuffer}. All
+ * {@code ByteBuffers} allocated by this class are procured via
+ * {@link BufferUtils#allocate(int)}. The allocated buffers will be direct if
+ * the {@code tech.bitey.allocateDirect} system property is set to "true".
+ *
+ * @author biteytech@protonmail.com
+ */
+public final class BufferRoaringBitSet {
+
+	/** An empty {@link BufferRoaringBitSet} */
+	public static final BufferRoaringBitSet EMPTY = new BufferRoaringBitSet(new char[0], new Container[0], 0);
+
+	private static final int CHUNK_BITS = 1 << 16;
+	private static final int CHUNK_WORDS = CHUNK_BITS >>> 6;
+	private static final int CHUNK_BYTES = CHUNK_BITS >>> 3;
+
+	private static final int MAX_ARRAY_CARDINALITY = 4096;
+
+	/** keys are limited to 15 bits, so that every index is a non-negative int */
+	private static final int MAX_CONTAINERS = 1 << 15;
+
+	private static final byte ARRAY = 0;
+	private static final byte BITMAP = 1;
+	private static final byte RUN = 2;
+
+	/** size of each container's entry in the serialized directory */
+	private static final int DIRECTORY_ENTRY_BYTES = 11;
+
+	/** high 16 bits of the indices in each container, in ascending order */
+	private final char[] keys;
+
+	private final Container[] containers;
+
+	private final int size;
+
+	private BufferRoaringBitSet(char[] keys, Container[] containers, int size) {
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Conversion to and from BufferBitSet
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns a compressed copy of the specified {@link BufferBitSet}.
+	 *
+	 * @param bs - the bitset to copy
+	 *
+	 * @return a compressed copy of the specified bitset
+	 */
+	public static BufferRoaringBitSet valueOf(BufferBitSet bs) {
+
+		final int wordsInUse = bs.wordsInUse();
+		final int chunkCount = (wordsInUse + CHUNK_WORDS - 1) / CHUNK_WORDS;
+
+		Builder builder = new Builder(chunkCount);
+		long[] words = new long[CHUNK_WORDS];
+
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			readChunk(bs, chunk, words);
+			builder.add(chunk, Container.fromWords(words));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns a new resizable {@link BufferBitSet} containing all of the bits in
+	 * this compressed bitset.
+	 *
+	 * @return a new resizable {@link BufferBitSet} containing all of the bits in
+	 *         this compressed bitset
+	 */
+	public BufferBitSet toBufferBitSet() {
+
+		if (size == 0)
+			return new BufferBitSet();
+
+		final int lastSetBit = lastSetBit();
+		final ByteBuffer buffer = allocate((lastSetBit >>> 3) + 1);
+
+		// bitmap containers are copied directly, since the layouts are the same
+		for (int i = 0; i < size; i++) {
+			if (containers[i].type == BITMAP) {
+				final int offset = keys[i] * CHUNK_BYTES;
+				final int length = Math.min(CHUNK_BYTES, buffer.capacity() - offset);
+
+				ByteBuffer dst = duplicate(buffer);
+				dst.position(offset);
+				dst.put(BufferUtils.slice(containers[i].data, 0, length));
+			}
+		}
+
+		BufferBitSet bs = new BufferBitSet(buffer, true);
+
+		for (int i = 0; i < size; i++) {
+			final Container c = containers[i];
+			final int base = keys[i] << 16;
+
+			if (c.type == ARRAY) {
+				for (int j = 0; j < c.cardinality; j++)
+					bs.set(base + c.data.getChar(j * 2));
+			} else if (c.type == RUN) {
+				final int runs = c.data.capacity() / 4;
+				for (int j = 0; j < runs; j++) {
+					final int start = base + c.data.getChar(j * 4);
+					bs.set(start, start + c.data.getChar(j * 4 + 2) + 1);
+				}
+			}
+		}
+
+		return bs;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Getters
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the value of the bit with the specified index.
+	 *
+	 * @param bitIndex - the bit index
+	 *
+	 * @return the value of the bit with the specified index
+	 *
+	 * @throws IndexOutOfBoundsException if the specified index is negative
+	 */
+	public boolean get(int bitIndex) {
+		if (bitIndex < 0)
+			throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+
+		final int i = Arrays.binarySearch(keys, (char) (bitIndex >>> 16));
+		return i >= 0 && containers[i].contains(bitIndex & 0xFFFF);
+	}
+
+	/**
+	 * Returns the number of bits set to {@code true} in this bitset.
+	 *
+	 * @return the number of bits set to {@code true} in this bitset
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++)
+			cardinality += containers[i].cardinality;
+		return cardinality;
+	}
+
+	/**
+	 * Returns true if this bitset contains no bits that are set to {@code true}.
+	 *
+	 * @return boolean indicating whether this bitset is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the index of the highest set bit in the bitset, or -1 if the bitset
+	 * contains no set bits.
+	 *
+	 * @return the index of the highest set bit in the bitset, or -1 if the bitset
+	 *         contains no set bits.
+	 */
+	public int lastSetBit() {
+		return size == 0 ? -1 : (keys[size - 1] << 16) + containers[size - 1].last();
+	}
+
+	/**
+	 * Returns the number of bytes used by the containers of this bitset. This is
+	 * also, to within a few bytes per container, the number of bytes written by
+	 * {@link #writeTo(WritableByteChannel)}.
+	 *
+	 * @return the number of bytes used by the containers of this bitset
+	 */
+	public long sizeInBytes() {
+		long bytes = 0;
+		for (int i = 0; i < size; i++)
+			bytes += containers[i].data.capacity();
+		return bytes;
+	}
+
+	/**
+	 * Performs the given action for the index of each bit that is set to
+	 * {@code true}, in ascending order.
+	 *
+	 * @param action - the action to be performed for each set bit
+	 */
+	public void forEachSetBit(IntConsumer action) {
+		for (int i = 0; i < size; i++)
+			containers[i].forEach(keys[i] << 16, action);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Logical operations
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the logical <b>AND</b> of this bitset and the specified bitset.
+	 *
+	 * @param set - a compressed bitset
+	 *
+	 * @return the logical <b>AND</b> of this bitset and the specified bitset
+	 */
+	public BufferRoaringBitSet and(BufferRoaringBitSet set) {
+
+		Builder builder = new Builder(Math.min(size, set.size));
+		long[] words1 = new long[CHUNK_WORDS];
+		long[] words2 = new long[CHUNK_WORDS];
+
+		for (int i = 0, j = 0; i < size && j < set.size;) {
+			if (keys[i] < set.keys[j])
+				i++;
+			else if (keys[i] > set.keys[j])
+				j++;
+			else {
+				Container c1 = containers[i], c2 = set.containers[j];
+
+				if (c1.type == ARRAY || c2.type == ARRAY) {
+					if (c1.type != ARRAY) {
+						Container tmp = c1;
+						c1 = c2;
+						c2 = tmp;
+					}
+
+					// filter the array by the other container
+					char[] values = new char[c1.cardinality];
+					int n = 0;
+					for (int k = 0; k < c1.cardinality; k++) {
+						final char value = c1.data.getChar(k * 2);
+						if (c2.contains(value))
+							values[n++] = value;
+					}
+
+					builder.add(keys[i], Container.fromArray(values, n));
+				} else {
+					c1.toWords(words1);
+					c2.toWords(words2);
+					for (int k = 0; k < CHUNK_WORDS; k++)
+						words1[k] &= words2[k];
+
+					builder.add(keys[i], Container.fromWords(words1));
+				}
+
+				i++;
+				j++;
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns the logical <b>OR</b> of this bitset and the specified bitset.
+	 *
+	 * @param set - a compressed bitset
+	 *
+	 * @return the logical <b>OR</b> of this bitset and the specified bitset
+	 */
+	public BufferRoaringBitSet or(BufferRoaringBitSet set) {
+
+		Builder builder = new Builder(size + set.size);
+		long[] words1 = new long[CHUNK_WORDS];
+		long[] words2 = new long[CHUNK_WORDS];
+
+		for (int i = 0, j = 0; i < size || j < set.size;) {
+			if (j == set.size || (i < size && keys[i] < set.keys[j])) {
+				builder.add(keys[i], containers[i]);
+				i++;
+			} else if (i == size || keys[i] > set.keys[j]) {
+				builder.add(set.keys[j], set.containers[j]);
+				j++;
+			} else {
+				containers[i].toWords(words1);
+				set.containers[j].toWords(words2);
+				for (int k = 0; k < CHUNK_WORDS; k++)
+					words1[k] |= words2[k];
+
+				builder.add(keys[i], Container.fromWords(words1));
+
+				i++;
+				j++;
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns the logical <b>AND</b> of this bitset and the specified
+	 * {@link BufferBitSet}. Only the chunks of the {@code BufferBitSet} which
+	 * overlap a container of this bitset are read.
+	 *
+	 * @param set - an uncompressed bitset
+	 *
+	 * @return the logical <b>AND</b> of this bitset and the specified bitset
+	 */
+	public BufferRoaringBitSet and(BufferBitSet set) {
+
+		Builder builder = new Builder(size);
+		long[] words1 = new long[CHUNK_WORDS];
+		long[] words2 = new long[CHUNK_WORDS];
+
+		for (int i = 0; i < size; i++) {
+			final Container c = containers[i];
+			final int base = keys[i] << 16;
+
+			if (c.type == ARRAY) {
+				char[] values = new char[c.cardinality];
+				int n = 0;
+				for (int k = 0; k < c.cardinality; k++) {
+					final char value = c.data.getChar(k * 2);
+					if (set.get(base + value))
+						values[n++] = value;
+				}
+
+				builder.add(keys[i], Container.fromArray(values, n));
+			} else {
+				c.toWords(words1);
+				readChunk(set, keys[i], words2);
+				for (int k = 0; k < CHUNK_WORDS; k++)
+					words1[k] &= words2[k];
+
+				builder.add(keys[i], Container.fromWords(words1));
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns the logical <b>OR</b> of this bitset and the specified
+	 * {@link BufferBitSet}.
+	 *
+	 * @param set - an uncompressed bitset
+	 *
+	 * @return the logical <b>OR</b> of this bitset and the specified bitset
+	 */
+	public BufferRoaringBitSet or(BufferBitSet set) {
+		return or(valueOf(set));
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Methods for reading from and writing to a channel
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Write this bitset to the specified {@link WritableByteChannel}. This method
+	 * will write a 4-byte container count and an 11-byte directory entry per
+	 * container, followed by the content of each container.
+	 *
+	 * @param channel - the channel to write to
+	 *
+	 * @throws IOException if some I/O error occurs
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(4 + size * DIRECTORY_ENTRY_BYTES).order(BIG_ENDIAN);
+		header.putInt(size);
+		for (int i = 0; i < size; i++) {
+			header.putChar(keys[i]);
+			header.put(containers[i].type);
+			header.putInt(containers[i].cardinality);
+			header.putInt(containers[i].data.capacity());
+		}
+		header.flip();
+
+		writeFully(channel, header);
+
+		for (int i = 0; i < size; i++)
+			writeFully(channel, duplicate(containers[i].data));
+	}
+
+	/**
+	 * Read a bitset from the specified {@link ReadableByteChannel}. The bitset
+	 * must have been previously written with {@link #writeTo(WritableByteChannel)}.
+	 *
+	 * @param channel - the channel to read from
+	 *
+	 * @return a bitset from the specified channel
+	 *
+	 * @throws IOException if some I/O error occurs
+	 */
+	public static BufferRoaringBitSet readFrom(ReadableByteChannel channel) throws IOException {
+
+		ByteBuffer count = ByteBuffer.allocate(4).order(BIG_ENDIAN);
+		readFully(channel, count);
+		final int size = count.getInt(0);
+		if (size < 0 || size > MAX_CONTAINERS)
+			throw new IOException("invalid container count: " + size);
+
+		ByteBuffer directory = ByteBuffer.allocate(size * DIRECTORY_ENTRY_BYTES).order(BIG_ENDIAN);
+		readFully(channel, directory);
+		directory.flip();
+
+		char[] keys = new char[size];
+		Container[] containers = new Container[size];
+
+		for (int i = 0; i < size; i++) {
+			keys[i] = directory.getChar();
+			final byte type = directory.get();
+			final int cardinality = directory.getInt();
+			final int bytes = directory.getInt();
+
+			if (keys[i] >= MAX_CONTAINERS || (i > 0 && keys[i] <= keys[i - 1])
+					|| !Container.isValidHeader(type, cardinality, bytes))
+				throw new IOException("invalid container at index " + i);
+
+			containers[i] = new Container(type, cardinality, bytes);
+		}
+
+		for (int i = 0; i < size; i++) {
+			readFully(channel, duplicate(containers[i].data));
+			if (!containers[i].isValid())
+				throw new IOException("invalid container at index " + i);
+		}
+
+		return size == 0 ? EMPTY : new BufferRoaringBitSet(keys, containers, size);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Object methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns a string representation of this bitset, in the same format as
+	 * {@link BufferBitSet#toString()}.
+	 *
+	 * @return a string representation of this bitset
+	 */
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('[');
+		forEachSetBit(i -> {
+			if (b.length() > 1)
+				b.append(", ");
+			b.append(i);
+		});
+		return b.append(']').toString();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		for (int i = 0; i < size; i++)
+			h = 31 * (31 * h + keys[i]) + containers[i].data.hashCode();
+		return h;
+	}
+
+	/**
+	 * Compares this bitset against the specified object. The result is true if
+	 * and only if the argument is a {@code BufferRoaringBitSet} with exactly the
+	 * same bits set to {@code true}. Containers are always stored in their
+	 * smallest form, so equal bitsets have identical containers.
+	 *
+	 * @param obj - the object to compare with
+	 *
+	 * @return true if the objects are the same; false otherwise
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BufferRoaringBitSet))
+			return false;
+
+		BufferRoaringBitSet set = (BufferRoaringBitSet) obj;
+		if (size != set.size)
+			return false;
+
+		for (int i = 0; i < size; i++) {
+			if (keys[i] != set.keys[i] || containers[i].type != set.containers[i].type
+					|| !containers[i].data.equals(set.containers[i].data))
+				return false;
+		}
+
+		return true;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Utility methods and classes
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Copy the words of the specified chunk of a {@link BufferBitSet} into the
+	 * provided array.
+	 */
+	private static void readChunk(BufferBitSet bs, int chunk, long[] words) {
+		final int from = chunk * CHUNK_WORDS;
+		final int to = Math.min(bs.wordsInUse(), from + CHUNK_WORDS);
+
+		Arrays.fill(words, 0);
+		for (int u = from; u < to; u++)
+			words[u - from] = bs.word(u);
+	}
+
+	/**
+	 * Accumulates non-null containers in key order.
+	 */
+	private static final class Builder {
+		private final char[] keys;
+		private final Container[] containers;
+		private int size;
+
+		private Builder(int capacity) {
+			keys = new char[capacity];
+			containers = new Container[capacity];
+		}
+
+		private void add(int key, Container container) {
+			if (container != null) {
+				keys[size] = (char) key;
+				containers[size++] = container;
+			}
+		}
+
+		private BufferRoaringBitSet build() {
+			if (size == 0)
+				return EMPTY;
+			else
+				return new BufferRoaringBitSet(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size), size);
+		}
+	}
+
+	/**
+	 * A single chunk of 65536 bits. The data buffer is little-endian, and is never
+	 * modified after construction.
+	 * <ul>
+	 * <li>array: sorted unsigned 16-bit values
+	 * <li>bitmap: 1024 64-bit words
+	 * <li>run: pairs of unsigned 16-bit values (start, length - 1)
+	 * </ul>
+	 */
+	private static final class Container {
+		private final byte type;
+		private final int cardinality;
+		private final ByteBuffer data;
+
+		private Container(byte type, int cardinality, int bytes) {
+			this.type = type;
+			this.cardinality = cardinality;
+			this.data = allocate(bytes).order(LITTLE_ENDIAN);
+		}
+
+		/**
+		 * Returns the smallest container for the specified words, or null if there
+		 * are no set bits.
+		 */
+		private static Container fromWords(long[] words) {
+
+			int cardinality = 0;
+			int runs = 0;
+			long previous = 0;
+			for (long w : words) {
+				cardinality += Long.bitCount(w);
+				runs += Long.bitCount(w & ~((w << 1) | (previous >>> 63)));
+				previous = w;
+			}
+
+			if (cardinality == 0)
+				return null;
+
+			final byte type = chooseType(cardinality, runs);
+
+			if (type == RUN) {
+				Container c = new Container(RUN, cardinality, runs * 4);
+				for (int start = nextSetBit(words, 0), j = 0; start < CHUNK_BITS; start = nextSetBit(words,
+						start), j++) {
+					final int end = nextClearBit(words, start);
+					c.data.putChar(j * 4, (char) start);
+					c.data.putChar(j * 4 + 2, (char) (end - start - 1));
+					start = end;
+				}
+				return c;
+			} else if (type == ARRAY) {
+				Container c = new Container(ARRAY, cardinality, cardinality * 2);
+				int j = 0;
+				for (int u = 0; u < CHUNK_WORDS; u++) {
+					for (long w = words[u]; w != 0; w &= w - 1)
+						c.data.putChar((j++) * 2, (char) ((u << 6) + Long.numberOfTrailingZeros(w)));
+				}
+				return c;
+			} else {
+				Container c = new Container(BITMAP, cardinality, CHUNK_BYTES);
+				for (int u = 0; u < CHUNK_WORDS; u++)
+					c.data.putLong(u * 8, words[u]);
+				return c;
+			}
+		}
+
+		/**
+		 * Returns the smallest container for the first {@code n} of the specified
+		 * sorted values, or null if {@code n == 0}.
+		 */
+		private static Container fromArray(char[] values, int n) {
+
+			if (n == 0)
+				return null;
+
+			if (n > MAX_ARRAY_CARDINALITY) {
+				long[] words = new long[CHUNK_WORDS];
+				for (int i = 0; i < n; i++)
+					words[values[i] >>> 6] |= 1L << values[i];
+				return fromWords(words);
+			}
+
+			int runs = 1;
+			for (int i = 1; i < n; i++)
+				if (values[i] != values[i - 1] + 1)
+					runs++;
+
+			if (chooseType(n, runs) == RUN) {
+				Container c = new Container(RUN, n, runs * 4);
+				for (int i = 0, j = 0; i < n; j++) {
+					final int start = i;
+					do {
+						i++;
+					} while (i < n && values[i] == values[i - 1] + 1);
+					c.data.putChar(j * 4, values[start]);
+					c.data.putChar(j * 4 + 2, (char) (i - start - 1));
+				}
+				return c;
+			} else {
+				Container c = new Container(ARRAY, n, n * 2);
+				for (int i = 0; i < n; i++)
+					c.data.putChar(i * 2, values[i]);
+				return c;
+			}
+		}
+
+		/**
+		 * Checks that the directory entry of a serialized container is consistent
+		 * with its type, before any space is allocated for its data.
+		 */
+		private static boolean isValidHeader(byte type, int cardinality, int bytes) {
+			switch (type) {
+			case ARRAY:
+				return cardinality >= 1 && cardinality <= MAX_ARRAY_CARDINALITY && bytes == cardinality * 2;
+			case BITMAP:
+				return cardinality > MAX_ARRAY_CARDINALITY && cardinality <= CHUNK_BITS && bytes == CHUNK_BYTES;
+			case RUN:
+				return cardinality >= 1 && cardinality <= CHUNK_BITS && bytes > 0 && bytes <= CHUNK_BYTES
+						&& bytes % 4 == 0;
+			default:
+				return false;
+			}
+		}
+
+		/**
+		 * Checks that the data of a deserialized container matches its cardinality,
+		 * and is exactly what {@link #fromWords(long[])} would have produced, since
+		 * equality compares the data directly.
+		 */
+		private boolean isValid() {
+			int count = 0;
+			int runs = 0;
+
+			switch (type) {
+			case ARRAY:
+				for (int i = 0, previous = -2; i < cardinality; i++) {
+					final int value = data.getChar(i * 2);
+					if (value <= previous)
+						return false;
+					if (value != previous + 1)
+						runs++;
+					previous = value;
+				}
+				count = cardinality;
+				break;
+			case BITMAP:
+				long previous = 0;
+				for (int u = 0; u < CHUNK_WORDS; u++) {
+					final long w = data.getLong(u * 8);
+					count += Long.bitCount(w);
+					runs += Long.bitCount(w & ~((w << 1) | (previous >>> 63)));
+					previous = w;
+				}
+				break;
+			default:
+				runs = data.capacity() / 4;
+				for (int i = 0, end = -2; i < runs; i++) {
+					final int start = data.getChar(i * 4);
+					final int length = data.getChar(i * 4 + 2) + 1;
+					// runs must be separated by at least one clear bit
+					if (start <= end + 1 || start + length > CHUNK_BITS)
+						return false;
+					end = start + length - 1;
+					count += length;
+				}
+			}
+
+			return count == cardinality && chooseType(cardinality, runs) == type;
+		}
+
+		/**
+		 * Picks the smallest representation. The choice depends only on the content,
+		 * so equal chunks always have identical containers.
+		 */
+		private static byte chooseType(int cardinality, int runs) {
+			if (runs * 4 < Math.min(cardinality * 2, CHUNK_BYTES))
+				return RUN;
+			else if (cardinality <= MAX_ARRAY_CARDINALITY)
+				return ARRAY;
+			else
+				return BITMAP;
+		}
+
+		private boolean contains(int value) {
+			switch (type) {
+			case ARRAY: {
+				int lo = 0, hi = cardinality - 1;
+				while (lo <= hi) {
+					final int mid = (lo + hi) >>> 1;
+					final char v = data.getChar(mid * 2);
+					if (v < value)
+						lo = mid + 1;
+					else if (v > value)
+						hi = mid - 1;
+					else
+						return true;
+				}
+				return false;
+			}
+			case BITMAP:
+				return (data.getLong((value >>> 6) * 8) & (1L << value)) != 0;
+			default: {
+				// find the last run starting at or before value
+				int lo = 0, hi = data.capacity() / 4 - 1;
+				while (lo < hi) {
+					final int mid = (lo + hi + 1) >>> 1;
+					if (data.getChar(mid * 4) <= value)
+						lo = mid;
+					else
+						hi = mid - 1;
+				}
+				final int start = data.getChar(lo * 4);
+				return value >= start && value <= start + data.getChar(lo * 4 + 2);
+			}
+			}
+		}
+
+		private void toWords(long[] words) {
+			switch (type) {
+			case ARRAY:
+				Arrays.fill(words, 0);
+				for (int i = 0; i < cardinality; i++) {
+					final char value = data.getChar(i * 2);
+					words[value >>> 6] |= 1L << value;
+				}
+				break;
+			case BITMAP:
+				for (int u = 0; u < CHUNK_WORDS; u++)
+					words[u] = data.getLong(u * 8);
+				break;
+			default:
+				Arrays.fill(words, 0);
+				final int runs = data.capacity() / 4;
+				for (int i = 0; i < runs; i++) {
+					final int start = data.getChar(i * 4);
+					setRange(words, start, start + data.getChar(i * 4 + 2) + 1);
+				}
+			}
+		}
+
+		private void forEach(int base, IntConsumer action) {
+			switch (type) {
+			case ARRAY:
+				for (int i = 0; i < cardinality; i++)
+					action.accept(base + data.getChar(i * 2));
+				break;
+			case BITMAP:
+				for (int u = 0; u < CHUNK_WORDS; u++) {
+					for (long w = data.getLong(u * 8); w != 0; w &= w - 1)
+						action.accept(base + (u << 6) + Long.numberOfTrailingZeros(w));
+				}
+				break;
+			default:
+				final int runs = data.capacity() / 4;
+				for (int i = 0; i < runs; i++) {
+					final int start = base + data.getChar(i * 4);
+					final int end = start + data.getChar(i * 4 + 2);
+					for (int j = start; j <= end; j++)
+						action.accept(j);
+				}
+			}
+		}
+
+		/**
+		 * Returns the highest value in this container
+		 */
+		private int last() {
+			switch (type) {
+			case ARRAY:
+				return data.getChar((cardinality - 1) * 2);
+			case BITMAP: {
+				int u = CHUNK_WORDS - 1;
+				while (data.getLong(u * 8) == 0)
+					u--;
+				return (u << 6) + 63 - Long.numberOfLeadingZeros(data.getLong(u * 8));
+			}
+			default: {
+				final int i = data.capacity() - 4;
+				return data.getChar(i) + data.getChar(i + 2);
+			}
+			}
+		}
+
+		private static int nextSetBit(long[] words, int fromIndex) {
+			if (fromIndex >= CHUNK_BITS)
+				return CHUNK_BITS;
+
+			int u = fromIndex >>> 6;
+			long w = words[u] & (-1L << fromIndex);
+			while (w == 0) {
+				if (++u == CHUNK_WORDS)
+					return CHUNK_BITS;
+				w = words[u];
+			}
+			return (u << 6) + Long.numberOfTrailingZeros(w);
+		}
+
+		private static int nextClearBit(long[] words, int fromIndex) {
+			if (fromIndex >= CHUNK_BITS)
+				return CHUNK_BITS;
+
+			int u = fromIndex >>> 6;
+			long w = ~words[u] & (-1L << fromIndex);
+			while (w == 0) {
+				if (++u == CHUNK_WORDS)
+					return CHUNK_BITS;
+				w = ~words[u];
+			}
+			return (u << 6) + Long.numberOfTrailingZeros(w);
+		}
+
+		private static void setRange(long[] words, int fromIndex, int toIndex) {
+			final int first = fromIndex >>> 6;
+			final int last = (toIndex - 1) >>> 6;
+
+			if (first == last) {
+				words[first] |= (-1L << fromIndex) & (-1L >>> -toIndex);
+			} else {
+				words[first] |= -1L << fromIndex;
+				for (int u = first + 1; u < last; u++)
+					words[u] = -1L;
+				words[last] |= -1L >>> -toIndex;
+			}
+		}
+	}
+}
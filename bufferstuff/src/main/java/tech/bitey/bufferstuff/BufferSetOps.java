@@ -0,0 +1,719 @@
+package tech.bitey.bufferstuff;
+
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Set operations (intersection, union, difference, and symmetric difference) on
+ * ranges of sorted nio buffers. Each range must be sorted in ascending order and
+ * contain no duplicates prior to making these calls. If they are not, the
+ * results are undefined.
+ * <p>
+ * When one range is much larger than the other, the larger range is searched
+ * with an exponential (galloping) search followed by
+ * {@link BufferSearch#binarySearch(IntBuffer, int, int, int) binarySearch}, and
+ * runs of unmatched elements are copied in bulk. Otherwise the two ranges are
+ * combined with a linear merge.
+ * <p>
+ * Each operation also has a {@code Count} variant which returns the size of the
+ * result without writing it anywhere.
+ * <p>
+ * <b>Note:</b> ignores {@link java.nio.Buffer#position() position} and
+ * {@link java.nio.Buffer#limit() limit} of all buffers. The destination buffer
+ * must not overlap with either of the source ranges.
+ *
+ * @author biteytech@protonmail.com
+ */
+public enum BufferSetOps {
+	; // static methods only, enum prevents instantiation
+
+	/**
+	 * Use a galloping search when one range is at least this many times larger than
+	 * the other.
+	 */
+	private static final int GALLOP_RATIO = 32;
+
+	/**
+	 * Runs shorter than this are copied one element at a time.
+	 */
+	private static final int BULK_COPY_THRESHOLD = 16;
+
+	private static final int ONLY_A = 1;
+	private static final int ONLY_B = 2;
+	private static final int BOTH = 4;
+
+	private static final int INTERSECT = BOTH;
+	private static final int UNION = ONLY_A | ONLY_B | BOTH;
+	private static final int DIFFERENCE = ONLY_A;
+	private static final int SYMMETRIC_DIFFERENCE = ONLY_A | ONLY_B;
+
+	/*--------------------------------------------------------------------------------
+	 *  IntBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Writes the elements which are present in both of the specified ranges to
+	 * {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int intersect(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex, int bToIndex,
+			IntBuffer dst, int dstIndex) {
+		return merge(INTERSECT, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Writes the elements which are present in either of the specified ranges to
+	 * {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int union(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex, int bToIndex,
+			IntBuffer dst, int dstIndex) {
+		return merge(UNION, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Writes the elements which are present in the first range but not the second
+	 * to {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int difference(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex, int bToIndex,
+			IntBuffer dst, int dstIndex) {
+		return merge(DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Writes the elements which are present in exactly one of the specified ranges
+	 * to {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int symmetricDifference(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex,
+			int bToIndex, IntBuffer dst, int dstIndex) {
+		return merge(SYMMETRIC_DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Returns the number of elements which are present in both of the specified
+	 * ranges.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the intersection
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int intersectCount(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex,
+			int bToIndex) {
+		return merge(INTERSECT, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Returns the number of elements which are present in either of the specified
+	 * ranges.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the union
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int unionCount(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex,
+			int bToIndex) {
+		return merge(UNION, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Returns the number of elements which are present in the first range but not
+	 * the second.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the difference
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int differenceCount(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex,
+			int bToIndex) {
+		return merge(DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Returns the number of elements which are present in exactly one of the
+	 * specified ranges.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the symmetric difference
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int symmetricDifferenceCount(IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b,
+			int bFromIndex, int bToIndex) {
+		return merge(SYMMETRIC_DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Writes the result to {@code dst}, or just counts it if {@code dst} is null.
+	 */
+	private static int merge(int op, IntBuffer a, int aFromIndex, int aToIndex, IntBuffer b, int bFromIndex,
+			int bToIndex, IntBuffer dst, int dstIndex) {
+		rangeCheck(a.capacity(), aFromIndex, aToIndex);
+		rangeCheck(b.capacity(), bFromIndex, bToIndex);
+		if (dst != null)
+			rangeCheck(dst.capacity(), dstIndex, dstIndex);
+
+		final int aLength = aToIndex - aFromIndex;
+		final int bLength = bToIndex - bFromIndex;
+
+		final boolean onlyA = (op & ONLY_A) != 0;
+		final boolean onlyB = (op & ONLY_B) != 0;
+		final boolean both = (op & BOTH) != 0;
+
+		if (aLength / GALLOP_RATIO > bLength)
+			return gallop(b, bFromIndex, bToIndex, onlyB, a, aFromIndex, aToIndex, onlyA, both, dst, dstIndex);
+		else if (bLength / GALLOP_RATIO > aLength)
+			return gallop(a, aFromIndex, aToIndex, onlyA, b, bFromIndex, bToIndex, onlyB, both, dst, dstIndex);
+
+		int i = aFromIndex, j = bFromIndex, k = dstIndex;
+
+		while (i < aToIndex && j < bToIndex) {
+			int x = a.get(i);
+			int y = b.get(j);
+
+			if (x < y) {
+				if (onlyA)
+					k = put(dst, k, x);
+				i++;
+			} else if (x > y) {
+				if (onlyB)
+					k = put(dst, k, y);
+				j++;
+			} else {
+				if (both)
+					k = put(dst, k, x);
+				i++;
+				j++;
+			}
+		}
+
+		if (onlyA)
+			k = copy(a, i, aToIndex, dst, k);
+		if (onlyB)
+			k = copy(b, j, bToIndex, dst, k);
+
+		return k;
+	}
+
+	/**
+	 * Iterates over the small range, and gallops through the large one.
+	 */
+	private static int gallop(IntBuffer s, int sFromIndex, int sToIndex, boolean onlyS, IntBuffer l, int lFromIndex,
+			int lToIndex, boolean onlyL, boolean both, IntBuffer dst, int dstIndex) {
+
+		int j = lFromIndex, k = dstIndex;
+
+		for (int i = sFromIndex; i < sToIndex; i++) {
+			int x = s.get(i);
+
+			// first index in l which is >= x
+			int p = lowerBound(l, j, lToIndex, x);
+
+			if (onlyL)
+				k = copy(l, j, p, dst, k);
+
+			if (p < lToIndex && l.get(p) == x) {
+				if (both)
+					k = put(dst, k, x);
+				p++;
+			} else if (onlyS)
+				k = put(dst, k, x);
+
+			j = p;
+
+			if (j == lToIndex) {
+				// remaining elements in s have no match
+				if (onlyS)
+					k = copy(s, i + 1, sToIndex, dst, k);
+				break;
+			}
+		}
+
+		if (onlyL)
+			k = copy(l, j, lToIndex, dst, k);
+
+		return k;
+	}
+
+	/**
+	 * Exponential search for the first index in the range which is {@code >= key}.
+	 * The range may contain duplicates.
+	 */
+	static int lowerBound(IntBuffer b, int fromIndex, int toIndex, int key) {
+
+		if (fromIndex == toIndex || b.get(fromIndex) >= key)
+			return fromIndex;
+
+		// b[fromIndex + (bound >> 1)] < key
+		int bound = 1;
+		while (bound < toIndex - fromIndex && b.get(fromIndex + bound) < key)
+			bound <<= 1;
+
+		int index = BufferSearch.binarySearch(b, fromIndex + (bound >> 1) + 1,
+				(int) Math.min((long) fromIndex + bound, toIndex), key);
+
+		return index >= 0 ? BufferSearch.binaryFindFirst(b, fromIndex, index) : -(index + 1);
+	}
+
+	private static int put(IntBuffer dst, int dstIndex, int value) {
+		if (dst != null)
+			dst.put(dstIndex, value);
+		return dstIndex + 1;
+	}
+
+	private static int copy(IntBuffer src, int fromIndex, int toIndex, IntBuffer dst, int dstIndex) {
+
+		if (dst != null) {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(dstIndex + i - fromIndex, src.get(i));
+			} else {
+				IntBuffer from = src.duplicate();
+				from.limit(toIndex);
+				from.position(fromIndex);
+
+				IntBuffer to = dst.duplicate();
+				to.clear();
+				to.position(dstIndex);
+				to.put(from);
+			}
+		}
+
+		return dstIndex + toIndex - fromIndex;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  LongBuffer
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Writes the elements which are present in both of the specified ranges to
+	 * {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int intersect(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex, int bToIndex,
+			LongBuffer dst, int dstIndex) {
+		return merge(INTERSECT, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Writes the elements which are present in either of the specified ranges to
+	 * {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int union(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex, int bToIndex,
+			LongBuffer dst, int dstIndex) {
+		return merge(UNION, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Writes the elements which are present in the first range but not the second
+	 * to {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int difference(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex,
+			int bToIndex, LongBuffer dst, int dstIndex) {
+		return merge(DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Writes the elements which are present in exactly one of the specified ranges
+	 * to {@code dst}, starting at {@code dstIndex}.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 * @param dst        the buffer to write the result to
+	 * @param dstIndex   the index in {@code dst} of the first element written
+	 *
+	 * @return the (exclusive) highest index in {@code dst} written to
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds, or if
+	 *                                   {@code dst} is not large enough to hold the
+	 *                                   result
+	 */
+	public static int symmetricDifference(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex,
+			int bToIndex, LongBuffer dst, int dstIndex) {
+		return merge(SYMMETRIC_DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, dst, dstIndex);
+	}
+
+	/**
+	 * Returns the number of elements which are present in both of the specified
+	 * ranges.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the intersection
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int intersectCount(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex,
+			int bToIndex) {
+		return merge(INTERSECT, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Returns the number of elements which are present in either of the specified
+	 * ranges.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the union
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int unionCount(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex,
+			int bToIndex) {
+		return merge(UNION, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Returns the number of elements which are present in the first range but not
+	 * the second.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the difference
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int differenceCount(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex,
+			int bToIndex) {
+		return merge(DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Returns the number of elements which are present in exactly one of the
+	 * specified ranges.
+	 *
+	 * @param a          the first buffer
+	 * @param aFromIndex the index of the first element (inclusive) in {@code a}
+	 * @param aToIndex   the index of the last element (exclusive) in {@code a}
+	 * @param b          the second buffer
+	 * @param bFromIndex the index of the first element (inclusive) in {@code b}
+	 * @param bToIndex   the index of the last element (exclusive) in {@code b}
+	 *
+	 * @return the size of the symmetric difference
+	 *
+	 * @throws IllegalArgumentException  if {@code aFromIndex > aToIndex} or
+	 *                                   {@code bFromIndex > bToIndex}
+	 * @throws IndexOutOfBoundsException if either range is out of bounds
+	 */
+	public static int symmetricDifferenceCount(LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b,
+			int bFromIndex, int bToIndex) {
+		return merge(SYMMETRIC_DIFFERENCE, a, aFromIndex, aToIndex, b, bFromIndex, bToIndex, null, 0);
+	}
+
+	/**
+	 * Writes the result to {@code dst}, or just counts it if {@code dst} is null.
+	 */
+	private static int merge(int op, LongBuffer a, int aFromIndex, int aToIndex, LongBuffer b, int bFromIndex,
+			int bToIndex, LongBuffer dst, int dstIndex) {
+		rangeCheck(a.capacity(), aFromIndex, aToIndex);
+		rangeCheck(b.capacity(), bFromIndex, bToIndex);
+		if (dst != null)
+			rangeCheck(dst.capacity(), dstIndex, dstIndex);
+
+		final int aLength = aToIndex - aFromIndex;
+		final int bLength = bToIndex - bFromIndex;
+
+		final boolean onlyA = (op & ONLY_A) != 0;
+		final boolean onlyB = (op & ONLY_B) != 0;
+		final boolean both = (op & BOTH) != 0;
+
+		if (aLength / GALLOP_RATIO > bLength)
+			return gallop(b, bFromIndex, bToIndex, onlyB, a, aFromIndex, aToIndex, onlyA, both, dst, dstIndex);
+		else if (bLength / GALLOP_RATIO > aLength)
+			return gallop(a, aFromIndex, aToIndex, onlyA, b, bFromIndex, bToIndex, onlyB, both, dst, dstIndex);
+
+		int i = aFromIndex, j = bFromIndex, k = dstIndex;
+
+		while (i < aToIndex && j < bToIndex) {
+			long x = a.get(i);
+			long y = b.get(j);
+
+			if (x < y) {
+				if (onlyA)
+					k = put(dst, k, x);
+				i++;
+			} else if (x > y) {
+				if (onlyB)
+					k = put(dst, k, y);
+				j++;
+			} else {
+				if (both)
+					k = put(dst, k, x);
+				i++;
+				j++;
+			}
+		}
+
+		if (onlyA)
+			k = copy(a, i, aToIndex, dst, k);
+		if (onlyB)
+			k = copy(b, j, bToIndex, dst, k);
+
+		return k;
+	}
+
+	/**
+	 * Iterates over the small range, and gallops through the large one.
+	 */
+	private static int gallop(LongBuffer s, int sFromIndex, int sToIndex, boolean onlyS, LongBuffer l,
+			int lFromIndex, int lToIndex, boolean onlyL, boolean both, LongBuffer dst, int dstIndex) {
+
+		int j = lFromIndex, k = dstIndex;
+
+		for (int i = sFromIndex; i < sToIndex; i++) {
+			long x = s.get(i);
+
+			// first index in l which is >= x
+			int p = lowerBound(l, j, lToIndex, x);
+
+			if (onlyL)
+				k = copy(l, j, p, dst, k);
+
+			if (p < lToIndex && l.get(p) == x) {
+				if (both)
+					k = put(dst, k, x);
+				p++;
+			} else if (onlyS)
+				k = put(dst, k, x);
+
+			j = p;
+
+			if (j == lToIndex) {
+				// remaining elements in s have no match
+				if (onlyS)
+					k = copy(s, i + 1, sToIndex, dst, k);
+				break;
+			}
+		}
+
+		if (onlyL)
+			k = copy(l, j, lToIndex, dst, k);
+
+		return k;
+	}
+
+	/**
+	 * Exponential search for the first index in the range which is {@code >= key}.
+	 * The range may contain duplicates.
+	 */
+	static int lowerBound(LongBuffer b, int fromIndex, int toIndex, long key) {
+
+		if (fromIndex == toIndex || b.get(fromIndex) >= key)
+			return fromIndex;
+
+		// b[fromIndex + (bound >> 1)] < key
+		int bound = 1;
+		while (bound < toIndex - fromIndex && b.get(fromIndex + bound) < key)
+			bound <<= 1;
+
+		int index = BufferSearch.binarySearch(b, fromIndex + (bound >> 1) + 1,
+				(int) Math.min((long) fromIndex + bound, toIndex), key);
+
+		return index >= 0 ? BufferSearch.binaryFindFirst(b, fromIndex, index) : -(index + 1);
+	}
+
+	private static int put(LongBuffer dst, int dstIndex, long value) {
+		if (dst != null)
+			dst.put(dstIndex, value);
+		return dstIndex + 1;
+	}
+
+	private static int copy(LongBuffer src, int fromIndex, int toIndex, LongBuffer dst, int dstIndex) {
+
+		if (dst != null) {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(dstIndex + i - fromIndex, src.get(i));
+			} else {
+				LongBuffer from = src.duplicate();
+				from.limit(toIndex);
+				from.position(fromIndex);
+
+				LongBuffer to = dst.duplicate();
+				to.clear();
+				to.position(dstIndex);
+				to.put(from);
+			}
+		}
+
+		return dstIndex + toIndex - fromIndex;
+	}
+}
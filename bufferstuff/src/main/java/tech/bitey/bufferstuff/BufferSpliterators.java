@@ -301,4 +301,126 @@ public class BufferSpliterators {
 			throw new IllegalStateException();
 		}
 	}
+
+	/**
+	 * A Spliterator.OfInt over the indices of the set bits in an unmodifiable
+	 * {@link BufferBitSet}, in ascending order.
+	 * <p>
+	 * Splits are made on 64-bit word boundaries, and sizes are exact: the size of
+	 * each split is computed from {@link BufferBitSet#cardinality(int, int)} the
+	 * first time it is needed.
+	 */
+	public static final class BitSetSpliterator implements Spliterator.OfInt {
+		private final BufferBitSet bitset;
+		private long index; // current bit index, modified on advance/split
+		private final long fence; // one past last bit index, which may be 2^31
+		private int size; // number of remaining set bits, or -1 if not yet computed
+
+		/**
+		 * Creates a spliterator covering all of the set bits in the given
+		 * {@link BufferBitSet}.
+		 * 
+		 * @param bitset the bitset, assumed to be unmodified during use
+		 */
+		public BitSetSpliterator(BufferBitSet bitset) {
+			this(bitset, 0, bitset.lastSetBit() + 1L);
+		}
+
+		/**
+		 * Creates a spliterator covering the set bits in the given
+		 * {@link BufferBitSet} and range.
+		 * 
+		 * @param bitset the bitset, assumed to be unmodified during use
+		 * @param origin the least bit index (inclusive) to cover
+		 * @param fence  one past the greatest bit index to cover
+		 */
+		public BitSetSpliterator(BufferBitSet bitset, int origin, int fence) {
+			this(bitset, (long) origin, (long) fence);
+		}
+
+		private BitSetSpliterator(BufferBitSet bitset, long origin, long fence) {
+			this.bitset = bitset;
+			this.index = origin;
+			this.fence = fence;
+			this.size = -1;
+		}
+
+		@Override
+		public OfInt trySplit() {
+			long lo = index, mid = ((lo + fence) >>> 1) & ~63L;
+			if (lo >= mid)
+				return null;
+
+			size = -1;
+			return new BitSetSpliterator(bitset, lo, index = mid);
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			if (action == null)
+				throw new NullPointerException();
+			if (index < fence) {
+				int i = (int) index;
+				index = fence;
+				size = 0;
+				bitset.forEachSetBit(i, intFence(), action);
+				if (coversHighestIndex())
+					action.accept(Integer.MAX_VALUE);
+			}
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (action == null)
+				throw new NullPointerException();
+			if (index < fence) {
+				int next = bitset.nextSetBit((int) index);
+				if (next >= 0 && next < fence) {
+					index = next + 1L;
+					if (size > 0)
+						size--;
+					action.accept(next);
+					return true;
+				}
+				index = fence;
+				size = 0;
+			}
+			return false;
+		}
+
+		@Override
+		public long estimateSize() {
+			if (size < 0)
+				size = index < fence
+						? bitset.cardinality((int) index, intFence()) + (coversHighestIndex() ? 1 : 0)
+						: 0;
+			return size;
+		}
+
+		/**
+		 * The fence clamped to an int, which excludes bit {@code Integer.MAX_VALUE}
+		 */
+		private int intFence() {
+			return (int) Math.min(fence, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Returns true if bit {@code Integer.MAX_VALUE} is set, and within the fence
+		 * but beyond {@link #intFence()}
+		 */
+		private boolean coversHighestIndex() {
+			return fence > Integer.MAX_VALUE && bitset.get(Integer.MAX_VALUE);
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL
+					| Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			return null;
+		}
+	}
 }
@@ -5,6 +5,9 @@ import static java.util.Spliterator.NONNULL;
 import static java.util.Spliterator.ORDERED;
 
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
@@ -12,6 +15,8 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.stream.DoubleStream;
@@ -1121,6 +1126,731 @@ public enum BufferUtils {
 				endExclusive, characteristics | ORDERED | NONNULL | IMMUTABLE), false);
 	}
 
+	/*--------------------------------------------------------------------------------
+	 *  Selection-vector compaction - compress/expand
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Runs shorter than this are copied one element at a time.
+	 */
+	private static final int BULK_COPY_THRESHOLD = 16;
+
+	@FunctionalInterface
+	private interface RunConsumer {
+		void accept(int fromIndex, int toIndex);
+	}
+
+	/**
+	 * Performs the given action for each maximal run of consecutive set bits in
+	 * the mask, in ascending order. Runs are found a 64-bit word at a time, and
+	 * merged across word boundaries.
+	 */
+	private static void forEachRun(BufferBitSet mask, RunConsumer action) {
+		final int wordsInUse = mask.wordsInUse();
+
+		int runFrom = 0, runTo = 0;
+		for (int u = 0; u < wordsInUse; u++) {
+			final int base = u << 6;
+
+			for (long w = mask.word(u); w != 0;) {
+				// adding the lowest set bit clears the lowest run, and carries into the bit
+				// just above it (unless the run reaches bit 63)
+				final long carried = w + (w & -w);
+
+				final int from = base + Long.numberOfTrailingZeros(w);
+				final int to = carried == 0 ? base + 64 : base + Long.numberOfTrailingZeros(carried);
+
+				if (from != runTo) {
+					if (runFrom < runTo)
+						action.accept(runFrom, runTo);
+					runFrom = from;
+				}
+				runTo = to;
+
+				w &= carried;
+			}
+		}
+
+		if (runFrom < runTo)
+			action.accept(runFrom, runTo);
+	}
+
+	/**
+	 * Checks that the mask fits within a source buffer of the specified capacity,
+	 * and that its cardinality fits within the remaining space of the
+	 * destination.
+	 */
+	private static int checkCompress(int srcCapacity, BufferBitSet mask, int dstRemaining) {
+		if (mask.lastSetBit() >= srcCapacity)
+			throw new IndexOutOfBoundsException(
+					"mask.lastSetBit(" + mask.lastSetBit() + ") >= src.capacity(" + srcCapacity + ")");
+
+		final int count = mask.cardinality();
+		if (count > dstRemaining)
+			throw new BufferOverflowException();
+
+		return count;
+	}
+
+	/**
+	 * Checks that the mask fits within a destination buffer of the specified
+	 * capacity, and that its cardinality fits within the remaining elements of
+	 * the source.
+	 */
+	private static int checkExpand(int srcRemaining, BufferBitSet mask, int dstCapacity) {
+		if (mask.lastSetBit() >= dstCapacity)
+			throw new IndexOutOfBoundsException(
+					"mask.lastSetBit(" + mask.lastSetBit() + ") >= dst.capacity(" + dstCapacity + ")");
+
+		final int count = mask.cardinality();
+		if (count > srcRemaining)
+			throw new BufferUnderflowException();
+
+		return count;
+	}
+
+	/**
+	 * Copies the elements of {@code src} at the indices which are set in
+	 * {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. The position of {@code dst} is advanced by the number of elements
+	 * copied. The position and limit of {@code src} are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #expand(ByteBuffer, BufferBitSet, ByteBuffer) expand}.
+	 *
+	 * @param src  - the buffer to be compressed
+	 * @param mask - the indices of the elements to be copied
+	 * @param dst  - the buffer in which to write the selected elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity()}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(ByteBuffer src, BufferBitSet mask, ByteBuffer dst) {
+		final int count = checkCompress(src.capacity(), mask, dst.remaining());
+
+		final ByteBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(from.get(i));
+			} else {
+				from.limit(toIndex);
+				from.position(fromIndex);
+				dst.put(from);
+				from.clear();
+			}
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies elements from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. The position of
+	 * {@code src} is advanced by the number of elements copied. Elements of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #compress(ByteBuffer, BufferBitSet, ByteBuffer) compress}.
+	 *
+	 * @param src  - the densely packed elements to be scattered
+	 * @param mask - the indices at which to write the elements
+	 * @param dst  - the buffer in which to write the elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity()}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough
+	 *                                   elements remaining, in which case nothing
+	 *                                   is copied
+	 */
+	public static int expand(ByteBuffer src, BufferBitSet mask, ByteBuffer dst) {
+		final int count = checkExpand(src.remaining(), mask, dst.capacity());
+
+		final ByteBuffer from = src.duplicate();
+		final ByteBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					to.put(i, from.get());
+			} else {
+				from.limit(from.position() + toIndex - fromIndex);
+				to.limit(toIndex);
+				to.position(fromIndex);
+				to.put(from);
+				from.limit(src.limit());
+				to.clear();
+			}
+		});
+
+		src.position(src.position() + count);
+
+		return count;
+	}
+
+	/**
+	 * Copies the elements of {@code src} at the indices which are set in
+	 * {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. The position of {@code dst} is advanced by the number of elements
+	 * copied. The position and limit of {@code src} are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #expand(ShortBuffer, BufferBitSet, ShortBuffer) expand}.
+	 *
+	 * @param src  - the buffer to be compressed
+	 * @param mask - the indices of the elements to be copied
+	 * @param dst  - the buffer in which to write the selected elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity()}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(ShortBuffer src, BufferBitSet mask, ShortBuffer dst) {
+		final int count = checkCompress(src.capacity(), mask, dst.remaining());
+
+		final ShortBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(from.get(i));
+			} else {
+				from.limit(toIndex);
+				from.position(fromIndex);
+				dst.put(from);
+				from.clear();
+			}
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies elements from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. The position of
+	 * {@code src} is advanced by the number of elements copied. Elements of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #compress(ShortBuffer, BufferBitSet, ShortBuffer) compress}.
+	 *
+	 * @param src  - the densely packed elements to be scattered
+	 * @param mask - the indices at which to write the elements
+	 * @param dst  - the buffer in which to write the elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity()}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough
+	 *                                   elements remaining, in which case nothing
+	 *                                   is copied
+	 */
+	public static int expand(ShortBuffer src, BufferBitSet mask, ShortBuffer dst) {
+		final int count = checkExpand(src.remaining(), mask, dst.capacity());
+
+		final ShortBuffer from = src.duplicate();
+		final ShortBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					to.put(i, from.get());
+			} else {
+				from.limit(from.position() + toIndex - fromIndex);
+				to.limit(toIndex);
+				to.position(fromIndex);
+				to.put(from);
+				from.limit(src.limit());
+				to.clear();
+			}
+		});
+
+		src.position(src.position() + count);
+
+		return count;
+	}
+
+	/**
+	 * Copies the elements of {@code src} at the indices which are set in
+	 * {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. The position of {@code dst} is advanced by the number of elements
+	 * copied. The position and limit of {@code src} are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #expand(IntBuffer, BufferBitSet, IntBuffer) expand}.
+	 *
+	 * @param src  - the buffer to be compressed
+	 * @param mask - the indices of the elements to be copied
+	 * @param dst  - the buffer in which to write the selected elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity()}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(IntBuffer src, BufferBitSet mask, IntBuffer dst) {
+		final int count = checkCompress(src.capacity(), mask, dst.remaining());
+
+		final IntBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(from.get(i));
+			} else {
+				from.limit(toIndex);
+				from.position(fromIndex);
+				dst.put(from);
+				from.clear();
+			}
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies elements from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. The position of
+	 * {@code src} is advanced by the number of elements copied. Elements of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #compress(IntBuffer, BufferBitSet, IntBuffer) compress}.
+	 *
+	 * @param src  - the densely packed elements to be scattered
+	 * @param mask - the indices at which to write the elements
+	 * @param dst  - the buffer in which to write the elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity()}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough
+	 *                                   elements remaining, in which case nothing
+	 *                                   is copied
+	 */
+	public static int expand(IntBuffer src, BufferBitSet mask, IntBuffer dst) {
+		final int count = checkExpand(src.remaining(), mask, dst.capacity());
+
+		final IntBuffer from = src.duplicate();
+		final IntBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					to.put(i, from.get());
+			} else {
+				from.limit(from.position() + toIndex - fromIndex);
+				to.limit(toIndex);
+				to.position(fromIndex);
+				to.put(from);
+				from.limit(src.limit());
+				to.clear();
+			}
+		});
+
+		src.position(src.position() + count);
+
+		return count;
+	}
+
+	/**
+	 * Copies the elements of {@code src} at the indices which are set in
+	 * {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. The position of {@code dst} is advanced by the number of elements
+	 * copied. The position and limit of {@code src} are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #expand(LongBuffer, BufferBitSet, LongBuffer) expand}.
+	 *
+	 * @param src  - the buffer to be compressed
+	 * @param mask - the indices of the elements to be copied
+	 * @param dst  - the buffer in which to write the selected elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity()}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(LongBuffer src, BufferBitSet mask, LongBuffer dst) {
+		final int count = checkCompress(src.capacity(), mask, dst.remaining());
+
+		final LongBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(from.get(i));
+			} else {
+				from.limit(toIndex);
+				from.position(fromIndex);
+				dst.put(from);
+				from.clear();
+			}
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies elements from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. The position of
+	 * {@code src} is advanced by the number of elements copied. Elements of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #compress(LongBuffer, BufferBitSet, LongBuffer) compress}.
+	 *
+	 * @param src  - the densely packed elements to be scattered
+	 * @param mask - the indices at which to write the elements
+	 * @param dst  - the buffer in which to write the elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity()}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough
+	 *                                   elements remaining, in which case nothing
+	 *                                   is copied
+	 */
+	public static int expand(LongBuffer src, BufferBitSet mask, LongBuffer dst) {
+		final int count = checkExpand(src.remaining(), mask, dst.capacity());
+
+		final LongBuffer from = src.duplicate();
+		final LongBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					to.put(i, from.get());
+			} else {
+				from.limit(from.position() + toIndex - fromIndex);
+				to.limit(toIndex);
+				to.position(fromIndex);
+				to.put(from);
+				from.limit(src.limit());
+				to.clear();
+			}
+		});
+
+		src.position(src.position() + count);
+
+		return count;
+	}
+
+	/**
+	 * Copies the elements of {@code src} at the indices which are set in
+	 * {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. The position of {@code dst} is advanced by the number of elements
+	 * copied. The position and limit of {@code src} are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #expand(FloatBuffer, BufferBitSet, FloatBuffer) expand}.
+	 *
+	 * @param src  - the buffer to be compressed
+	 * @param mask - the indices of the elements to be copied
+	 * @param dst  - the buffer in which to write the selected elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity()}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(FloatBuffer src, BufferBitSet mask, FloatBuffer dst) {
+		final int count = checkCompress(src.capacity(), mask, dst.remaining());
+
+		final FloatBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(from.get(i));
+			} else {
+				from.limit(toIndex);
+				from.position(fromIndex);
+				dst.put(from);
+				from.clear();
+			}
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies elements from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. The position of
+	 * {@code src} is advanced by the number of elements copied. Elements of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #compress(FloatBuffer, BufferBitSet, FloatBuffer) compress}.
+	 *
+	 * @param src  - the densely packed elements to be scattered
+	 * @param mask - the indices at which to write the elements
+	 * @param dst  - the buffer in which to write the elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity()}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough
+	 *                                   elements remaining, in which case nothing
+	 *                                   is copied
+	 */
+	public static int expand(FloatBuffer src, BufferBitSet mask, FloatBuffer dst) {
+		final int count = checkExpand(src.remaining(), mask, dst.capacity());
+
+		final FloatBuffer from = src.duplicate();
+		final FloatBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					to.put(i, from.get());
+			} else {
+				from.limit(from.position() + toIndex - fromIndex);
+				to.limit(toIndex);
+				to.position(fromIndex);
+				to.put(from);
+				from.limit(src.limit());
+				to.clear();
+			}
+		});
+
+		src.position(src.position() + count);
+
+		return count;
+	}
+
+	/**
+	 * Copies the elements of {@code src} at the indices which are set in
+	 * {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. The position of {@code dst} is advanced by the number of elements
+	 * copied. The position and limit of {@code src} are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #expand(DoubleBuffer, BufferBitSet, DoubleBuffer) expand}.
+	 *
+	 * @param src  - the buffer to be compressed
+	 * @param mask - the indices of the elements to be copied
+	 * @param dst  - the buffer in which to write the selected elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity()}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(DoubleBuffer src, BufferBitSet mask, DoubleBuffer dst) {
+		final int count = checkCompress(src.capacity(), mask, dst.remaining());
+
+		final DoubleBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					dst.put(from.get(i));
+			} else {
+				from.limit(toIndex);
+				from.position(fromIndex);
+				dst.put(from);
+				from.clear();
+			}
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies elements from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. The position of
+	 * {@code src} is advanced by the number of elements copied. Elements of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 * <p>
+	 * The mask is scanned a 64-bit word at a time, and each run of consecutive set
+	 * bits is copied with a single bulk {@code put}. This is the inverse of
+	 * {@link #compress(DoubleBuffer, BufferBitSet, DoubleBuffer) compress}.
+	 *
+	 * @param src  - the densely packed elements to be scattered
+	 * @param mask - the indices at which to write the elements
+	 * @param dst  - the buffer in which to write the elements
+	 *
+	 * @return the number of elements copied
+	 *
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity()}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough
+	 *                                   elements remaining, in which case nothing
+	 *                                   is copied
+	 */
+	public static int expand(DoubleBuffer src, BufferBitSet mask, DoubleBuffer dst) {
+		final int count = checkExpand(src.remaining(), mask, dst.capacity());
+
+		final DoubleBuffer from = src.duplicate();
+		final DoubleBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			if (toIndex - fromIndex < BULK_COPY_THRESHOLD) {
+				for (int i = fromIndex; i < toIndex; i++)
+					to.put(i, from.get());
+			} else {
+				from.limit(from.position() + toIndex - fromIndex);
+				to.limit(toIndex);
+				to.position(fromIndex);
+				to.put(from);
+				from.limit(src.limit());
+				to.clear();
+			}
+		});
+
+		src.position(src.position() + count);
+
+		return count;
+	}
+
+	/**
+	 * Copies the fixed-width records of {@code src} at the indices which are set
+	 * in {@code mask} into {@code dst}, densely packed and in ascending order of
+	 * index, starting at the destination's current {@link Buffer#position()
+	 * position}. Record {@code i} occupies bytes {@code i * recordSize}
+	 * (inclusive) through {@code (i + 1) * recordSize} (exclusive) of
+	 * {@code src}. The position of {@code dst} is advanced by the number of bytes
+	 * copied. The position and limit of {@code src} are ignored.
+	 *
+	 * @param src        - the buffer to be compressed
+	 * @param recordSize - the number of bytes in each record
+	 * @param mask       - the indices of the records to be copied
+	 * @param dst        - the buffer in which to write the selected records
+	 *
+	 * @return the number of records copied
+	 *
+	 * @throws IllegalArgumentException  if {@code recordSize < 1}
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code src.capacity() / recordSize}
+	 * @throws BufferOverflowException   if {@code dst} does not have enough space
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int compress(ByteBuffer src, int recordSize, BufferBitSet mask, ByteBuffer dst) {
+		if (recordSize < 1)
+			throw new IllegalArgumentException("recordSize < 1: " + recordSize);
+
+		final int count = checkCompress(src.capacity() / recordSize, mask, dst.remaining() / recordSize);
+
+		final ByteBuffer from = src.duplicate();
+		from.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			from.limit(toIndex * recordSize);
+			from.position(fromIndex * recordSize);
+			dst.put(from);
+		});
+
+		return count;
+	}
+
+	/**
+	 * Copies fixed-width records from {@code src}, starting at its current
+	 * {@link Buffer#position() position}, to the indices of {@code dst} which are
+	 * set in {@code mask}, in ascending order of index. Record {@code i} occupies
+	 * bytes {@code i * recordSize} (inclusive) through
+	 * {@code (i + 1) * recordSize} (exclusive) of {@code dst}. The position of
+	 * {@code src} is advanced by the number of bytes copied. Records of
+	 * {@code dst} at indices which are not set in the mask are left unchanged, and
+	 * its position and limit are ignored.
+	 *
+	 * @param src        - the densely packed records to be scattered
+	 * @param recordSize - the number of bytes in each record
+	 * @param mask       - the indices at which to write the records
+	 * @param dst        - the buffer in which to write the records
+	 *
+	 * @return the number of records copied
+	 *
+	 * @throws IllegalArgumentException  if {@code recordSize < 1}
+	 * @throws IndexOutOfBoundsException if {@code mask} has a bit set at or beyond
+	 *                                   {@code dst.capacity() / recordSize}
+	 * @throws BufferUnderflowException  if {@code src} does not have enough bytes
+	 *                                   remaining, in which case nothing is copied
+	 */
+	public static int expand(ByteBuffer src, int recordSize, BufferBitSet mask, ByteBuffer dst) {
+		if (recordSize < 1)
+			throw new IllegalArgumentException("recordSize < 1: " + recordSize);
+
+		final int count = checkExpand(src.remaining() / recordSize, mask, dst.capacity() / recordSize);
+
+		final ByteBuffer from = src.duplicate();
+		final ByteBuffer to = dst.duplicate();
+		to.clear();
+
+		forEachRun(mask, (fromIndex, toIndex) -> {
+			from.limit(from.position() + (toIndex - fromIndex) * recordSize);
+			to.limit(toIndex * recordSize);
+			to.position(fromIndex * recordSize);
+			to.put(from);
+		});
+
+		src.position(src.position() + count * recordSize);
+
+		return count;
+	}
+
 	/**
 	 * Checks that {@code fromIndex} and {@code toIndex} are in the range and throws
 	 * an exception if they aren't.
@@ -1178,6 +1908,48 @@ public enum BufferUtils {
 			channel.write(buffer);
 	}
 
+	/**
+	 * Writes all {@link ByteBuffer#remaining() remaining} bytes from the given
+	 * buffers, in order, into the given {@link WritableByteChannel channel}. If the
+	 * channel is a {@link GatheringByteChannel}, the buffers are written with as
+	 * few gathering writes as the channel allows.
+	 * 
+	 * @param channel - the channel being written to
+	 * @param buffers - the buffers being read from
+	 * @throws IOException
+	 */
+	public static void writeFully(WritableByteChannel channel, ByteBuffer... buffers) throws IOException {
+		if (channel instanceof GatheringByteChannel) {
+			final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+
+			for (int offset = 0; offset < buffers.length;) {
+				if (buffers[offset].hasRemaining())
+					gathering.write(buffers, offset, buffers.length - offset);
+				else
+					offset++;
+			}
+		} else {
+			for (ByteBuffer buffer : buffers)
+				writeFully(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes all {@link ByteBuffer#remaining() remaining} bytes from the given
+	 * {@link ByteBuffer buffer} into the given {@link FileChannel channel},
+	 * starting at the given file position. The channel's position is not used or
+	 * modified.
+	 * 
+	 * @param channel  - the channel being written to
+	 * @param buffer   - the buffer being read from
+	 * @param position - the file position at which to write the first byte
+	 * @throws IOException
+	 */
+	public static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.remaining() > 0)
+			position += channel.write(buffer, position);
+	}
+
 	/**
 	 * Reads bytes from the given {@link ReadableByteChannel channel} until the
 	 * given buffer is full ({@link ByteBuffer#remaining() remaining} is {@code 0}).
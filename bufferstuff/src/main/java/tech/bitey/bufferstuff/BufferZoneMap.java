@@ -0,0 +1,524 @@
+package tech.bitey.bufferstuff;
+
+import static tech.bitey.bufferstuff.BufferUtils.allocate;
+import static tech.bitey.bufferstuff.BufferUtils.rangeCheck;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.function.IntPredicate;
+
+/**
+ * A zone map summarizes a range of a buffer by recording the minimum and
+ * maximum value in each fixed-size block of elements. A range-filter scan over
+ * an unsorted buffer can then use {@code candidateBlocks} to skip every block
+ * which cannot contain a match.
+ * <p>
+ * Zone maps over {@code byte}, {@code short}, {@code int}, and {@code long}
+ * buffers are instances of {@link OfLong}. Zone maps over {@code float} and
+ * {@code double} buffers are instances of {@link OfDouble}, which also record
+ * the number of {@code NaN} values in each block.
+ * <p>
+ * A zone map is a snapshot, and must be rebuilt if the underlying buffer is
+ * modified. All buffers allocated by this class are procured via
+ * {@link BufferUtils#allocate(int)}.
+ *
+ * @author biteytech@protonmail.com
+ */
+public abstract class BufferZoneMap {
+
+	/** A reasonable default block size */
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+	final int fromIndex;
+	final int toIndex;
+	final int blockSize;
+	final int blockCount;
+
+	/**
+	 * Largest number of blocks whose 8-byte statistics fit in one buffer
+	 */
+	private static final int MAX_BLOCK_COUNT = Integer.MAX_VALUE / 8;
+
+	BufferZoneMap(int capacity, int fromIndex, int toIndex, int blockSize) {
+		rangeCheck(capacity, fromIndex, toIndex);
+		if (blockSize < 1)
+			throw new IllegalArgumentException("blockSize < 1: " + blockSize);
+
+		final long blockCount = ((long) toIndex - fromIndex + blockSize - 1) / blockSize;
+		if (blockCount > MAX_BLOCK_COUNT)
+			throw new IllegalArgumentException(
+					"blockSize " + blockSize + " is too small: " + blockCount + " blocks > " + MAX_BLOCK_COUNT);
+
+		this.fromIndex = fromIndex;
+		this.toIndex = toIndex;
+		this.blockSize = blockSize;
+		this.blockCount = (int) blockCount;
+	}
+
+	/**
+	 * Returns the number of elements in each block (except possibly the last
+	 * one).
+	 *
+	 * @return the number of elements in each block
+	 */
+	public int blockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the number of blocks in this zone map.
+	 *
+	 * @return the number of blocks in this zone map
+	 */
+	public int blockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Returns the index in the underlying buffer of the first element of the
+	 * specified block.
+	 *
+	 * @param block - the block index
+	 *
+	 * @return the index of the first element (inclusive) of the specified block
+	 *
+	 * @throws IndexOutOfBoundsException if {@code block} is out of range
+	 */
+	public int blockFromIndex(int block) {
+		checkBlock(block);
+		return fromIndex + block * blockSize;
+	}
+
+	/**
+	 * Returns the index in the underlying buffer after the last element of the
+	 * specified block.
+	 *
+	 * @param block - the block index
+	 *
+	 * @return the index of the last element (exclusive) of the specified block
+	 *
+	 * @throws IndexOutOfBoundsException if {@code block} is out of range
+	 */
+	public int blockToIndex(int block) {
+		checkBlock(block);
+		return (int) Math.min((long) fromIndex + (long) (block + 1) * blockSize, toIndex);
+	}
+
+	void checkBlock(int block) {
+		if (block < 0 || block >= blockCount)
+			throw new IndexOutOfBoundsException("block: " + block + ", blockCount: " + blockCount);
+	}
+
+	/**
+	 * Returns a bitset containing the index of every block which satisfies the
+	 * specified predicate. The bitset is sized for every block up front, rather
+	 * than grown as blocks are added.
+	 */
+	BufferBitSet blocks(IntPredicate predicate) {
+		BufferBitSet blocks = new BufferBitSet();
+		blocks.reserve(blockCount);
+
+		for (int block = 0; block < blockCount; block++)
+			if (predicate.test(block))
+				blocks.set(block);
+
+		blocks.written(blockCount);
+		return blocks;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Factory methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Builds a zone map over a range of the specified {@link ByteBuffer}.
+	 *
+	 * @param b         - the buffer to summarize
+	 * @param fromIndex - the index of the first element (inclusive) to summarize
+	 * @param toIndex   - the index of the last element (exclusive) to summarize
+	 * @param blockSize - the number of elements in each block
+	 *
+	 * @return a zone map over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code blockSize < 1}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static OfLong of(ByteBuffer b, int fromIndex, int toIndex, int blockSize) {
+		OfLong zm = new OfLong(b.capacity(), fromIndex, toIndex, blockSize);
+
+		for (int block = 0; block < zm.blockCount; block++) {
+			final int to = zm.blockToIndex(block);
+			int i = zm.blockFromIndex(block);
+
+			byte min = b.get(i), max = min;
+			while (++i < to) {
+				byte v = b.get(i);
+				if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+
+			zm.min.put(block, min);
+			zm.max.put(block, max);
+		}
+
+		return zm;
+	}
+
+	/**
+	 * Builds a zone map over a range of the specified {@link ShortBuffer}.
+	 *
+	 * @param b         - the buffer to summarize
+	 * @param fromIndex - the index of the first element (inclusive) to summarize
+	 * @param toIndex   - the index of the last element (exclusive) to summarize
+	 * @param blockSize - the number of elements in each block
+	 *
+	 * @return a zone map over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code blockSize < 1}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static OfLong of(ShortBuffer b, int fromIndex, int toIndex, int blockSize) {
+		OfLong zm = new OfLong(b.capacity(), fromIndex, toIndex, blockSize);
+
+		for (int block = 0; block < zm.blockCount; block++) {
+			final int to = zm.blockToIndex(block);
+			int i = zm.blockFromIndex(block);
+
+			short min = b.get(i), max = min;
+			while (++i < to) {
+				short v = b.get(i);
+				if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+
+			zm.min.put(block, min);
+			zm.max.put(block, max);
+		}
+
+		return zm;
+	}
+
+	/**
+	 * Builds a zone map over a range of the specified {@link IntBuffer}.
+	 *
+	 * @param b         - the buffer to summarize
+	 * @param fromIndex - the index of the first element (inclusive) to summarize
+	 * @param toIndex   - the index of the last element (exclusive) to summarize
+	 * @param blockSize - the number of elements in each block
+	 *
+	 * @return a zone map over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code blockSize < 1}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static OfLong of(IntBuffer b, int fromIndex, int toIndex, int blockSize) {
+		OfLong zm = new OfLong(b.capacity(), fromIndex, toIndex, blockSize);
+
+		for (int block = 0; block < zm.blockCount; block++) {
+			final int to = zm.blockToIndex(block);
+			int i = zm.blockFromIndex(block);
+
+			int min = b.get(i), max = min;
+			while (++i < to) {
+				int v = b.get(i);
+				if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+
+			zm.min.put(block, min);
+			zm.max.put(block, max);
+		}
+
+		return zm;
+	}
+
+	/**
+	 * Builds a zone map over a range of the specified {@link LongBuffer}.
+	 *
+	 * @param b         - the buffer to summarize
+	 * @param fromIndex - the index of the first element (inclusive) to summarize
+	 * @param toIndex   - the index of the last element (exclusive) to summarize
+	 * @param blockSize - the number of elements in each block
+	 *
+	 * @return a zone map over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code blockSize < 1}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static OfLong of(LongBuffer b, int fromIndex, int toIndex, int blockSize) {
+		OfLong zm = new OfLong(b.capacity(), fromIndex, toIndex, blockSize);
+
+		for (int block = 0; block < zm.blockCount; block++) {
+			final int to = zm.blockToIndex(block);
+			int i = zm.blockFromIndex(block);
+
+			long min = b.get(i), max = min;
+			while (++i < to) {
+				long v = b.get(i);
+				if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+
+			zm.min.put(block, min);
+			zm.max.put(block, max);
+		}
+
+		return zm;
+	}
+
+	/**
+	 * Builds a zone map over a range of the specified {@link FloatBuffer}.
+	 * {@code NaN} values are counted, but are otherwise ignored.
+	 *
+	 * @param b         - the buffer to summarize
+	 * @param fromIndex - the index of the first element (inclusive) to summarize
+	 * @param toIndex   - the index of the last element (exclusive) to summarize
+	 * @param blockSize - the number of elements in each block
+	 *
+	 * @return a zone map over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code blockSize < 1}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static OfDouble of(FloatBuffer b, int fromIndex, int toIndex, int blockSize) {
+		OfDouble zm = new OfDouble(b.capacity(), fromIndex, toIndex, blockSize);
+
+		for (int block = 0; block < zm.blockCount; block++) {
+			final int to = zm.blockToIndex(block);
+
+			float min = Float.NaN, max = Float.NaN;
+			int nanCount = 0;
+			for (int i = zm.blockFromIndex(block); i < to; i++) {
+				float v = b.get(i);
+				if (v != v)
+					nanCount++;
+				else if (min != min)
+					min = max = v;
+				else if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+
+			zm.min.put(block, min);
+			zm.max.put(block, max);
+			zm.nanCount.put(block, nanCount);
+		}
+
+		return zm;
+	}
+
+	/**
+	 * Builds a zone map over a range of the specified {@link DoubleBuffer}.
+	 * {@code NaN} values are counted, but are otherwise ignored.
+	 *
+	 * @param b         - the buffer to summarize
+	 * @param fromIndex - the index of the first element (inclusive) to summarize
+	 * @param toIndex   - the index of the last element (exclusive) to summarize
+	 * @param blockSize - the number of elements in each block
+	 *
+	 * @return a zone map over the specified range
+	 *
+	 * @throws IllegalArgumentException  if {@code fromIndex > toIndex}, or
+	 *                                   {@code blockSize < 1}
+	 * @throws IndexOutOfBoundsException if
+	 *                                   {@code fromIndex < 0 or toIndex > b.capacity()}
+	 */
+	public static OfDouble of(DoubleBuffer b, int fromIndex, int toIndex, int blockSize) {
+		OfDouble zm = new OfDouble(b.capacity(), fromIndex, toIndex, blockSize);
+
+		for (int block = 0; block < zm.blockCount; block++) {
+			final int to = zm.blockToIndex(block);
+
+			double min = Double.NaN, max = Double.NaN;
+			int nanCount = 0;
+			for (int i = zm.blockFromIndex(block); i < to; i++) {
+				double v = b.get(i);
+				if (v != v)
+					nanCount++;
+				else if (min != min)
+					min = max = v;
+				else if (v < min)
+					min = v;
+				else if (v > max)
+					max = v;
+			}
+
+			zm.min.put(block, min);
+			zm.max.put(block, max);
+			zm.nanCount.put(block, nanCount);
+		}
+
+		return zm;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Implementations
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * A zone map over a {@code byte}, {@code short}, {@code int}, or {@code long}
+	 * buffer.
+	 */
+	public static final class OfLong extends BufferZoneMap {
+
+		private final LongBuffer min;
+		private final LongBuffer max;
+
+		private OfLong(int capacity, int fromIndex, int toIndex, int blockSize) {
+			super(capacity, fromIndex, toIndex, blockSize);
+
+			this.min = allocate(blockCount * 8).asLongBuffer();
+			this.max = allocate(blockCount * 8).asLongBuffer();
+		}
+
+		/**
+		 * Returns the minimum value in the specified block.
+		 *
+		 * @param block - the block index
+		 *
+		 * @return the minimum value in the specified block
+		 *
+		 * @throws IndexOutOfBoundsException if {@code block} is out of range
+		 */
+		public long min(int block) {
+			checkBlock(block);
+			return min.get(block);
+		}
+
+		/**
+		 * Returns the maximum value in the specified block.
+		 *
+		 * @param block - the block index
+		 *
+		 * @return the maximum value in the specified block
+		 *
+		 * @throws IndexOutOfBoundsException if {@code block} is out of range
+		 */
+		public long max(int block) {
+			checkBlock(block);
+			return max.get(block);
+		}
+
+		/**
+		 * Returns a bitset containing the index of every block which might contain a
+		 * value between {@code lo} and {@code hi} (both inclusive). Blocks which are
+		 * not in the result are guaranteed not to contain such a value.
+		 *
+		 * @param lo - the lowest value of interest (inclusive)
+		 * @param hi - the highest value of interest (inclusive)
+		 *
+		 * @return a bitset of candidate block indices
+		 */
+		public BufferBitSet candidateBlocks(long lo, long hi) {
+			return blocks(block -> min.get(block) <= hi && max.get(block) >= lo);
+		}
+	}
+
+	/**
+	 * A zone map over a {@code float} or {@code double} buffer.
+	 */
+	public static final class OfDouble extends BufferZoneMap {
+
+		private final DoubleBuffer min;
+		private final DoubleBuffer max;
+		private final IntBuffer nanCount;
+
+		private OfDouble(int capacity, int fromIndex, int toIndex, int blockSize) {
+			super(capacity, fromIndex, toIndex, blockSize);
+
+			this.min = allocate(blockCount * 8).asDoubleBuffer();
+			this.max = allocate(blockCount * 8).asDoubleBuffer();
+			this.nanCount = allocate(blockCount * 4).asIntBuffer();
+		}
+
+		/**
+		 * Returns the minimum non-{@code NaN} value in the specified block, or
+		 * {@code NaN} if the block contains only {@code NaN} values.
+		 *
+		 * @param block - the block index
+		 *
+		 * @return the minimum value in the specified block
+		 *
+		 * @throws IndexOutOfBoundsException if {@code block} is out of range
+		 */
+		public double min(int block) {
+			checkBlock(block);
+			return min.get(block);
+		}
+
+		/**
+		 * Returns the maximum non-{@code NaN} value in the specified block, or
+		 * {@code NaN} if the block contains only {@code NaN} values.
+		 *
+		 * @param block - the block index
+		 *
+		 * @return the maximum value in the specified block
+		 *
+		 * @throws IndexOutOfBoundsException if {@code block} is out of range
+		 */
+		public double max(int block) {
+			checkBlock(block);
+			return max.get(block);
+		}
+
+		/**
+		 * Returns the number of {@code NaN} values in the specified block.
+		 *
+		 * @param block - the block index
+		 *
+		 * @return the number of {@code NaN} values in the specified block
+		 *
+		 * @throws IndexOutOfBoundsException if {@code block} is out of range
+		 */
+		public int nanCount(int block) {
+			checkBlock(block);
+			return nanCount.get(block);
+		}
+
+		/**
+		 * Returns a bitset containing the index of every block which might contain a
+		 * value between {@code lo} and {@code hi} (both inclusive). Blocks which are
+		 * not in the result are guaranteed not to contain such a value. {@code NaN}
+		 * values never match.
+		 *
+		 * @param lo - the lowest value of interest (inclusive)
+		 * @param hi - the highest value of interest (inclusive)
+		 *
+		 * @return a bitset of candidate block indices
+		 */
+		public BufferBitSet candidateBlocks(double lo, double hi) {
+			return blocks(block -> min.get(block) <= hi && max.get(block) >= lo);
+		}
+
+		/**
+		 * Returns a bitset containing the index of every block which contains at
+		 * least one {@code NaN} value.
+		 *
+		 * @return a bitset of the block indices which contain {@code NaN}
+		 */
+		public BufferBitSet nanBlocks() {
+			return blocks(block -> nanCount.get(block) > 0);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package tech.bitey.bufferstuff;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-size, thread-safe bitset backed by a direct {@link ByteBuffer}. Every
+ * single-bit operation is a lock-free atomic update of the 64-bit word
+ * containing the bit, performed through a
+ * {@link MethodHandles#byteBufferViewVarHandle(Class, java.nio.ByteOrder)
+ * byteBufferViewVarHandle}. Threads which write different bits never block
+ * each other, so parallel writers scale with the number of cores.
+ * <p>
+ * The bits are laid out exactly as in a {@link BufferBitSet}, and
+ * {@link #toBufferBitSet()} returns a copy for use with the rest of the
+ * library once writing is done.
+ * <p>
+ * Unlike other classes in this library, the backing buffer is always direct,
+ * regardless of the {@code tech.bitey.allocateDirect} system property, because
+ * atomic access to a buffer's words requires them to be 8-byte aligned in
+ * memory, which is only guaranteed for direct buffers.
+ *
+ * @author biteytech@protonmail.com
+ */
+public class ConcurrentBufferBitSet {
+
+	private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, LITTLE_ENDIAN);
+
+	private final ByteBuffer buffer;
+
+	private final int size;
+
+	/**
+	 * Creates a bitset with room for the specified number of bits, all initially
+	 * {@code false}. The bitset cannot be resized.
+	 *
+	 * @param nbits - the number of bits in this bitset
+	 *
+	 * @throws IllegalArgumentException if {@code nbits} is negative
+	 */
+	public ConcurrentBufferBitSet(int nbits) {
+		if (nbits < 0)
+			throw new IllegalArgumentException("nbits < 0: " + nbits);
+
+		final int bytes = (int) (((long) nbits + 63) >>> 6) * 8;
+		this.buffer = ByteBuffer.allocateDirect(bytes + 7).alignedSlice(8);
+		this.size = nbits;
+	}
+
+	/**
+	 * Returns the number of bits in this bitset.
+	 *
+	 * @return the number of bits in this bitset
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Atomic get and set methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the value of the bit with the specified index, with volatile memory
+	 * semantics.
+	 *
+	 * @param bitIndex - the bit index
+	 *
+	 * @return the value of the bit with the specified index
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public boolean get(int bitIndex) {
+		checkIndex(bitIndex);
+		return ((long) WORD.getVolatile(buffer, offset(bitIndex)) & (1L << bitIndex)) != 0;
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to {@code true}.
+	 *
+	 * @param bitIndex - a bit index
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public void set(int bitIndex) {
+		getAndSet(bitIndex);
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to the specified value.
+	 *
+	 * @param bitIndex - a bit index
+	 * @param value    - a boolean value to set
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public void set(int bitIndex, boolean value) {
+		if (value)
+			getAndSet(bitIndex);
+		else
+			getAndClear(bitIndex);
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to {@code false}.
+	 *
+	 * @param bitIndex - the index of the bit to be cleared
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public void clear(int bitIndex) {
+		getAndClear(bitIndex);
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to the complement of its
+	 * current value.
+	 *
+	 * @param bitIndex - the index of the bit to flip
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public void flip(int bitIndex) {
+		checkIndex(bitIndex);
+		WORD.getAndBitwiseXor(buffer, offset(bitIndex), 1L << bitIndex);
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to {@code true}, and returns
+	 * its previous value. When several threads race to set the same bit, exactly
+	 * one of them sees {@code false}.
+	 *
+	 * @param bitIndex - a bit index
+	 *
+	 * @return the previous value of the bit
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public boolean getAndSet(int bitIndex) {
+		checkIndex(bitIndex);
+		final long mask = 1L << bitIndex;
+		return ((long) WORD.getAndBitwiseOr(buffer, offset(bitIndex), mask) & mask) != 0;
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to {@code false}, and returns
+	 * its previous value.
+	 *
+	 * @param bitIndex - a bit index
+	 *
+	 * @return the previous value of the bit
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public boolean getAndClear(int bitIndex) {
+		checkIndex(bitIndex);
+		final long mask = 1L << bitIndex;
+		return ((long) WORD.getAndBitwiseAnd(buffer, offset(bitIndex), ~mask) & mask) != 0;
+	}
+
+	/**
+	 * Atomically sets the bit at the specified index to {@code true}, only if it
+	 * is currently {@code false}.
+	 *
+	 * @param bitIndex - a bit index
+	 *
+	 * @return true if this call changed the bit
+	 *
+	 * @throws IndexOutOfBoundsException if {@code bitIndex < 0 or bitIndex >= size()}
+	 */
+	public boolean compareAndSet(int bitIndex) {
+		checkIndex(bitIndex);
+
+		final int offset = offset(bitIndex);
+		final long mask = 1L << bitIndex;
+
+		long w;
+		do {
+			w = (long) WORD.getVolatile(buffer, offset);
+			if ((w & mask) != 0)
+				return false;
+		} while (!WORD.weakCompareAndSet(buffer, offset, w, w | mask));
+
+		return true;
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Snapshots
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Returns the number of bits set to {@code true} in this bitset. Each word is
+	 * read atomically, but if other threads are writing concurrently the result
+	 * need not reflect any single point in time.
+	 *
+	 * @return the number of bits set to {@code true} in this bitset
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int offset = 0; offset < buffer.capacity(); offset += 8)
+			cardinality += Long.bitCount((long) WORD.getVolatile(buffer, offset));
+		return cardinality;
+	}
+
+	/**
+	 * Returns a new resizable {@link BufferBitSet} containing a copy of the bits
+	 * in this bitset. Each word is read atomically, but if other threads are
+	 * writing concurrently the copy need not reflect any single point in time.
+	 *
+	 * @return a copy of this bitset
+	 */
+	public BufferBitSet toBufferBitSet() {
+		final ByteBuffer copy = BufferUtils.allocate(buffer.capacity()).order(LITTLE_ENDIAN);
+		for (int offset = 0; offset < buffer.capacity(); offset += 8)
+			copy.putLong(offset, (long) WORD.getVolatile(buffer, offset));
+		return new BufferBitSet(copy, true);
+	}
+
+	/*--------------------------------------------------------------------------------
+	 *  Utility methods
+	 *-------------------------------------------------------------------------------*/
+	/**
+	 * Given a bit index, return the byte offset of the word containing it.
+	 */
+	private static int offset(int bitIndex) {
+		return (bitIndex >>> 6) << 3;
+	}
+
+	private void checkIndex(int bitIndex) {
+		if (bitIndex < 0 || bitIndex >= size)
+			throw new IndexOutOfBoundsException("bitIndex: " + bitIndex + ", size: " + size);
+	}
+}
@@ -0,0 +1,286 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBigBufferBitSet {
+
+	private static BigBufferBitSet big(BitSet bs, int segmentShift) {
+		BigBufferBitSet big = new BigBufferBitSet(segmentShift);
+		bs.stream().forEach(big::set);
+		return big;
+	}
+
+	private static BitSet random(Random random) {
+		BitSet bs = new BitSet();
+		for (int i = random.nextInt(50); i >= 0; i--)
+			bs.set(random.nextInt(2000));
+		int from = random.nextInt(1500);
+		bs.set(from, from + random.nextInt(500));
+		return bs;
+	}
+
+	private static void assertSame(BitSet expected, BigBufferBitSet actual) {
+		List<Long> bits = new ArrayList<>();
+		actual.forEachSetBit(bits::add);
+		Assertions.assertEquals(expected.stream().asLongStream().boxed().collect(Collectors.toList()), bits);
+		Assertions.assertEquals(expected.cardinality(), actual.cardinality());
+		Assertions.assertEquals(expected.length() - 1, actual.lastSetBit());
+		Assertions.assertEquals(expected.isEmpty(), actual.isEmpty());
+	}
+
+	@Test
+	public void getSetClearFlip() {
+		BigBufferBitSet bs = new BigBufferBitSet(6);
+		BitSet expected = new BitSet();
+		Random random = new Random(0);
+
+		for (int i = 0; i < 10000; i++) {
+			int index = random.nextInt(3000);
+			switch (random.nextInt(4)) {
+			case 0:
+				bs.set(index);
+				expected.set(index);
+				break;
+			case 1:
+				bs.clear(index);
+				expected.clear(index);
+				break;
+			case 2:
+				bs.flip(index);
+				expected.flip(index);
+				break;
+			default:
+				Assertions.assertEquals(expected.get(index), bs.get(index));
+			}
+		}
+		assertSame(expected, bs);
+
+		bs.set(100, 1000);
+		expected.set(100, 1000);
+		bs.clear(500, 5000);
+		expected.clear(500, 5000);
+		assertSame(expected, bs);
+	}
+
+	@Test
+	public void scan() {
+		Random random = new Random(0);
+		for (int trial = 0; trial < 20; trial++) {
+			BitSet expected = random(random);
+			for (int shift : new int[] { 6, 8, 12 }) {
+				BigBufferBitSet bs = big(expected, shift);
+				for (int i = -1; i < 2200; i++) {
+					if (i >= 0) {
+						Assertions.assertEquals(expected.nextSetBit(i), bs.nextSetBit(i));
+						Assertions.assertEquals(expected.nextClearBit(i), bs.nextClearBit(i));
+					}
+					Assertions.assertEquals(expected.previousSetBit(i), bs.previousSetBit(i));
+					Assertions.assertEquals(expected.previousClearBit(i), bs.previousClearBit(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void logical() {
+		Random random = new Random(0);
+		for (int trial = 0; trial < 20; trial++) {
+			BitSet a = random(random);
+			BitSet b = random(random);
+
+			for (boolean parallel : new boolean[] { false, true }) {
+				BitSet expected = (BitSet) a.clone();
+				BigBufferBitSet actual = big(a, 8);
+				expected.and(b);
+				actual.and(big(b, 8), parallel);
+				assertSame(expected, actual);
+
+				expected = (BitSet) a.clone();
+				actual = big(a, 8);
+				expected.or(b);
+				actual.or(big(b, 8), parallel);
+				assertSame(expected, actual);
+
+				expected = (BitSet) a.clone();
+				actual = big(a, 8);
+				expected.xor(b);
+				actual.xor(big(b, 8), parallel);
+				assertSame(expected, actual);
+
+				expected = (BitSet) a.clone();
+				actual = big(a, 8);
+				expected.andNot(b);
+				actual.andNot(big(b, 8), parallel);
+				assertSame(expected, actual);
+			}
+		}
+
+		BigBufferBitSet bs = big(random(random), 8);
+		bs.xor(bs);
+		Assertions.assertTrue(bs.isEmpty());
+
+		try {
+			bs.and(new BigBufferBitSet(9));
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void beyondIntRange() {
+		final long[] indices = { 0, Integer.MAX_VALUE, 1L << 32, 10_000_000_003L, 1L << 40 };
+
+		BigBufferBitSet bs = new BigBufferBitSet();
+		for (long index : indices)
+			bs.set(index);
+
+		Assertions.assertEquals(indices.length, bs.cardinality());
+		Assertions.assertEquals(1L << 40, bs.lastSetBit());
+
+		List<Long> actual = new ArrayList<>();
+		for (long bit = bs.nextSetBit(0); bit != -1; bit = bs.nextSetBit(bit + 1))
+			actual.add(bit);
+		for (int i = 0; i < indices.length; i++)
+			Assertions.assertEquals(indices[i], actual.get(i));
+
+		Assertions.assertEquals(10_000_000_003L, bs.previousSetBit((1L << 40) - 1));
+		Assertions.assertEquals(10_000_000_004L, bs.nextClearBit(10_000_000_003L));
+		Assertions.assertFalse(bs.get(10_000_000_002L));
+
+		bs.set(10_000_000_000L, 10_000_000_010L);
+		Assertions.assertEquals(indices.length + 9, bs.cardinality());
+		bs.clear(10_000_000_000L, 1L << 40);
+		Assertions.assertEquals(1L << 32, bs.previousSetBit((1L << 40) - 1));
+	}
+
+	@Test
+	public void equalsAndHashCode() {
+		Random random = new Random(0);
+		BitSet expected = random(random);
+
+		BigBufferBitSet a = big(expected, 6);
+		BigBufferBitSet b = big(expected, 10);
+		BigBufferBitSet c = a.copy();
+
+		Assertions.assertEquals(a, b);
+		Assertions.assertEquals(a, c);
+		Assertions.assertEquals(a.hashCode(), b.hashCode());
+		Assertions.assertEquals(a.hashCode(), c.hashCode());
+
+		c.flip(5000);
+		Assertions.assertNotEquals(a, c);
+		c.flip(5000);
+		Assertions.assertEquals(a, c);
+		Assertions.assertEquals(a.hashCode(), c.hashCode());
+	}
+
+	@Test
+	public void snapshot() {
+		Random random = new Random(0);
+		BitSet expected = random(random);
+
+		BigBufferBitSet writer = big(expected, 8);
+		BigBufferBitSet snapshot = writer.snapshot();
+		Assertions.assertTrue(snapshot.isReadOnly());
+		Assertions.assertFalse(writer.isReadOnly());
+		Assertions.assertSame(snapshot, snapshot.snapshot());
+
+		// every segment is shared until it is modified
+		for (int s = 0; s < writer.segmentCount(); s++)
+			Assertions.assertSame(writer.segment(s), snapshot.segment(s));
+
+		writer.set(1);
+		writer.clear(300);
+		writer.flip(5000);
+		writer.or(big(random(random), 8), true);
+		writer.clear(1500, 1800);
+
+		assertSame(expected, snapshot);
+		Assertions.assertEquals(big(expected, 8), snapshot);
+
+		BitSet second = new BitSet();
+		writer.forEachSetBit(bit -> second.set((int) bit));
+		BigBufferBitSet snapshot2 = writer.snapshot();
+
+		// unmodified segments are still shared by both snapshots
+		Assertions.assertNotSame(writer.segment(0), snapshot.segment(0));
+		Assertions.assertSame(writer.segment(0), snapshot2.segment(0));
+
+		writer.and(new BigBufferBitSet(8));
+		Assertions.assertTrue(writer.isEmpty());
+		writer.set(7);
+		assertSame(expected, snapshot);
+		assertSame(second, snapshot2);
+
+		for (Runnable write : new Runnable[] { () -> snapshot.set(0), () -> snapshot.clear(0),
+				() -> snapshot.flip(0), () -> snapshot.set(0, 10), () -> snapshot.clear(0, 10),
+				() -> snapshot.or(writer) }) {
+			try {
+				write.run();
+				throw new RuntimeException("Expected ReadOnlyBufferException");
+			} catch (ReadOnlyBufferException e) {
+			}
+		}
+
+		// a copy of a snapshot is writable
+		BigBufferBitSet copy = snapshot.copy();
+		copy.set(0);
+		Assertions.assertTrue(copy.get(0));
+	}
+
+	@Test
+	public void wrap() {
+		BufferBitSet segment = new BufferBitSet();
+		segment.set(3);
+
+		BigBufferBitSet bs = BigBufferBitSet.wrap(6, null, segment);
+		Assertions.assertEquals(67, bs.nextSetBit(0));
+		Assertions.assertNull(bs.segment(0));
+
+		bs.set(65);
+		Assertions.assertTrue(segment.get(1));
+
+		segment.set(64);
+		try {
+			BigBufferBitSet.wrap(6, segment);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void badArguments() {
+		for (int shift : new int[] { 5, 31 }) {
+			try {
+				new BigBufferBitSet(shift);
+				throw new RuntimeException("Expected IllegalArgumentException");
+			} catch (IllegalArgumentException e) {
+			}
+		}
+
+		BigBufferBitSet bs = new BigBufferBitSet();
+		try {
+			bs.set(-1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			bs.set(2, 1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			bs.previousSetBit(-2);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+}
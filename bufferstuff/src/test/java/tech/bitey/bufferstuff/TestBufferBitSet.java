@@ -1,20 +1,31 @@
 package tech.bitey.bufferstuff;
 
+import static java.nio.ByteOrder.BIG_ENDIAN;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeSet;
 import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
@@ -258,6 +269,342 @@ public class TestBufferBitSet {
 		}
 	}
 
+	@Test
+	public void writeAllTo() throws IOException {
+		BufferBitSet sample = new BufferBitSet();
+		populateWithSampleIndices(sample);
+
+		BufferBitSet one = new BufferBitSet();
+		one.set(3);
+
+		BufferBitSet full = new BufferBitSet();
+		full.set(0, 100);
+
+		BufferBitSet[] sets = { sample, new BufferBitSet(), one, full, BufferBitSet.random(1000, 5000) };
+
+		// gathering channel
+		File file = File.createTempFile("writeAllTo", "dat");
+		file.deleteOnExit();
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), CREATE, WRITE);) {
+			BufferBitSet.writeAllTo(fileChannel, sets);
+		}
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ);) {
+			for (BufferBitSet expected : sets)
+				Assertions.assertEquals(expected, BufferBitSet.readFrom(fileChannel));
+			Assertions.assertEquals(fileChannel.size(), fileChannel.position());
+		}
+
+		// non-gathering channel produces the same bytes as individual writes
+		ByteArrayOutputStream all = new ByteArrayOutputStream();
+		BufferBitSet.writeAllTo(Channels.newChannel(all), sets);
+
+		ByteArrayOutputStream each = new ByteArrayOutputStream();
+		WritableByteChannel channel = Channels.newChannel(each);
+		for (BufferBitSet set : sets)
+			set.writeTo(channel);
+
+		Assertions.assertArrayEquals(each.toByteArray(), all.toByteArray());
+		Assertions.assertArrayEquals(each.toByteArray(), Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void map() throws IOException {
+		BufferBitSet bs = new BufferBitSet();
+		populateWithSampleIndices(bs);
+		BufferBitSet random = BufferBitSet.random(5000, 100000, new Random(0));
+
+		File file = File.createTempFile("map", "dat");
+		file.deleteOnExit();
+
+		long[] positions = new long[6];
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), CREATE, WRITE);) {
+			fileChannel.write(ByteBuffer.allocate(3)); // so that nothing is aligned
+			positions[0] = fileChannel.position();
+			bs.writeTo(fileChannel);
+			positions[1] = fileChannel.position();
+			bs.writeTo(fileChannel, 5, 9000);
+			positions[2] = fileChannel.position();
+			bs.writeCompressedTo(fileChannel);
+			positions[3] = fileChannel.position();
+			new BufferBitSet().writeTo(fileChannel);
+			positions[4] = fileChannel.position();
+			random.writeTo(fileChannel);
+			positions[5] = fileChannel.position();
+			bs.writeTo(fileChannel); // truncated below
+			fileChannel.truncate(fileChannel.position() - 1);
+		}
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ);) {
+			BufferBitSet mapped = BufferBitSet.map(fileChannel, positions[0]);
+			Assertions.assertEquals(bs, mapped);
+			Assertions.assertFalse(mapped.isResizable());
+			Assertions.assertEquals(bs.get(5, 9000), BufferBitSet.map(fileChannel, positions[1]));
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, positions[2]));
+			Assertions.assertTrue(BufferBitSet.map(fileChannel, positions[3]).isEmpty());
+			Assertions.assertEquals(random, BufferBitSet.map(fileChannel, positions[4]));
+			Assertions.assertEquals(0, fileChannel.position());
+
+			try {
+				mapped.set(0);
+				throw new RuntimeException("Expected ReadOnlyBufferException");
+			} catch (ReadOnlyBufferException ex) {
+				// good
+			}
+
+			try {
+				BufferBitSet.map(fileChannel, positions[5]);
+				throw new RuntimeException("Expected EOFException");
+			} catch (EOFException ex) {
+				// good
+			}
+		}
+	}
+
+	@Test
+	public void writeDirtyTo() throws IOException {
+		final int size = 1_000_000;
+		final Random random = new Random(0);
+
+		BufferBitSet bs = new BufferBitSet();
+		bs.or(BufferBitSet.random(size / 20, size, random));
+
+		File file = File.createTempFile("writeDirtyTo", "dat");
+		file.deleteOnExit();
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ, WRITE);) {
+			fileChannel.write(ByteBuffer.allocate(3)); // so that nothing is aligned
+			bs.writeTo(fileChannel);
+			final long fileSize = fileChannel.size();
+
+			bs.trackDirtyPages(true);
+			Assertions.assertTrue(bs.isTrackingDirtyPages());
+			Assertions.assertEquals(0, bs.dirtyPageCount());
+
+			// setting a bit which is already set changes nothing
+			bs.set(bs.nextSetBit(0));
+			Assertions.assertEquals(0, bs.dirtyPageCount());
+
+			bs.flip(5);
+			bs.flip(BufferBitSet.DIRTY_PAGE_SIZE * 8 * 3 + 1);
+			Assertions.assertEquals(2, bs.dirtyPageCount());
+
+			bs.writeDirtyTo(fileChannel, 3);
+			Assertions.assertEquals(0, bs.dirtyPageCount());
+			Assertions.assertEquals(fileSize, fileChannel.size());
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+
+			// shrink, then grow back over the stale bytes left in the file
+			bs.clear(size / 2, size);
+			bs.writeDirtyTo(fileChannel, 3);
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+			bs.set(size - 10);
+			bs.writeDirtyTo(fileChannel, 3);
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+
+			// grow beyond the end of the file
+			bs.set(size * 2);
+			bs.writeDirtyTo(fileChannel, 3);
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+
+			BufferBitSet other = BufferBitSet.random(size / 20, size, random);
+			for (boolean parallel : new boolean[] { false, true }) {
+				BufferBitSet.xorAll(bs, parallel, bs, other);
+				bs.writeDirtyTo(fileChannel, 3);
+				Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+			}
+
+			bs.and(other);
+			bs.or(BufferBitSet.random(10, size * 3, random));
+			bs.shiftLeftInPlace(12345);
+			bs.shiftRightInPlace(777);
+			bs.writeDirtyTo(fileChannel, 3);
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+
+			bs.clear(0, size * 4);
+			bs.writeDirtyTo(fileChannel, 3);
+			Assertions.assertEquals(bs, BufferBitSet.map(fileChannel, 3));
+
+			bs.trackDirtyPages(false);
+			Assertions.assertFalse(bs.isTrackingDirtyPages());
+			try {
+				bs.writeDirtyTo(fileChannel, 3);
+				throw new RuntimeException("Expected IllegalStateException");
+			} catch (IllegalStateException ex) {
+				// good
+			}
+		}
+	}
+
+	@Test
+	public void cachedCardinalityAndHash() {
+		final Random random = new Random(0);
+
+		BufferBitSet bs = new BufferBitSet();
+		bs.cacheCardinalityAndHash(true);
+		Assertions.assertTrue(bs.isCachingCardinalityAndHash());
+
+		BitSet expected = new BitSet();
+
+		for (int i = 0; i < 5000; i++) {
+			final int from = random.nextInt(2000);
+			final int to = from + random.nextInt(300);
+			final BufferBitSet other = BufferBitSet.random(random.nextInt(50), 3000, random);
+
+			switch (random.nextInt(12)) {
+			case 0:
+				bs.set(from);
+				expected.set(from);
+				break;
+			case 1:
+				bs.clear(from);
+				expected.clear(from);
+				break;
+			case 2:
+				bs.flip(from);
+				expected.flip(from);
+				break;
+			case 3:
+				bs.set(from, to);
+				expected.set(from, to);
+				break;
+			case 4:
+				bs.clear(from, to);
+				expected.clear(from, to);
+				break;
+			case 5:
+				bs.flip(from, to);
+				expected.flip(from, to);
+				break;
+			case 6:
+				bs.or(other);
+				expected.or(other.toBitSet());
+				break;
+			case 7:
+				bs.xor(other);
+				expected.xor(other.toBitSet());
+				break;
+			case 8:
+				bs.andNot(other);
+				expected.andNot(other.toBitSet());
+				break;
+			case 9:
+				if (random.nextBoolean()) {
+					bs.and(BufferBitSet.valueOf(expected).copy());
+				} else {
+					BufferBitSet.xorAll(bs, random.nextBoolean(), bs, other);
+					expected.xor(other.toBitSet());
+				}
+				break;
+			case 10:
+				bs.shiftRightInPlace(from % 100);
+				bs.shiftLeftInPlace(from % 100);
+				break;
+			default:
+				// read only, so that the next check is served from the cache
+				Assertions.assertEquals(expected.cardinality(), bs.cardinality());
+			}
+
+			Assertions.assertEquals(expected.cardinality(), bs.cardinality());
+			Assertions.assertEquals(BufferBitSet.valueOf(expected).hashCode(), bs.hashCode());
+			Assertions.assertEquals(BufferBitSet.valueOf(expected), bs);
+		}
+
+		// equal bitsets with stale hashes must never compare as unequal
+		BufferBitSet copy = bs.copy();
+		copy.cacheCardinalityAndHash(true);
+		Assertions.assertEquals(bs.hashCode(), copy.hashCode());
+		copy.flip(12345);
+		Assertions.assertNotEquals(bs.hashCode(), copy.hashCode());
+		Assertions.assertNotEquals(bs, copy);
+		copy.flip(12345);
+		Assertions.assertEquals(bs, copy);
+
+		bs.cacheCardinalityAndHash(false);
+		Assertions.assertFalse(bs.isCachingCardinalityAndHash());
+		bs.set(4000);
+		expected.set(4000);
+		Assertions.assertEquals(expected.cardinality(), bs.cardinality());
+	}
+
+	@Test
+	public void failedWriteToMappedBitSet() throws IOException {
+		BufferBitSet bs = new BufferBitSet();
+		bs.set(1);
+		bs.set(200);
+
+		File file = File.createTempFile("failedWrite", "dat");
+		file.deleteOnExit();
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), CREATE, WRITE);) {
+			bs.writeTo(fileChannel);
+		}
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ);) {
+			BufferBitSet mapped = BufferBitSet.map(fileChannel, 0);
+			mapped.cacheCardinalityAndHash(true);
+			mapped.trackDirtyPages(true);
+			Assertions.assertEquals(2, mapped.cardinality());
+			final int hashCode = mapped.hashCode();
+
+			// byte-at-a-time and word-at-a-time writes
+			for (Runnable write : new Runnable[] { () -> mapped.set(3), () -> mapped.clear(1),
+					() -> mapped.clear(0, 201), () -> mapped.flip(0, 64) }) {
+				try {
+					write.run();
+					throw new RuntimeException("Expected ReadOnlyBufferException");
+				} catch (ReadOnlyBufferException ex) {
+					// good
+				}
+
+				Assertions.assertEquals(2, mapped.cardinality());
+				Assertions.assertEquals(hashCode, mapped.hashCode());
+				Assertions.assertEquals(0, mapped.dirtyPageCount());
+				Assertions.assertEquals(bs, mapped);
+			}
+		}
+	}
+
+	@Test
+	public void wordLevelRanges() {
+		final Random random = new Random(0);
+
+		// both byte orders, since ranges are filled and extracted a word at a time
+		for (BufferBitSet bs : new BufferBitSet[] { new BufferBitSet(),
+				new BufferBitSet(ByteBuffer.allocate(2000).order(BIG_ENDIAN), false) }) {
+
+			BitSet expected = new BitSet();
+
+			for (int i = 0; i < 2000; i++) {
+				final int from = random.nextInt(15000);
+				final int to = from + (random.nextBoolean() ? random.nextInt(70) : random.nextInt(1000));
+
+				switch (random.nextInt(4)) {
+				case 0:
+					bs.set(from, to);
+					expected.set(from, to);
+					break;
+				case 1:
+					bs.clear(from, to);
+					expected.clear(from, to);
+					break;
+				case 2:
+					bs.flip(from, to);
+					expected.flip(from, to);
+					break;
+				default:
+					BufferBitSet range = bs.get(from, to);
+					Assertions.assertEquals(BufferBitSet.valueOf(expected.get(from, to)), range);
+					Assertions.assertEquals(expected.get(from, to).length(), range.lastSetBit() + 1);
+					Assertions.assertEquals(bs.isResizable(), range.isResizable());
+				}
+
+				Assertions.assertEquals(BufferBitSet.valueOf(expected), bs);
+				Assertions.assertEquals(expected.length(), bs.lastSetBit() + 1);
+			}
+		}
+	}
+
 	private int readWriteNext = 0;
 
 	public void readWrite(BufferBitSet bbs, int fromIndex, int toIndex) throws IOException {
@@ -288,6 +635,132 @@ public class TestBufferBitSet {
 		Assertions.assertEquals(-1, bs.nextSetBit(10000));
 	}
 
+	@Test
+	public void forEachSetBit() {
+		BufferBitSet bs = new BufferBitSet();
+		populateWithSampleIndices(bs);
+
+		Set<Integer> actual = new TreeSet<>();
+		bs.forEachSetBit(actual::add);
+		Assertions.assertEquals(SAMPLE_INDICES, actual);
+
+		for (int[] range : new int[][] { { 0, 0 }, { 0, 64 }, { 10, 41 }, { 39, 9000 }, { 39, 9001 }, { 64, 128 },
+				{ 2, Integer.MAX_VALUE } }) {
+			actual.clear();
+			bs.forEachSetBit(range[0], range[1], actual::add);
+			Assertions.assertEquals(SAMPLE_INDICES.subSet(range[0], range[1]), actual);
+		}
+
+		// external buffer, so not in native byte order
+		ByteBuffer buffer = ByteBuffer.allocate(1200);
+		BufferBitSet external = new BufferBitSet(buffer);
+		populateWithSampleIndices(external);
+		actual.clear();
+		external.forEachSetBit(actual::add);
+		Assertions.assertEquals(SAMPLE_INDICES, actual);
+	}
+
+	/**
+	 * A bitset with bits 5 and {@code Integer.MAX_VALUE} set, mapped from a sparse
+	 * file so that its 256MB buffer costs next to nothing.
+	 */
+	private static BufferBitSet highestIndexSet() throws IOException {
+		File file = File.createTempFile("highestIndex", "dat");
+		file.deleteOnExit();
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ, WRITE);) {
+			fileChannel.write(ByteBuffer.wrap(new byte[] { 1 << 5 }), 0);
+			fileChannel.write(ByteBuffer.wrap(new byte[] { (byte) 0x80 }), (1 << 28) - 1);
+			return new BufferBitSet(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, 1 << 28));
+		}
+	}
+
+	@Test
+	public void forEachSetBitHighestIndex() throws IOException {
+		BufferBitSet bs = highestIndexSet();
+		Assertions.assertEquals(Integer.MAX_VALUE, bs.lastSetBit());
+
+		List<Integer> actual = new ArrayList<>();
+		bs.forEachSetBit(actual::add);
+		Assertions.assertEquals(Arrays.asList(5, Integer.MAX_VALUE), actual);
+	}
+
+	@Test
+	public void streamHighestIndex() throws IOException {
+		BufferBitSet bs = highestIndexSet();
+		Assertions.assertArrayEquals(new int[] { 5, Integer.MAX_VALUE }, bs.stream().toArray());
+		Assertions.assertArrayEquals(new int[] { 5, Integer.MAX_VALUE }, bs.stream().parallel().toArray());
+
+		Spliterator.OfInt spliterator = new BufferSpliterators.BitSetSpliterator(bs);
+		Assertions.assertEquals(2, spliterator.estimateSize());
+
+		List<Integer> actual = new ArrayList<>();
+		while (spliterator.tryAdvance((int i) -> actual.add(i)))
+			;
+		Assertions.assertEquals(Arrays.asList(5, Integer.MAX_VALUE), actual);
+		Assertions.assertEquals(0, spliterator.estimateSize());
+	}
+
+	@Test
+	public void stream() {
+		BufferBitSet bs = new BufferBitSet();
+		populateWithSampleIndices(bs);
+		Assertions.assertEquals(SAMPLE_INDICES, bs.stream().boxed().collect(Collectors.toSet()));
+		Assertions.assertEquals(0, new BufferBitSet().stream().count());
+
+		BufferBitSet random = BufferBitSet.random(50000, 1000000, new Random(0));
+		BitSet expected = random.toBitSet();
+
+		Assertions.assertEquals(expected.stream().count(), random.stream().parallel().count());
+		Assertions.assertEquals(expected.stream().asLongStream().sum(), random.stream().parallel().asLongStream().sum());
+		Assertions.assertArrayEquals(expected.stream().toArray(), random.stream().parallel().toArray());
+
+		// sizes are exact after every split
+		Spliterator.OfInt s1 = new BufferSpliterators.BitSetSpliterator(random);
+		Spliterator.OfInt s2 = s1.trySplit();
+		Spliterator.OfInt s3 = s1.trySplit();
+		Assertions.assertEquals(50000, s1.estimateSize() + s2.estimateSize() + s3.estimateSize());
+
+		int[] count = new int[1];
+		Assertions.assertTrue(s3.tryAdvance((int i) -> count[0]++));
+		Assertions.assertEquals(s3.estimateSize() + 1, random.cardinality(0, 1000000) - s1.estimateSize()
+				- s2.estimateSize());
+	}
+
+	@Test
+	public void nextSetBits() {
+		BufferBitSet bs = BufferBitSet.random(3000, 10000, new Random(0));
+
+		Set<Integer> expected = new TreeSet<>();
+		for (int bit = bs.nextSetBit(0); bit != -1; bit = bs.nextSetBit(bit + 1))
+			expected.add(bit);
+
+		for (int batchSize : new int[] { 1, 7, 64, 1000, 5000 }) {
+			Set<Integer> actual = new TreeSet<>();
+
+			IntBuffer batch = IntBuffer.allocate(batchSize);
+			for (int from = 0; bs.nextSetBits(from, batch.clear()) > 0;) {
+				batch.flip();
+				for (int i = 0; i < batch.limit(); i++)
+					actual.add(batch.get(i));
+				from = batch.get(batch.limit() - 1) + 1;
+			}
+
+			Assertions.assertEquals(expected, actual);
+		}
+
+		IntBuffer out = IntBuffer.allocate(20);
+		out.position(5);
+		BufferBitSet sample = new BufferBitSet();
+		populateWithSampleIndices(sample);
+		Assertions.assertEquals(8, sample.nextSetBits(10, out));
+		Assertions.assertEquals(13, out.position());
+		Assertions.assertEquals(10, out.get(5));
+		Assertions.assertEquals(9000, out.get(12));
+		Assertions.assertEquals(0, sample.nextSetBits(9001, out));
+		Assertions.assertEquals(0, sample.nextSetBits(100000, out));
+	}
+
 	@Test
 	public void nextClearBit() {
 		BufferBitSet bs = new BufferBitSet();
@@ -332,6 +805,42 @@ public class TestBufferBitSet {
 		Assertions.assertEquals(-1, bs.previousClearBit(0));
 	}
 
+	@Test
+	public void scanSparse() {
+		Random random = new Random(0);
+		for (int trial = 0; trial < 20; trial++) {
+			BitSet expected = new BitSet();
+			for (int i = random.nextInt(5); i >= 0; i--)
+				expected.set(random.nextInt(1000));
+			expected.set(random.nextInt(200), random.nextInt(200) + 200);
+
+			// native and big-endian backing buffers
+			BufferBitSet allocated = new BufferBitSet();
+			allocated.or(BufferBitSet.valueOf(expected));
+			BufferBitSet[] sets = { allocated, BufferBitSet.valueOf(expected.toByteArray()) };
+			for (BufferBitSet bs : sets) {
+				for (int i = -1; i < 1100; i++) {
+					if (i >= 0) {
+						Assertions.assertEquals(expected.nextSetBit(i), bs.nextSetBit(i));
+						Assertions.assertEquals(expected.nextClearBit(i), bs.nextClearBit(i));
+					}
+					Assertions.assertEquals(expected.previousSetBit(i), bs.previousSetBit(i));
+					Assertions.assertEquals(expected.previousClearBit(i), bs.previousClearBit(i));
+				}
+				Assertions.assertEquals(expected.length() - 1, bs.lastSetBit());
+			}
+		}
+
+		// clearing the highest bits must shrink the bytes in use past zero words
+		BufferBitSet bs = new BufferBitSet();
+		bs.set(3);
+		bs.set(1000);
+		bs.set(2000);
+		bs.clear(1000, 2001);
+		Assertions.assertEquals(3, bs.lastSetBit());
+		Assertions.assertEquals(BufferBitSet.valueOf(new byte[] { 8 }), bs);
+	}
+
 	@Test
 	public void and() {
 		BufferBitSet bs1 = new BufferBitSet();
@@ -411,6 +920,97 @@ public class TestBufferBitSet {
 		Assertions.assertEquals(expected.toString(), bs1.toString());
 	}
 
+	@Test
+	public void multiWay() {
+		Random random = new Random(0);
+
+		for (int count : new int[] { 1, 2, 5, 30 }) {
+			BufferBitSet[] sets = new BufferBitSet[count];
+			for (int i = 0; i < count; i++) {
+				int size = 1000000 - random.nextInt(100000);
+				sets[i] = BufferBitSet.random(size - size / (count + 1), size, random);
+			}
+			sets[0] = new BufferBitSet(ByteBuffer.wrap(sets[0].toByteArray())); // big-endian
+
+			BufferBitSet and = sets[0].resizable(true).copy(), or = and.copy(), xor = and.copy();
+			for (int i = 1; i < count; i++) {
+				and.and(sets[i]);
+				or.or(sets[i]);
+				xor.xor(sets[i]);
+			}
+
+			Assertions.assertEquals(and, BufferBitSet.andAll(sets));
+			Assertions.assertEquals(or, BufferBitSet.orAll(sets));
+			Assertions.assertEquals(xor, BufferBitSet.xorAll(sets));
+
+			// reusable target, in parallel
+			BufferBitSet target = BufferBitSet.random(100, 2000000, random).resizable(true);
+			Assertions.assertSame(target, BufferBitSet.andAll(target, true, sets));
+			Assertions.assertEquals(and, target);
+			Assertions.assertEquals(or, BufferBitSet.orAll(target, true, sets));
+			Assertions.assertEquals(xor, BufferBitSet.xorAll(target, true, sets));
+
+			// target is also an input
+			BufferBitSet[] copies = new BufferBitSet[count];
+			for (int i = 0; i < count; i++)
+				copies[i] = sets[i].copy();
+			Assertions.assertEquals(and, BufferBitSet.andAll(copies[count - 1], false, copies));
+		}
+
+		Assertions.assertTrue(BufferBitSet.andAll().isEmpty());
+		Assertions.assertTrue(BufferBitSet.orAll(BufferBitSet.random(10, 100), true).isEmpty());
+
+		try {
+			BufferBitSet.orAll(new BufferBitSet(false), false, BufferBitSet.random(10, 100));
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+
+	@Test
+	public void predicatesAndCounts() {
+		Random random = new Random(0);
+
+		for (int r = 0; r < 20; r++) {
+			BufferBitSet bs1 = BufferBitSet.random(random.nextInt(200), 200 + random.nextInt(1000), random);
+			BufferBitSet bs2 = BufferBitSet.random(random.nextInt(200), 200 + random.nextInt(1000), random);
+			if (r % 2 == 0)
+				bs2 = new BufferBitSet(ByteBuffer.wrap(bs2.toByteArray())); // big-endian
+
+			BitSet b1 = bs1.toBitSet(), b2 = bs2.toBitSet();
+
+			Assertions.assertEquals(b1.intersects(b2), bs1.intersects(bs2));
+
+			BitSet and = (BitSet) b1.clone();
+			and.and(b2);
+			Assertions.assertEquals(and.cardinality(), bs1.andCardinality(bs2));
+
+			BitSet or = (BitSet) b1.clone();
+			or.or(b2);
+			Assertions.assertEquals(or.cardinality(), bs1.orCardinality(bs2));
+
+			BitSet xor = (BitSet) b1.clone();
+			xor.xor(b2);
+			Assertions.assertEquals(xor.cardinality(), bs1.xorCardinality(bs2));
+
+			BitSet andNot = (BitSet) b1.clone();
+			andNot.andNot(b2);
+			Assertions.assertEquals(andNot.cardinality(), bs1.andNotCardinality(bs2));
+			Assertions.assertEquals(andNot.isEmpty(), bs1.isSubsetOf(bs2));
+
+			Assertions.assertTrue(and.isEmpty() || BufferBitSet.valueOf(and).isSubsetOf(bs2));
+			Assertions.assertTrue(bs1.isSubsetOf(BufferBitSet.valueOf(or)));
+		}
+
+		BufferBitSet bs = new BufferBitSet();
+		populateWithSampleIndices(bs);
+		Assertions.assertFalse(bs.intersects(new BufferBitSet()));
+		Assertions.assertTrue(new BufferBitSet().isSubsetOf(bs));
+		Assertions.assertTrue(bs.isSubsetOf(bs));
+		Assertions.assertEquals(SAMPLE_INDICES.size(), bs.orCardinality(new BufferBitSet()));
+	}
+
 	@Test
 	public void lastSetBit() {
 		BufferBitSet bs = new BufferBitSet();
@@ -525,6 +1125,67 @@ public class TestBufferBitSet {
 		}
 	}
 
+	@Test
+	public void shiftInPlace() {
+		BufferBitSet bs = new BufferBitSet();
+		populateWithSampleIndices(bs);
+
+		for (int shift = 0; shift <= 200; shift++) {
+			final int s = shift;
+			Set<Integer> right = new TreeSet<>(SAMPLE_INDICES.stream().map(i -> i + s).collect(Collectors.toSet()));
+			Set<Integer> left = new TreeSet<>(
+					SAMPLE_INDICES.stream().map(i -> i - s).filter(i -> i >= 0).collect(Collectors.toSet()));
+
+			BufferBitSet copy = bs.copy();
+			copy.shiftRightInPlace(shift);
+			Assertions.assertEquals(right.toString(), copy.toString());
+			Assertions.assertEquals(bs.shiftRight(shift), copy);
+
+			copy.shiftLeftInPlace(shift);
+			Assertions.assertEquals(bs, copy);
+
+			copy.shiftLeftInPlace(shift);
+			Assertions.assertEquals(left.toString(), copy.toString());
+			Assertions.assertEquals(left.toString(), bs.shiftLeft(shift).toString());
+		}
+
+		Assertions.assertTrue(bs.shiftLeft(9001).isEmpty());
+
+		// shiftLeft never aliases this bitset, whatever the offset
+		for (int shift : new int[] { 0, 8, 64, 65 }) {
+			BufferBitSet before = bs.copy();
+			BufferBitSet shifted = bs.shiftLeft(shift);
+			shifted.flip(0);
+			shifted.set(bs.lastSetBit() + 100);
+			Assertions.assertEquals(before, bs);
+		}
+
+		BufferBitSet copy = bs.copy();
+		copy.shiftLeftInPlace(100000);
+		Assertions.assertTrue(copy.isEmpty());
+
+		// sliding window, reusing a non-resizable buffer
+		BufferBitSet window = new BufferBitSet(ByteBuffer.allocate(16), false);
+		BitSet expected = new BitSet();
+		Random random = new Random(0);
+		for (int tick = 0; tick < 1000; tick++) {
+			int shift = random.nextInt(20);
+			window.shiftLeftInPlace(shift);
+			expected = expected.get(shift, Math.max(shift, expected.length()));
+			int bit = 100 + random.nextInt(28);
+			window.set(bit);
+			expected.set(bit);
+			Assertions.assertEquals(expected, window.toBitSet());
+		}
+
+		try {
+			window.shiftRightInPlace(1000);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+
 	@Test
 	public void testClone() {
 		BufferBitSet bs1 = new BufferBitSet();
@@ -0,0 +1,103 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Random;
+import java.util.function.LongPredicate;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferBitSlicedIndex {
+
+	private static void assertMatches(long[] values, int fromIndex, int toIndex, LongPredicate predicate,
+			BufferBitSet actual) {
+
+		BufferBitSet expected = new BufferBitSet();
+		for (int i = fromIndex; i < toIndex; i++)
+			if (predicate.test(values[i]))
+				expected.set(i);
+
+		Assertions.assertEquals(expected, actual);
+	}
+
+	private static void checkIndex(long[] values, int fromIndex, int toIndex, BufferBitSlicedIndex index,
+			long[] constants) {
+
+		for (long c : constants) {
+			assertMatches(values, fromIndex, toIndex, v -> v == c, index.equalTo(c));
+			assertMatches(values, fromIndex, toIndex, v -> v < c, index.lessThan(c));
+			assertMatches(values, fromIndex, toIndex, v -> v > c, index.greaterThan(c));
+
+			for (long d : constants)
+				assertMatches(values, fromIndex, toIndex, v -> v >= c && v <= d, index.between(c, d));
+		}
+
+		BufferBitSet filter = BufferBitSet.random(values.length / 2, values.length + 100, new Random(1));
+		long expected = 0;
+		for (int i = fromIndex; i < toIndex; i++)
+			if (filter.get(i))
+				expected += values[i];
+		Assertions.assertEquals(expected, index.sum(filter));
+	}
+
+	@Test
+	public void intIndex() {
+		Random random = new Random(0);
+
+		int[] ints = new int[5000];
+		long[] values = new long[ints.length];
+		for (int i = 0; i < ints.length; i++)
+			values[i] = ints[i] = random.nextInt(200) - 50;
+
+		BufferBitSlicedIndex index = BufferBitSlicedIndex.of(IntBuffer.wrap(ints), 100, 4900);
+		Assertions.assertEquals(8, index.sliceCount());
+
+		checkIndex(values, 100, 4900, index,
+				new long[] { Long.MIN_VALUE, -51, index.min(), -1, 0, 1, 77, index.max(), 150, Long.MAX_VALUE });
+	}
+
+	@Test
+	public void longIndex() {
+		Random random = new Random(0);
+
+		long[] values = new long[2000];
+		for (int i = 0; i < values.length; i++)
+			values[i] = random.nextInt(4) == 0 ? random.nextLong() : random.nextInt(1000);
+		values[10] = Long.MIN_VALUE;
+		values[20] = Long.MAX_VALUE;
+
+		BufferBitSlicedIndex index = BufferBitSlicedIndex.of(LongBuffer.wrap(values), 0, values.length);
+		Assertions.assertEquals(64, index.sliceCount());
+		Assertions.assertEquals(Long.MIN_VALUE, index.min());
+		Assertions.assertEquals(Long.MAX_VALUE, index.max());
+
+		checkIndex(values, 0, values.length, index, new long[] { Long.MIN_VALUE, values[5], -1, 0, 500, 999,
+				values[7], Long.MAX_VALUE - 1, Long.MAX_VALUE });
+	}
+
+	@Test
+	public void constantAndEmpty() {
+		long[] values = { 7, 7, 7, 7 };
+		BufferBitSlicedIndex index = BufferBitSlicedIndex.of(LongBuffer.wrap(values), 1, 3);
+		Assertions.assertEquals(0, index.sliceCount());
+		checkIndex(values, 1, 3, index, new long[] { 6, 7, 8 });
+
+		index = BufferBitSlicedIndex.of(LongBuffer.wrap(values), 2, 2);
+		checkIndex(values, 2, 2, index, new long[] { 0, 7 });
+	}
+
+	@Test
+	public void badArguments() {
+		try {
+			BufferBitSlicedIndex.of(IntBuffer.allocate(10), 5, 4);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			BufferBitSlicedIndex.of(LongBuffer.allocate(10), 0, 11);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package tech.bitey.bufferstuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferBloomFilter {
+
+	@Test
+	public void intFilter() {
+		for (boolean blocked : new boolean[] { false, true }) {
+			Random random = new Random(0);
+
+			int[] keys = random.ints(10000).toArray();
+			Set<Integer> added = new HashSet<>();
+			for (int key : keys)
+				added.add(key);
+
+			BufferBloomFilter filter = blocked ? BufferBloomFilter.createBlocked(keys.length, 0.01)
+					: BufferBloomFilter.create(keys.length, 0.01);
+			Assertions.assertEquals(blocked, filter.isBlocked());
+			filter.addAll(IntBuffer.wrap(keys), 0, keys.length);
+
+			for (int key : keys)
+				Assertions.assertTrue(filter.mightContain(key));
+
+			int[] probes = random.ints(100000).toArray();
+			BufferBitSet result = new BufferBitSet();
+			int count = filter.mightContainAll(IntBuffer.wrap(probes), 0, probes.length, result);
+			Assertions.assertEquals(count, result.cardinality());
+
+			int falsePositives = 0;
+			for (int i = 0; i < probes.length; i++) {
+				Assertions.assertEquals(filter.mightContain(probes[i]), result.get(i));
+				if (result.get(i) && !added.contains(probes[i]))
+					falsePositives++;
+			}
+			Assertions.assertTrue(falsePositives < probes.length * 0.02, "false positives: " + falsePositives);
+		}
+	}
+
+	@Test
+	public void longFilter() {
+		for (boolean blocked : new boolean[] { false, true }) {
+			Random random = new Random(1);
+
+			long[] keys = random.longs(5000).toArray();
+			BufferBloomFilter filter = blocked ? BufferBloomFilter.createBlocked(keys.length, 0.001)
+					: BufferBloomFilter.create(keys.length, 0.001);
+			filter.addAll(LongBuffer.wrap(keys), 100, keys.length);
+			filter.add(keys[0]);
+
+			for (int i = 100; i < keys.length; i++)
+				Assertions.assertTrue(filter.mightContain(keys[i]));
+			Assertions.assertTrue(filter.mightContain(keys[0]));
+
+			BufferBitSet result = new BufferBitSet();
+			Assertions.assertEquals(keys.length - 100, filter.mightContainAll(LongBuffer.wrap(keys), 100, keys.length,
+					result) - (int) result.cardinality(0, 100));
+			Assertions.assertEquals(keys.length - 100, result.cardinality(100, keys.length));
+		}
+	}
+
+	@Test
+	public void readWrite() throws Exception {
+		for (boolean blocked : new boolean[] { false, true }) {
+			BufferBloomFilter filter = blocked ? BufferBloomFilter.createBlocked(1000, 0.05)
+					: BufferBloomFilter.create(1000, 0.05);
+			for (int i = 0; i < 1000; i += 3)
+				filter.add(i);
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			filter.writeTo(Channels.newChannel(baos));
+
+			BufferBloomFilter copy = BufferBloomFilter
+					.readFrom(Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())));
+
+			Assertions.assertEquals(filter.numBits(), copy.numBits());
+			Assertions.assertEquals(filter.numHashes(), copy.numHashes());
+			Assertions.assertEquals(filter.isBlocked(), copy.isBlocked());
+			Assertions.assertEquals(filter.getBitSet(), copy.getBitSet());
+			for (int i = 0; i < 1000; i++)
+				Assertions.assertEquals(filter.mightContain(i), copy.mightContain(i));
+		}
+	}
+
+	@Test
+	public void corruptInput() throws IOException {
+		// 10 bits, so the last bit in the allocated bytes (15) is still out of range
+		for (int bit : new int[] { 10, 15, 100 }) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(ByteBuffer.allocate(9).put(0, (byte) 0).putInt(1, 10).putInt(5, 1).array());
+			BufferBitSet bits = new BufferBitSet();
+			bits.set(bit);
+			bits.writeTo(Channels.newChannel(baos));
+
+			try {
+				BufferBloomFilter.readFrom(Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())));
+				throw new RuntimeException("Expected IOException");
+			} catch (IOException ex) {
+				// good
+			}
+		}
+	}
+
+	@Test
+	public void badArguments() {
+		try {
+			BufferBloomFilter.create(-1, 0.01);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+
+		try {
+			BufferBloomFilter.create(10, 1);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+
+		try {
+			BufferBloomFilter.create(10, 0.01).addAll(IntBuffer.allocate(5), 0, 6);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+}
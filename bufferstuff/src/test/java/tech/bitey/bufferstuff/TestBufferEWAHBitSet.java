@@ -0,0 +1,138 @@
+package tech.bitey.bufferstuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferEWAHBitSet {
+
+	/**
+	 * Clustered bits: runs of zeros, runs of ones, and a few literal words
+	 */
+	private static BufferBitSet sample(Random random) {
+		BufferBitSet bs = new BufferBitSet();
+
+		for (int i = 0; i < 20; i++) {
+			int from = random.nextInt(1 << 20);
+			bs.set(from, from + random.nextInt(3000));
+		}
+		for (int i = 0; i < 200; i++)
+			bs.set(random.nextInt(1 << 20));
+
+		return bs;
+	}
+
+	private static byte[] write(BufferBitSet bs, boolean compressed) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		if (compressed)
+			bs.writeCompressedTo(Channels.newChannel(baos));
+		else
+			bs.writeTo(Channels.newChannel(baos));
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void convert() {
+		Random random = new Random(0);
+
+		for (int r = 0; r < 10; r++) {
+			BufferBitSet expected = sample(random);
+			BufferEWAHBitSet ewah = BufferEWAHBitSet.valueOf(expected);
+
+			Assertions.assertEquals(expected, ewah.toBufferBitSet());
+			Assertions.assertEquals(expected.cardinality(), ewah.cardinality());
+			Assertions.assertEquals(expected.toString(), ewah.toString());
+			Assertions.assertEquals(expected.wordsInUse(), ewah.sizeInWords());
+			Assertions.assertTrue(ewah.sizeInBytes() < expected.getBuffer().position() / 4);
+		}
+
+		BufferBitSet all = new BufferBitSet();
+		all.set(0, 100000);
+		Assertions.assertEquals(all, BufferEWAHBitSet.valueOf(all).toBufferBitSet());
+		Assertions.assertEquals(16, BufferEWAHBitSet.valueOf(all).sizeInBytes());
+
+		Assertions.assertEquals(BufferEWAHBitSet.EMPTY, BufferEWAHBitSet.valueOf(new BufferBitSet()));
+		Assertions.assertTrue(BufferEWAHBitSet.EMPTY.toBufferBitSet().isEmpty());
+	}
+
+	@Test
+	public void andOr() {
+		Random random = new Random(1);
+
+		for (int r = 0; r < 20; r++) {
+			BufferBitSet bs1 = sample(random);
+			BufferBitSet bs2 = r % 5 == 0 ? new BufferBitSet() : sample(random);
+			if (r % 3 == 0)
+				bs2.set(1 << 22, (1 << 22) + 1000); // longer than bs1
+
+			BufferEWAHBitSet ewah1 = BufferEWAHBitSet.valueOf(bs1);
+			BufferEWAHBitSet ewah2 = BufferEWAHBitSet.valueOf(bs2);
+
+			BufferBitSet and = bs1.copy();
+			and.and(bs2);
+			BufferBitSet or = bs1.copy();
+			or.or(bs2);
+
+			Assertions.assertEquals(BufferEWAHBitSet.valueOf(and), ewah1.and(ewah2));
+			Assertions.assertEquals(BufferEWAHBitSet.valueOf(and), ewah2.and(ewah1));
+			Assertions.assertEquals(BufferEWAHBitSet.valueOf(or), ewah1.or(ewah2));
+			Assertions.assertEquals(BufferEWAHBitSet.valueOf(or), ewah2.or(ewah1));
+			Assertions.assertEquals(and, ewah1.and(ewah2).toBufferBitSet());
+			Assertions.assertEquals(or, ewah1.or(ewah2).toBufferBitSet());
+		}
+	}
+
+	@Test
+	public void readWrite() throws IOException {
+		Random random = new Random(2);
+
+		for (BufferBitSet expected : new BufferBitSet[] { new BufferBitSet(), sample(random), sample(random) }) {
+			byte[] compressed = write(expected, true);
+			byte[] uncompressed = write(expected, false);
+
+			if (!expected.isEmpty())
+				Assertions.assertTrue(compressed.length < uncompressed.length);
+
+			for (byte[] bytes : new byte[][] { compressed, uncompressed }) {
+				BufferBitSet actual = BufferBitSet.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+				Assertions.assertEquals(expected, actual);
+				Assertions.assertFalse(actual.isResizable());
+
+				BufferEWAHBitSet ewah = BufferEWAHBitSet
+						.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+				Assertions.assertEquals(BufferEWAHBitSet.valueOf(expected), ewah);
+			}
+		}
+	}
+
+	@Test
+	public void corruptHeaders() {
+		// too many encoded words
+		ByteBuffer tooLong = ByteBuffer.allocate(5);
+		tooLong.put(0, (byte) BufferEWAHBitSet.COMPRESSED_FLAG).putInt(1, Integer.MAX_VALUE);
+
+		// a single marker whose run is too long for any bitset
+		ByteBuffer tooLarge = ByteBuffer.allocate(13);
+		tooLarge.put(0, (byte) BufferEWAHBitSet.COMPRESSED_FLAG).putInt(1, 1).putLong(5,
+				Long.MIN_VALUE | (1L << 30 << 32));
+
+		for (ByteBuffer bytes : new ByteBuffer[] { tooLong, tooLarge }) {
+			try {
+				BufferBitSet.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.array())));
+				throw new RuntimeException("Expected IOException");
+			} catch (IOException e) {
+			}
+			try {
+				BufferEWAHBitSet.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.array())));
+				throw new RuntimeException("Expected IOException");
+			} catch (IOException e) {
+			}
+		}
+	}
+}
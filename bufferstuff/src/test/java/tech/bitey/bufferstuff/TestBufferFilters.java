@@ -0,0 +1,149 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.IntPredicate;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferFilters {
+
+	private static final int SIZE = 1000;
+
+	private static final int[][] RANGES = { { 0, SIZE }, { 0, 0 }, { 3, 5 }, { 64, 128 }, { 13, 777 },
+			{ 100, 164 }, { 999, 1000 } };
+
+	/**
+	 * Runs the filter over several ranges, and checks that each bit in the range
+	 * matches the predicate and that every bit outside of the range is unchanged.
+	 */
+	private static void check(IntPredicate expected, BiConsumer<int[], BufferBitSet> filter) {
+		for (int[] range : RANGES) {
+			for (boolean prefilled : new boolean[] { false, true }) {
+				BufferBitSet out = new BufferBitSet();
+				if (prefilled)
+					out.set(0, SIZE + 100);
+				BufferBitSet before = out.copy();
+
+				filter.accept(range, out);
+
+				for (int i = 0; i < SIZE + 100; i++) {
+					boolean inRange = i >= range[0] && i < range[1];
+					Assertions.assertEquals(inRange ? expected.test(i) : before.get(i), out.get(i));
+				}
+				Assertions.assertEquals(out, BufferBitSet.valueOf(out.toBitSet()));
+			}
+		}
+	}
+
+	@Test
+	public void intFilters() {
+		Random random = new Random(0);
+		int[] values = new int[SIZE];
+		for (int i = 0; i < SIZE; i++)
+			values[i] = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(100) - 50;
+		values[7] = Integer.MIN_VALUE;
+		values[8] = Integer.MAX_VALUE;
+		IntBuffer b = IntBuffer.wrap(values);
+
+		for (int x : new int[] { Integer.MIN_VALUE, -50, 0, 17, Integer.MAX_VALUE }) {
+			check(i -> values[i] < x, (r, out) -> BufferFilters.lessThan(b, r[0], r[1], x, out));
+			check(i -> values[i] > x, (r, out) -> BufferFilters.greaterThan(b, r[0], r[1], x, out));
+			check(i -> values[i] == x, (r, out) -> BufferFilters.equalTo(b, r[0], r[1], x, out));
+
+			for (int y : new int[] { Integer.MIN_VALUE, -10, 20, Integer.MAX_VALUE })
+				check(i -> values[i] >= x && values[i] <= y,
+						(r, out) -> BufferFilters.between(b, r[0], r[1], x, y, out));
+		}
+
+		IntBuffer in = IntBuffer.wrap(new int[] { Integer.MIN_VALUE, -3, 0, 5, 42 });
+		check(i -> values[i] == Integer.MIN_VALUE || values[i] == -3 || values[i] == 0 || values[i] == 5
+				|| values[i] == 42, (r, out) -> BufferFilters.in(b, r[0], r[1], in, out));
+	}
+
+	@Test
+	public void longFilters() {
+		Random random = new Random(0);
+		long[] values = new long[SIZE];
+		for (int i = 0; i < SIZE; i++)
+			values[i] = random.nextInt(4) == 0 ? random.nextLong() : random.nextInt(100) - 50;
+		values[7] = Long.MIN_VALUE;
+		values[8] = Long.MAX_VALUE;
+		LongBuffer b = LongBuffer.wrap(values);
+
+		for (long x : new long[] { Long.MIN_VALUE, -50, 0, 17, Long.MAX_VALUE }) {
+			check(i -> values[i] < x, (r, out) -> BufferFilters.lessThan(b, r[0], r[1], x, out));
+			check(i -> values[i] > x, (r, out) -> BufferFilters.greaterThan(b, r[0], r[1], x, out));
+			check(i -> values[i] == x, (r, out) -> BufferFilters.equalTo(b, r[0], r[1], x, out));
+
+			for (long y : new long[] { Long.MIN_VALUE, -10, 20, Long.MAX_VALUE })
+				check(i -> values[i] >= x && values[i] <= y,
+						(r, out) -> BufferFilters.between(b, r[0], r[1], x, y, out));
+		}
+
+		LongBuffer in = LongBuffer.wrap(new long[] { -3, 0, 5, 42, Long.MAX_VALUE });
+		check(i -> values[i] == -3 || values[i] == 0 || values[i] == 5 || values[i] == 42
+				|| values[i] == Long.MAX_VALUE, (r, out) -> BufferFilters.in(b, r[0], r[1], in, out));
+	}
+
+	@Test
+	public void floatingPointFilters() {
+		Random random = new Random(0);
+		double[] values = new double[SIZE];
+		for (int i = 0; i < SIZE; i++)
+			values[i] = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(100) - 50;
+		DoubleBuffer d = DoubleBuffer.wrap(values);
+		FloatBuffer f = FloatBuffer.allocate(SIZE);
+		for (int i = 0; i < SIZE; i++)
+			f.put(i, (float) values[i]);
+
+		for (double x : new double[] { Double.NEGATIVE_INFINITY, -50, 0, 17.5, Double.NaN }) {
+			float fx = (float) x;
+			check(i -> values[i] < x, (r, out) -> BufferFilters.lessThan(d, r[0], r[1], x, out));
+			check(i -> values[i] < x, (r, out) -> BufferFilters.lessThan(f, r[0], r[1], fx, out));
+			check(i -> values[i] > x, (r, out) -> BufferFilters.greaterThan(d, r[0], r[1], x, out));
+			check(i -> values[i] > x, (r, out) -> BufferFilters.greaterThan(f, r[0], r[1], fx, out));
+			check(i -> values[i] == x, (r, out) -> BufferFilters.equalTo(d, r[0], r[1], x, out));
+			check(i -> values[i] == x, (r, out) -> BufferFilters.equalTo(f, r[0], r[1], fx, out));
+			check(i -> values[i] >= x && values[i] <= 20,
+					(r, out) -> BufferFilters.between(d, r[0], r[1], x, 20, out));
+			check(i -> values[i] >= x && values[i] <= 20,
+					(r, out) -> BufferFilters.between(f, r[0], r[1], fx, 20, out));
+		}
+
+		check(i -> Double.isNaN(values[i]), (r, out) -> BufferFilters.isNaN(d, r[0], r[1], out));
+		check(i -> Double.isNaN(values[i]), (r, out) -> BufferFilters.isNaN(f, r[0], r[1], out));
+	}
+
+	@Test
+	public void badArguments() {
+		IntBuffer b = IntBuffer.allocate(100);
+
+		try {
+			BufferFilters.lessThan(b, 5, 4, 0, new BufferBitSet());
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			BufferFilters.lessThan(b, 0, 101, 0, new BufferBitSet());
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			BufferFilters.lessThan(b, 0, 100, 1, new BufferBitSet(ByteBuffer.allocate(8), false));
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+
+		// a non-resizable bitset with enough room is fine
+		BufferBitSet out = new BufferBitSet(ByteBuffer.allocate(13), false);
+		BufferFilters.lessThan(b, 0, 100, 1, out);
+		Assertions.assertEquals(100, out.cardinality());
+	}
+}
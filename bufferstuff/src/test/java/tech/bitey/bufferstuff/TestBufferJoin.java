@@ -0,0 +1,125 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferJoin {
+
+	private static final int[][] SIZES = { { 0, 0 }, { 0, 10 }, { 10, 0 }, { 1, 1 }, { 10, 10 }, { 100, 1000 },
+			{ 1000, 100 }, { 20000, 30 }, { 20000, 300 } };
+
+	private static int[] sortedRandom(Random random, int size, int bound) {
+		int[] a = new int[size];
+		for (int i = 0; i < size; i++)
+			a[i] = random.nextInt(bound) - bound / 2;
+		Arrays.sort(a);
+		return a;
+	}
+
+	private static List<String> expected(int[] left, int[] right) {
+		List<String> pairs = new ArrayList<>();
+		for (int l = 0; l < left.length; l++)
+			for (int r = 0; r < right.length; r++)
+				if (left[l] == right[r])
+					pairs.add(l + ":" + r);
+		return pairs;
+	}
+
+	private static List<String> actual(IntBuffer leftOut, IntBuffer rightOut, int toIndex) {
+		List<String> pairs = new ArrayList<>();
+		for (int i = 0; i < toIndex; i++)
+			pairs.add(leftOut.get(i) + ":" + rightOut.get(i));
+		return pairs;
+	}
+
+	@Test
+	public void intJoin() {
+		Random random = new Random(0);
+
+		for (int[] sizes : SIZES) {
+			for (int bound : new int[] { 50, 5000, 1000000 }) {
+				int[] left = sortedRandom(random, sizes[0], bound);
+				int[] right = sortedRandom(random, sizes[1], bound);
+				List<String> expected = expected(left, right);
+
+				IntBuffer lb = IntBuffer.wrap(left);
+				IntBuffer rb = IntBuffer.wrap(right);
+
+				Assertions.assertEquals(expected.size(),
+						BufferJoin.mergeJoinCount(lb, 0, left.length, rb, 0, right.length));
+
+				IntBuffer leftOut = IntBuffer.allocate(expected.size());
+				IntBuffer rightOut = IntBuffer.allocate(expected.size());
+
+				int end = BufferJoin.mergeJoin(lb, 0, left.length, rb, 0, right.length, leftOut, rightOut, 0);
+				Assertions.assertEquals(expected, actual(leftOut, rightOut, end));
+
+				leftOut = IntBuffer.allocate(expected.size());
+				rightOut = IntBuffer.allocate(expected.size());
+
+				end = BufferJoin.parallelMergeJoin(lb, 0, left.length, rb, 0, right.length, leftOut, rightOut, 0);
+				Assertions.assertEquals(expected, actual(leftOut, rightOut, end));
+			}
+		}
+	}
+
+	@Test
+	public void longJoin() {
+		Random random = new Random(1);
+
+		for (int[] sizes : SIZES) {
+			for (int bound : new int[] { 50, 5000, 1000000 }) {
+				int[] left = sortedRandom(random, sizes[0], bound);
+				int[] right = sortedRandom(random, sizes[1], bound);
+				List<String> expected = expected(left, right);
+
+				LongBuffer lb = LongBuffer.wrap(Arrays.stream(left).asLongStream().toArray());
+				LongBuffer rb = LongBuffer.wrap(Arrays.stream(right).asLongStream().toArray());
+
+				Assertions.assertEquals(expected.size(),
+						BufferJoin.mergeJoinCount(lb, 0, left.length, rb, 0, right.length));
+
+				IntBuffer leftOut = IntBuffer.allocate(expected.size() + 3);
+				IntBuffer rightOut = IntBuffer.allocate(expected.size() + 3);
+
+				int end = BufferJoin.mergeJoin(lb, 0, left.length, rb, 0, right.length, leftOut, rightOut, 3);
+				Assertions.assertEquals(expected.size() + 3, end);
+				Assertions.assertEquals(expected, actual(leftOut.position(3).slice(), rightOut.position(3).slice(),
+						expected.size()));
+
+				leftOut = IntBuffer.allocate(expected.size());
+				rightOut = IntBuffer.allocate(expected.size());
+
+				end = BufferJoin.parallelMergeJoin(lb, 0, left.length, rb, 0, right.length, leftOut, rightOut, 0);
+				Assertions.assertEquals(expected, actual(leftOut, rightOut, end));
+			}
+		}
+	}
+
+	@Test
+	public void outputTooSmall() {
+		IntBuffer keys = IntBuffer.allocate(20000);
+
+		try {
+			BufferJoin.parallelMergeJoin(keys, 0, 20000, keys, 0, 2, IntBuffer.allocate(10), IntBuffer.allocate(10),
+					0);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+
+		try {
+			BufferJoin.mergeJoin(keys, 0, 100, keys, 0, 2, IntBuffer.allocate(10), IntBuffer.allocate(10), 0);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+}
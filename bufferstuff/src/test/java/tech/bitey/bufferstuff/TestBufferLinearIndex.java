@@ -0,0 +1,100 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferLinearIndex {
+
+	private static void verify(long[] values, int fromIndex, int toIndex, int epsilon, long[] probes) {
+		LongBuffer b = LongBuffer.wrap(values);
+		BufferLinearIndex index = BufferLinearIndex.of(b, fromIndex, toIndex, epsilon);
+		Assertions.assertEquals(epsilon, index.epsilon());
+
+		for (long key : probes) {
+			int expected = Arrays.binarySearch(values, fromIndex, toIndex, key);
+			int actual = index.binarySearch(key);
+
+			if (expected >= 0) {
+				Assertions.assertTrue(actual >= fromIndex && actual < toIndex);
+				Assertions.assertEquals(key, values[actual]);
+			} else
+				Assertions.assertEquals(expected, actual, "key=" + key);
+		}
+	}
+
+	private static long[] probes(long[] values, Random random) {
+		long[] probes = new long[values.length * 3 + 4];
+		for (int i = 0; i < values.length; i++) {
+			probes[i * 3] = values[i];
+			probes[i * 3 + 1] = values[i] + 1;
+			probes[i * 3 + 2] = random.nextLong();
+		}
+		probes[probes.length - 4] = Long.MIN_VALUE;
+		probes[probes.length - 3] = Long.MAX_VALUE;
+		probes[probes.length - 2] = -1;
+		probes[probes.length - 1] = 0;
+		return probes;
+	}
+
+	@Test
+	public void timestamps() {
+		Random random = new Random(0);
+
+		long[] values = new long[100000];
+		long t = 1_600_000_000_000L;
+		for (int i = 0; i < values.length; i++) {
+			t += random.nextInt(100) < 10 ? 0 : 900 + random.nextInt(200); // with duplicates
+			values[i] = t;
+		}
+
+		for (int epsilon : new int[] { 0, 1, 8, 64 })
+			verify(values, 0, values.length, epsilon, probes(values, random));
+		verify(values, 1234, 56789, 16, probes(values, random));
+
+		BufferLinearIndex index = BufferLinearIndex.of(LongBuffer.wrap(values), 0, values.length, 64);
+		Assertions.assertTrue(index.segmentCount() < values.length / 100, "segments: " + index.segmentCount());
+	}
+
+	@Test
+	public void irregular() {
+		Random random = new Random(1);
+
+		for (int size : new int[] { 0, 1, 2, 10, 1000, 10000 }) {
+			long[] values = random.longs(size).toArray();
+			if (size > 2) {
+				values[0] = Long.MIN_VALUE;
+				values[1] = Long.MAX_VALUE;
+			}
+			Arrays.sort(values);
+
+			for (int epsilon : new int[] { 0, 4, 100 })
+				verify(values, 0, values.length, epsilon, probes(values, random));
+
+			for (int i = 0; i < size; i++)
+				values[i] = random.nextInt(size / 10 + 1) * 3L;
+			Arrays.sort(values);
+			verify(values, 0, values.length, 2, probes(values, random));
+		}
+	}
+
+	@Test
+	public void badArguments() {
+		try {
+			BufferLinearIndex.of(LongBuffer.allocate(10), 0, 10, -1);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+
+		try {
+			BufferLinearIndex.of(LongBuffer.allocate(10), 0, 11, 1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferRankSelect {
+
+	private static void verify(BufferBitSet bs) {
+		BufferRankSelect rs = BufferRankSelect.of(bs);
+		Assertions.assertEquals(bs.cardinality(), rs.cardinality());
+
+		final int size = bs.lastSetBit() + 130;
+		int rank = 0;
+		for (int i = 0; i < size; i++) {
+			Assertions.assertEquals(rank, rs.rank(i));
+			if (bs.get(i)) {
+				Assertions.assertEquals(i, rs.select(rank));
+				rank++;
+			}
+		}
+
+		Assertions.assertEquals(rank, rs.rank(Integer.MAX_VALUE));
+		Assertions.assertEquals(-1, rs.select(rank));
+	}
+
+	@Test
+	public void rankSelect() {
+		Random random = new Random(0);
+
+		verify(new BufferBitSet());
+		verify(BufferBitSet.random(1, 1, random));
+		verify(BufferBitSet.random(100, 1000, random));
+		verify(BufferBitSet.random(30000, 40000, random));
+		verify(BufferBitSet.random(500, 200000, random));
+
+		BufferBitSet dense = new BufferBitSet();
+		dense.set(0, 70000);
+		verify(dense);
+
+		// external buffer, so not in native byte order
+		BufferBitSet external = new BufferBitSet(ByteBuffer.allocate(5000));
+		external.or(BufferBitSet.random(10000, 40000, random));
+		verify(external);
+	}
+
+	@Test
+	public void badIndices() {
+		BufferRankSelect rs = BufferRankSelect.of(new BufferBitSet());
+
+		try {
+			rs.rank(-1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+
+		try {
+			rs.select(-1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package tech.bitey.bufferstuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferRoaringBitSet {
+
+	/**
+	 * A mix of empty, sparse (array), dense (bitmap), and clustered (run) chunks
+	 */
+	private static BufferBitSet sample(Random random) {
+		BufferBitSet bs = new BufferBitSet();
+
+		// sparse
+		for (int i = 0; i < 100; i++)
+			bs.set(random.nextInt(1 << 16));
+
+		// dense
+		bs.or(BufferBitSet.random(30000, 1 << 16, random).shiftRight(2 << 16));
+
+		// clustered
+		for (int i = 0; i < 20; i++) {
+			int from = (5 << 16) + random.nextInt(3 << 16);
+			bs.set(from, from + random.nextInt(5000));
+		}
+
+		// a few far away bits
+		bs.set(100_000_000);
+
+		return bs;
+	}
+
+	@Test
+	public void convert() {
+		Random random = new Random(0);
+
+		for (int r = 0; r < 5; r++) {
+			BufferBitSet expected = sample(random);
+			BufferRoaringBitSet roaring = BufferRoaringBitSet.valueOf(expected);
+
+			Assertions.assertEquals(expected.cardinality(), roaring.cardinality());
+			Assertions.assertEquals(expected.lastSetBit(), roaring.lastSetBit());
+			Assertions.assertEquals(expected, roaring.toBufferBitSet());
+			Assertions.assertEquals(expected.toString(), roaring.toString());
+
+			for (int i = 0; i < 10000; i++) {
+				int index = random.nextInt(9 << 16);
+				Assertions.assertEquals(expected.get(index), roaring.get(index));
+			}
+
+			// 12.5MB dense vs. much smaller compressed
+			Assertions.assertTrue(roaring.sizeInBytes() < 100_000);
+		}
+
+		Assertions.assertEquals(BufferRoaringBitSet.EMPTY, BufferRoaringBitSet.valueOf(new BufferBitSet()));
+		Assertions.assertTrue(BufferRoaringBitSet.EMPTY.toBufferBitSet().isEmpty());
+		Assertions.assertEquals(-1, BufferRoaringBitSet.EMPTY.lastSetBit());
+	}
+
+	@Test
+	public void andOr() {
+		Random random = new Random(1);
+
+		for (int r = 0; r < 5; r++) {
+			BufferBitSet bs1 = sample(random);
+			BufferBitSet bs2 = sample(random);
+			BufferRoaringBitSet rb1 = BufferRoaringBitSet.valueOf(bs1);
+			BufferRoaringBitSet rb2 = BufferRoaringBitSet.valueOf(bs2);
+
+			BufferBitSet and = bs1.copy();
+			and.and(bs2);
+			BufferBitSet or = bs1.copy();
+			or.or(bs2);
+
+			Assertions.assertEquals(BufferRoaringBitSet.valueOf(and), rb1.and(rb2));
+			Assertions.assertEquals(BufferRoaringBitSet.valueOf(or), rb1.or(rb2));
+			Assertions.assertEquals(BufferRoaringBitSet.valueOf(and), rb1.and(bs2));
+			Assertions.assertEquals(BufferRoaringBitSet.valueOf(or), rb1.or(bs2));
+			Assertions.assertEquals(and, rb1.and(rb2).toBufferBitSet());
+			Assertions.assertEquals(or, rb1.or(rb2).toBufferBitSet());
+			Assertions.assertEquals(rb1.or(rb2).hashCode(), BufferRoaringBitSet.valueOf(or).hashCode());
+		}
+	}
+
+	@Test
+	public void readWrite() throws Exception {
+		Random random = new Random(2);
+
+		for (BufferRoaringBitSet expected : new BufferRoaringBitSet[] { BufferRoaringBitSet.EMPTY,
+				BufferRoaringBitSet.valueOf(sample(random)) }) {
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			expected.writeTo(Channels.newChannel(baos));
+
+			BufferRoaringBitSet actual = BufferRoaringBitSet
+					.readFrom(Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())));
+
+			Assertions.assertEquals(expected, actual);
+			Assertions.assertEquals(expected.toBufferBitSet(), actual.toBufferBitSet());
+		}
+	}
+
+	/**
+	 * A serialized bitset with a single container, whose data is given as
+	 * unsigned 16-bit values
+	 */
+	private static BufferRoaringBitSet read(int size, int key, int type, int cardinality, int bytes, int... data)
+			throws IOException {
+
+		ByteBuffer b = ByteBuffer.allocate(15 + data.length * 2);
+		b.putInt(size).putChar((char) key).put((byte) type).putInt(cardinality).putInt(bytes);
+		b.order(ByteOrder.LITTLE_ENDIAN);
+		for (int value : data)
+			b.putChar((char) value);
+
+		return BufferRoaringBitSet.readFrom(Channels.newChannel(new ByteArrayInputStream(b.array())));
+	}
+
+	@Test
+	public void corruptInput() throws IOException {
+		// the highest key and value are allowed
+		BufferRoaringBitSet bs = read(1, 0x7FFF, 0, 1, 2, 0xFFFF);
+		Assertions.assertTrue(bs.get(Integer.MAX_VALUE));
+		Assertions.assertEquals(1, bs.cardinality());
+
+		final int[][] corrupt = { { 0x8001, 0, 0, 1, 2, 1 }, // too many containers
+				{ 1, 0x8000, 0, 1, 2, 1 }, // key too large
+				{ 1, 0, 0, 5, 2, 1 }, // array: bytes don't match cardinality
+				{ 1, 0, 0, 0, 0 }, // array: empty
+				{ 1, 0, 0, 2, 4, 5, 3 }, // array: not ascending
+				{ 1, 0, 0, 3, 6, 1, 2, 3 }, // array: should be a run
+				{ 1, 0, 1, 100, 8192 }, // bitmap: cardinality too small
+				{ 1, 0, 1, 5000, 100 }, // bitmap: wrong size
+				{ 1, 0, 2, 10, 6, 0, 9, 0 }, // run: not a whole number of runs
+				{ 1, 0, 2, 5, 4, 0, 9 }, // run: cardinality doesn't match
+				{ 1, 0, 2, 20, 8, 0, 9, 10, 9 }, // run: adjacent runs
+				{ 1, 0, 2, 10, 4, 0xFFFF, 9 }, // run: past the end of the chunk
+				{ 1, 0, 3, 1, 2, 1 }, // unknown type
+		};
+
+		for (int[] c : corrupt) {
+			try {
+				read(c[0], c[1], c[2], c[3], c[4], Arrays.copyOfRange(c, 5, c.length));
+				throw new RuntimeException("Expected IOException");
+			} catch (IOException ex) {
+				// good
+			}
+		}
+	}
+
+	@Test
+	public void badIndices() {
+		try {
+			BufferRoaringBitSet.EMPTY.get(-1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package tech.bitey.bufferstuff;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferSetOps {
+
+	private static final int[][] SIZES = { { 0, 0 }, { 0, 10 }, { 10, 0 }, { 1, 1 }, { 10, 10 }, { 100, 1000 },
+			{ 1000, 100 }, { 5, 10000 }, { 10000, 5 }, { 1, 5000 }, { 3000, 3000 } };
+
+	private static TreeSet<Integer> randomInts(Random random, int size, int bound) {
+		TreeSet<Integer> set = new TreeSet<>();
+		while (set.size() < size)
+			set.add(random.nextInt(bound) - bound / 2);
+		return set;
+	}
+
+	private static IntBuffer toBuffer(TreeSet<Integer> set, int padding) {
+		IntBuffer b = IntBuffer.allocate(set.size() + padding * 2);
+		b.position(padding);
+		for (int i : set)
+			b.put(i);
+		return b;
+	}
+
+	@Test
+	public void intOps() {
+		Random random = new Random(0);
+
+		for (int[] sizes : SIZES) {
+			for (int bound : new int[] { 20000, 100000 }) {
+				TreeSet<Integer> a = randomInts(random, sizes[0], bound);
+				TreeSet<Integer> b = randomInts(random, sizes[1], bound);
+
+				IntBuffer ab = toBuffer(a, 3);
+				IntBuffer bb = toBuffer(b, 5);
+
+				TreeSet<Integer> intersect = new TreeSet<>(a);
+				intersect.retainAll(b);
+				TreeSet<Integer> union = new TreeSet<>(a);
+				union.addAll(b);
+				TreeSet<Integer> difference = new TreeSet<>(a);
+				difference.removeAll(b);
+				TreeSet<Integer> symmetricDifference = new TreeSet<>(union);
+				symmetricDifference.removeAll(intersect);
+
+				IntBuffer dst = IntBuffer.allocate(a.size() + b.size() + 7);
+				final int aFrom = 3, aTo = 3 + a.size(), bFrom = 5, bTo = 5 + b.size();
+
+				int end = BufferSetOps.intersect(ab, aFrom, aTo, bb, bFrom, bTo, dst, 7);
+				assertContents(intersect, dst, 7, end);
+				Assertions.assertEquals(intersect.size(), BufferSetOps.intersectCount(ab, aFrom, aTo, bb, bFrom, bTo));
+
+				end = BufferSetOps.union(ab, aFrom, aTo, bb, bFrom, bTo, dst, 7);
+				assertContents(union, dst, 7, end);
+				Assertions.assertEquals(union.size(), BufferSetOps.unionCount(ab, aFrom, aTo, bb, bFrom, bTo));
+
+				end = BufferSetOps.difference(ab, aFrom, aTo, bb, bFrom, bTo, dst, 7);
+				assertContents(difference, dst, 7, end);
+				Assertions.assertEquals(difference.size(), BufferSetOps.differenceCount(ab, aFrom, aTo, bb, bFrom, bTo));
+
+				end = BufferSetOps.symmetricDifference(ab, aFrom, aTo, bb, bFrom, bTo, dst, 7);
+				assertContents(symmetricDifference, dst, 7, end);
+				Assertions.assertEquals(symmetricDifference.size(),
+						BufferSetOps.symmetricDifferenceCount(ab, aFrom, aTo, bb, bFrom, bTo));
+			}
+		}
+	}
+
+	private static void assertContents(TreeSet<Integer> expected, IntBuffer dst, int fromIndex, int toIndex) {
+		Assertions.assertEquals(expected.toString(), BufferUtils.stream(dst, fromIndex, toIndex, 0).boxed()
+				.map(String::valueOf).collect(Collectors.joining(", ", "[", "]")));
+	}
+
+	@Test
+	public void longOps() {
+		Random random = new Random(1);
+
+		for (int[] sizes : SIZES) {
+			TreeSet<Long> a = new TreeSet<>();
+			while (a.size() < sizes[0])
+				a.add(random.nextLong() >> 48);
+			TreeSet<Long> b = new TreeSet<>();
+			while (b.size() < sizes[1])
+				b.add(random.nextLong() >> 48);
+
+			LongBuffer ab = LongBuffer.allocate(a.size());
+			a.forEach(ab::put);
+			LongBuffer bb = LongBuffer.allocate(b.size());
+			b.forEach(bb::put);
+
+			TreeSet<Long> intersect = new TreeSet<>(a);
+			intersect.retainAll(b);
+			TreeSet<Long> union = new TreeSet<>(a);
+			union.addAll(b);
+			TreeSet<Long> difference = new TreeSet<>(a);
+			difference.removeAll(b);
+			TreeSet<Long> symmetricDifference = new TreeSet<>(union);
+			symmetricDifference.removeAll(intersect);
+
+			LongBuffer dst = LongBuffer.allocate(a.size() + b.size());
+			final int aTo = a.size(), bTo = b.size();
+
+			int end = BufferSetOps.intersect(ab, 0, aTo, bb, 0, bTo, dst, 0);
+			assertContents(intersect, dst, end);
+			Assertions.assertEquals(intersect.size(), BufferSetOps.intersectCount(ab, 0, aTo, bb, 0, bTo));
+
+			end = BufferSetOps.union(ab, 0, aTo, bb, 0, bTo, dst, 0);
+			assertContents(union, dst, end);
+			Assertions.assertEquals(union.size(), BufferSetOps.unionCount(ab, 0, aTo, bb, 0, bTo));
+
+			end = BufferSetOps.difference(ab, 0, aTo, bb, 0, bTo, dst, 0);
+			assertContents(difference, dst, end);
+			Assertions.assertEquals(difference.size(), BufferSetOps.differenceCount(ab, 0, aTo, bb, 0, bTo));
+
+			end = BufferSetOps.symmetricDifference(ab, 0, aTo, bb, 0, bTo, dst, 0);
+			assertContents(symmetricDifference, dst, end);
+			Assertions.assertEquals(symmetricDifference.size(),
+					BufferSetOps.symmetricDifferenceCount(ab, 0, aTo, bb, 0, bTo));
+		}
+	}
+
+	private static void assertContents(TreeSet<Long> expected, LongBuffer dst, int toIndex) {
+		Assertions.assertEquals(expected.toString(), BufferUtils.stream(dst, 0, toIndex, 0).boxed()
+				.map(String::valueOf).collect(Collectors.joining(", ", "[", "]")));
+	}
+
+	@Test
+	public void badIndices() {
+		IntBuffer b = IntBuffer.allocate(10);
+
+		try {
+			BufferSetOps.intersect(b, 5, 3, b, 0, 10, IntBuffer.allocate(10), 0);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+
+		try {
+			BufferSetOps.unionCount(b, 0, 11, b, 0, 10);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+
+		try {
+			BufferSetOps.union(b, 0, 10, b, 0, 10, IntBuffer.allocate(10), 11);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+}
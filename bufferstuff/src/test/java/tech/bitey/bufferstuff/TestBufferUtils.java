@@ -3,6 +3,8 @@ package tech.bitey.bufferstuff;
 import static java.nio.ByteOrder.BIG_ENDIAN;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
@@ -13,6 +15,7 @@ import java.nio.ReadOnlyBufferException;
 import java.nio.ShortBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -669,6 +672,165 @@ public class TestBufferUtils {
 
 	// ======================================================================================
 
+	private static BufferBitSet[] sampleMasks() {
+		BufferBitSet runs = new BufferBitSet();
+		runs.set(3);
+		runs.set(60, 70); // crosses a word boundary
+		runs.set(100, 300); // bulk copy
+		runs.set(320, 384); // whole word
+		runs.set(384, 390); // merges with the previous run
+		runs.set(999);
+
+		return new BufferBitSet[] { new BufferBitSet(), runs, BufferBitSet.random(500, 1000, new Random(0)),
+				BufferBitSet.valueOf(new byte[] { -1, -1, -1, -1, -1, -1, -1, -1 }) };
+	}
+
+	@Test
+	public void compressExpandInt() {
+		int[] values = new int[1000];
+		for (int i = 0; i < values.length; i++)
+			values[i] = i * 7 + 1;
+		IntBuffer src = IntBuffer.wrap(values);
+		src.position(500).limit(600); // ignored
+
+		for (BufferBitSet mask : sampleMasks()) {
+			final int cardinality = mask.cardinality();
+
+			IntBuffer packed = IntBuffer.allocate(cardinality + 10);
+			packed.position(10);
+			Assertions.assertEquals(cardinality, BufferUtils.compress(src, mask, packed));
+			Assertions.assertEquals(cardinality + 10, packed.position());
+
+			int j = 10;
+			for (int i = mask.nextSetBit(0); i != -1; i = mask.nextSetBit(i + 1))
+				Assertions.assertEquals(values[i], packed.get(j++));
+
+			IntBuffer scattered = IntBuffer.allocate(1000);
+			packed.position(10);
+			Assertions.assertEquals(cardinality, BufferUtils.expand(packed, mask, scattered));
+			Assertions.assertEquals(cardinality + 10, packed.position());
+			Assertions.assertEquals(0, scattered.position());
+
+			for (int i = 0; i < values.length; i++)
+				Assertions.assertEquals(mask.get(i) ? values[i] : 0, scattered.get(i));
+		}
+	}
+
+	@Test
+	public void compressExpandOtherTypes() {
+		for (BufferBitSet mask : sampleMasks()) {
+			final int cardinality = mask.cardinality();
+
+			LongBuffer l = LongBuffer.allocate(1000);
+			ShortBuffer s = ShortBuffer.allocate(1000);
+			ByteBuffer b = ByteBuffer.allocate(1000);
+			FloatBuffer f = FloatBuffer.allocate(1000);
+			DoubleBuffer d = DoubleBuffer.allocate(1000);
+			for (int i = 0; i < 1000; i++) {
+				l.put(i, i * 1000000000L);
+				s.put(i, (short) i);
+				b.put(i, (byte) i);
+				f.put(i, i / 2f);
+				d.put(i, i / 4d);
+			}
+
+			LongBuffer l2 = LongBuffer.allocate(cardinality);
+			ShortBuffer s2 = ShortBuffer.allocate(cardinality);
+			ByteBuffer b2 = ByteBuffer.allocate(cardinality);
+			FloatBuffer f2 = FloatBuffer.allocate(cardinality);
+			DoubleBuffer d2 = DoubleBuffer.allocate(cardinality);
+			BufferUtils.compress(l, mask, l2);
+			BufferUtils.compress(s, mask, s2);
+			BufferUtils.compress(b, mask, b2);
+			BufferUtils.compress(f, mask, f2);
+			BufferUtils.compress(d, mask, d2);
+
+			LongBuffer l3 = LongBuffer.allocate(1000);
+			ShortBuffer s3 = ShortBuffer.allocate(1000);
+			ByteBuffer b3 = ByteBuffer.allocate(1000);
+			FloatBuffer f3 = FloatBuffer.allocate(1000);
+			DoubleBuffer d3 = DoubleBuffer.allocate(1000);
+			BufferUtils.expand(l2.flip(), mask, l3);
+			BufferUtils.expand(s2.flip(), mask, s3);
+			BufferUtils.expand(b2.flip(), mask, b3);
+			BufferUtils.expand(f2.flip(), mask, f3);
+			BufferUtils.expand(d2.flip(), mask, d3);
+
+			for (int i = 0; i < 1000; i++) {
+				boolean set = mask.get(i);
+				Assertions.assertEquals(set ? l.get(i) : 0, l3.get(i));
+				Assertions.assertEquals(set ? s.get(i) : 0, s3.get(i));
+				Assertions.assertEquals(set ? b.get(i) : 0, b3.get(i));
+				Assertions.assertEquals(set ? f.get(i) : 0, f3.get(i));
+				Assertions.assertEquals(set ? d.get(i) : 0, d3.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void compressExpandRecords() {
+		final int recordSize = 12;
+
+		ByteBuffer src = ByteBuffer.allocate(1000 * recordSize);
+		for (int i = 0; i < src.capacity(); i++)
+			src.put(i, (byte) (i * 31));
+
+		for (BufferBitSet mask : sampleMasks()) {
+			final int cardinality = mask.cardinality();
+
+			ByteBuffer packed = ByteBuffer.allocate(cardinality * recordSize);
+			Assertions.assertEquals(cardinality, BufferUtils.compress(src, recordSize, mask, packed));
+			Assertions.assertFalse(packed.hasRemaining());
+
+			ByteBuffer scattered = ByteBuffer.allocate(src.capacity());
+			Assertions.assertEquals(cardinality, BufferUtils.expand(packed.flip(), recordSize, mask, scattered));
+			Assertions.assertFalse(packed.hasRemaining());
+
+			for (int i = 0; i < src.capacity(); i++)
+				Assertions.assertEquals(mask.get(i / recordSize) ? src.get(i) : 0, scattered.get(i));
+		}
+	}
+
+	@Test
+	public void compressExpandErrors() {
+		BufferBitSet mask = new BufferBitSet();
+		mask.set(5, 10);
+
+		try {
+			BufferUtils.compress(IntBuffer.allocate(9), mask, IntBuffer.allocate(10));
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// good
+		}
+		IntBuffer dst = IntBuffer.allocate(4);
+		try {
+			BufferUtils.compress(IntBuffer.allocate(10), mask, dst);
+			throw new RuntimeException("Expected BufferOverflowException");
+		} catch (BufferOverflowException e) {
+			Assertions.assertEquals(0, dst.position());
+		}
+		try {
+			BufferUtils.expand(IntBuffer.allocate(5), mask, IntBuffer.allocate(9));
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// good
+		}
+		try {
+			BufferUtils.expand(IntBuffer.allocate(4), mask, IntBuffer.allocate(10));
+			throw new RuntimeException("Expected BufferUnderflowException");
+		} catch (BufferUnderflowException e) {
+			// good
+		}
+		try {
+			BufferUtils.compress(ByteBuffer.allocate(10), 0, mask, ByteBuffer.allocate(10));
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// good
+		}
+	}
+
+	// ======================================================================================
+
 	@Test
 	public void rangeCheck() {
 		try {
@@ -0,0 +1,154 @@
+package tech.bitey.bufferstuff;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBufferZoneMap {
+
+	@Test
+	public void intZoneMap() {
+		Random random = new Random(0);
+
+		int[] values = new int[10000];
+		for (int i = 0; i < values.length; i++)
+			values[i] = i / 100 * 10 + random.nextInt(10); // mostly ascending
+		IntBuffer b = IntBuffer.wrap(values);
+
+		BufferZoneMap.OfLong zm = BufferZoneMap.of(b, 50, 9950, 256);
+		Assertions.assertEquals(256, zm.blockSize());
+		Assertions.assertEquals((9900 + 255) / 256, zm.blockCount());
+		Assertions.assertEquals(9950, zm.blockToIndex(zm.blockCount() - 1));
+
+		for (int[] range : new int[][] { { 0, 0 }, { 15, 15 }, { 500, 600 }, { -100, -1 }, { 990, 2000 },
+				{ 300, 200 } }) {
+			BufferBitSet candidates = zm.candidateBlocks(range[0], range[1]);
+
+			for (int block = 0; block < zm.blockCount(); block++) {
+				boolean match = false;
+				long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+				for (int i = zm.blockFromIndex(block); i < zm.blockToIndex(block); i++) {
+					match |= values[i] >= range[0] && values[i] <= range[1];
+					min = Math.min(min, values[i]);
+					max = Math.max(max, values[i]);
+				}
+
+				Assertions.assertEquals(min, zm.min(block));
+				Assertions.assertEquals(max, zm.max(block));
+				if (match)
+					Assertions.assertTrue(candidates.get(block));
+			}
+		}
+
+		// the ascending data should prune most blocks
+		Assertions.assertTrue(zm.candidateBlocks(500, 600).cardinality() <= 6);
+	}
+
+	@Test
+	public void otherIntegralZoneMaps() {
+		byte[] bytes = { 5, -3, 7, 100, -128, 127, 0 };
+
+		BufferZoneMap.OfLong zm = BufferZoneMap.of(ByteBuffer.wrap(bytes), 0, bytes.length, 3);
+		Assertions.assertEquals(3, zm.blockCount());
+		Assertions.assertEquals(-3, zm.min(0));
+		Assertions.assertEquals(7, zm.max(0));
+		Assertions.assertEquals(-128, zm.min(1));
+		Assertions.assertEquals(127, zm.max(1));
+		Assertions.assertEquals("[0, 1, 2]", zm.candidateBlocks(-1, 0).toString());
+		Assertions.assertEquals("[1]", zm.candidateBlocks(8, 99).toString());
+
+		short[] shorts = { 5, -3, 7, 100, -128, 127, 0 };
+		zm = BufferZoneMap.of(ShortBuffer.wrap(shorts), 1, shorts.length, 2);
+		Assertions.assertEquals("[1, 2]", zm.candidateBlocks(100, 100).toString());
+		Assertions.assertEquals("[2]", zm.candidateBlocks(110, 120).toString());
+
+		long[] longs = { Long.MIN_VALUE, 0, Long.MAX_VALUE };
+		zm = BufferZoneMap.of(LongBuffer.wrap(longs), 0, longs.length, 1);
+		BufferBitSet extremes = zm.candidateBlocks(Long.MIN_VALUE, Long.MIN_VALUE);
+		extremes.or(zm.candidateBlocks(Long.MAX_VALUE, Long.MAX_VALUE));
+		Assertions.assertEquals("[0, 2]", extremes.toString());
+	}
+
+	@Test
+	public void doubleZoneMap() {
+		double[] values = { 1, Double.NaN, 3, Double.NaN, Double.NaN, Double.NaN, -5, 10, Double.NaN };
+
+		BufferZoneMap.OfDouble zm = BufferZoneMap.of(DoubleBuffer.wrap(values), 0, values.length, 3);
+		Assertions.assertEquals(1, zm.min(0));
+		Assertions.assertEquals(3, zm.max(0));
+		Assertions.assertEquals(1, zm.nanCount(0));
+		Assertions.assertTrue(Double.isNaN(zm.min(1)));
+		Assertions.assertTrue(Double.isNaN(zm.max(1)));
+		Assertions.assertEquals(3, zm.nanCount(1));
+		Assertions.assertEquals(-5, zm.min(2));
+		Assertions.assertEquals(10, zm.max(2));
+
+		Assertions.assertEquals("[0, 2]", zm.candidateBlocks(2, 2).toString());
+		Assertions.assertEquals("[2]", zm.candidateBlocks(-10, 0).toString());
+		Assertions.assertEquals("[]", zm.candidateBlocks(Double.NaN, Double.NaN).toString());
+		Assertions.assertEquals("[0, 2]",
+				zm.candidateBlocks(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).toString());
+		Assertions.assertEquals("[0, 1, 2]", zm.nanBlocks().toString());
+
+		float[] floats = { Float.NaN, 2, -1, 4 };
+		zm = BufferZoneMap.of(FloatBuffer.wrap(floats), 0, floats.length, 2);
+		Assertions.assertEquals(2, zm.min(0));
+		Assertions.assertEquals(2, zm.max(0));
+		Assertions.assertEquals(-1, zm.min(1));
+		Assertions.assertEquals(4, zm.max(1));
+		Assertions.assertEquals("[0]", zm.nanBlocks().toString());
+	}
+
+	@Test
+	public void emptyAndBadArguments() {
+		BufferZoneMap.OfLong zm = BufferZoneMap.of(IntBuffer.allocate(10), 5, 5, 4);
+		Assertions.assertEquals(0, zm.blockCount());
+		Assertions.assertTrue(zm.candidateBlocks(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+
+		try {
+			BufferZoneMap.of(IntBuffer.allocate(10), 0, 10, 0);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+
+		try {
+			zm.min(0);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+	}
+
+	@Test
+	public void tooManyBlocks() throws IOException {
+		File file = File.createTempFile("tooManyBlocks", "dat");
+		file.deleteOnExit();
+
+		// a sparse file, so that a buffer with a huge capacity costs nothing
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ, WRITE);) {
+			fileChannel.write(ByteBuffer.allocate(1), (1 << 28) - 1);
+			ByteBuffer b = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, 1 << 28);
+
+			try {
+				BufferZoneMap.of(b, 0, 1 << 28, 1);
+				throw new RuntimeException("Expected IllegalArgumentException");
+			} catch (IllegalArgumentException ex) {
+				// good
+			}
+		}
+	}
+}
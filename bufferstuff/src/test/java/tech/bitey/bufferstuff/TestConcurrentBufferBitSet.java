@@ -0,0 +1,90 @@
+package tech.bitey.bufferstuff;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestConcurrentBufferBitSet {
+
+	@Test
+	public void basic() {
+		ConcurrentBufferBitSet bs = new ConcurrentBufferBitSet(130);
+		Assertions.assertEquals(130, bs.size());
+
+		bs.set(0);
+		bs.set(64);
+		bs.set(129, true);
+		bs.flip(100);
+		bs.flip(0);
+		Assertions.assertFalse(bs.get(0));
+		Assertions.assertTrue(bs.get(64));
+		Assertions.assertTrue(bs.get(100));
+		Assertions.assertTrue(bs.get(129));
+
+		Assertions.assertTrue(bs.getAndSet(64));
+		Assertions.assertFalse(bs.getAndSet(1));
+		Assertions.assertTrue(bs.getAndClear(1));
+		Assertions.assertFalse(bs.compareAndSet(64));
+		Assertions.assertTrue(bs.compareAndSet(65));
+		bs.clear(65);
+		bs.set(100, false);
+
+		Assertions.assertEquals(2, bs.cardinality());
+		Assertions.assertEquals("[64, 129]", bs.toBufferBitSet().toString());
+	}
+
+	@Test
+	public void parallelWriters() {
+		final int n = 1_000_000;
+		ConcurrentBufferBitSet bs = new ConcurrentBufferBitSet(n);
+
+		// adjacent bits share words, so writers contend on every word
+		IntStream.range(0, n).parallel().filter(i -> i % 3 != 0).forEach(bs::set);
+		Assertions.assertEquals(n - (n + 2) / 3, bs.cardinality());
+
+		IntStream.range(0, n).parallel().forEach(bs::flip);
+		Assertions.assertEquals((n + 2) / 3, bs.cardinality());
+
+		BufferBitSet expected = new BufferBitSet();
+		for (int i = 0; i < n; i += 3)
+			expected.set(i);
+		Assertions.assertEquals(expected, bs.toBufferBitSet());
+
+		// exactly one winner per bit
+		AtomicInteger winners = new AtomicInteger();
+		IntStream.range(0, 4 * n).parallel().forEach(i -> {
+			if (!bs.getAndSet(i % n))
+				winners.incrementAndGet();
+		});
+		Assertions.assertEquals(n - (n + 2) / 3, winners.get());
+		Assertions.assertEquals(n, bs.cardinality());
+	}
+
+	@Test
+	public void badIndices() {
+		ConcurrentBufferBitSet bs = new ConcurrentBufferBitSet(10);
+
+		try {
+			bs.set(10);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+
+		try {
+			bs.get(-1);
+			throw new RuntimeException("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException ex) {
+			// good
+		}
+
+		try {
+			new ConcurrentBufferBitSet(-1);
+			throw new RuntimeException("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+	}
+}